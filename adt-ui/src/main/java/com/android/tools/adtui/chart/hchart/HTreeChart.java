@@ -44,6 +44,12 @@ public class HTreeChart<T> extends AnimatedComponent {
   private static final int ACTION_MOVEMENT_FACTOR = 5;
   private static final int BORDER_PLUS_PADDING = 2;
 
+  /**
+   * Subtrees with at least this many nodes have their depth cached, see {@link #getSubtreeMaxDepth(HNode)}. Smaller ones are
+   * cheap enough to walk again, and not caching them keeps the cache small for trees with millions of nodes.
+   */
+  private static final int MIN_CACHED_SUBTREE_SIZE = 64;
+
   private final Orientation mOrientation;
 
   @Nullable
@@ -73,8 +79,25 @@ public class HTreeChart<T> extends AnimatedComponent {
   @NotNull
   private final HTreeChartReducer<T> mReducer;
 
+  /**
+   * Rectangles reused across renders, so that changing the range doesn't allocate one per visible node.
+   */
+  @NotNull
+  private final List<Rectangle2D.Float> mRectanglePool;
+
+  /**
+   * Maximum depth of the subtree of large nodes, see {@link #getSubtreeMaxDepth(HNode)}.
+   */
+  @NotNull
+  private final Map<HNode<T>, Integer> mSubtreeMaxDepths;
+
   private boolean mRender;
 
+  private boolean mRedraw;
+
+  @Nullable
+  private Dimension mRenderedSize;
+
   @Nullable
   private Image myCanvas;
 
@@ -84,6 +107,8 @@ public class HTreeChart<T> extends AnimatedComponent {
     mNodes = new ArrayList<>();
     mDrawnNodes = new ArrayList<>();
     mDrawnRectangles = new ArrayList<>();
+    mRectanglePool = new ArrayList<>();
+    mSubtreeMaxDepths = new IdentityHashMap<>();
     mXRange = xRange;
     mRoot = new DefaultHNode<>();
     mReducer = reducer;
@@ -110,8 +135,8 @@ public class HTreeChart<T> extends AnimatedComponent {
   @Override
   protected void draw(Graphics2D g, Dimension dim) {
     long startTime = System.nanoTime();
-    if (mRender) {
-      render();
+    if (mRender || !dim.equals(mRenderedSize)) {
+      render(dim);
       mRender = false;
     }
 
@@ -129,12 +154,13 @@ public class HTreeChart<T> extends AnimatedComponent {
       return;
     }
 
-    if (myCanvas == null || myCanvas.getHeight(null) != dim.getHeight()
-        || myCanvas.getWidth(null) != dim.getWidth()) {
+    if (myCanvas == null || mRedraw) {
       redrawToCanvas(dim);
     }
 
-    g.drawImage(myCanvas, 0, 0, null);
+    if (myCanvas != null) {
+      g.drawImage(myCanvas, 0, 0, null);
+    }
 
     addDebugInfo("Draw time %.2fms", (System.nanoTime() - startTime) / 1e6);
     addDebugInfo("# of nodes %d", mNodes.size());
@@ -148,28 +174,13 @@ public class HTreeChart<T> extends AnimatedComponent {
       g.clearRect(0, 0, dim.width, dim.height);
     } else {
       myCanvas = createImage(dim.width, dim.height);
-      g = (Graphics2D)myCanvas.getGraphics();
-    }
-    mDrawnNodes.clear();
-    mDrawnNodes.addAll(mNodes);
-
-    mDrawnRectangles.clear();
-    // Transform
-    for (Rectangle2D.Float rect : mRectangles) {
-      Rectangle2D.Float newRect = new Rectangle2D.Float();
-      newRect.x = rect.x * (float)dim.getWidth();
-      newRect.y = rect.y;
-      newRect.width = Math.max(0, rect.width * (float)dim.getWidth() - BORDER_PLUS_PADDING);
-      newRect.height = rect.height;
-
-      if (mOrientation == HTreeChart.Orientation.BOTTOM_UP) {
-        newRect.y = (float)(dim.getHeight() - newRect.y - newRect.getHeight());
+      if (myCanvas == null) {
+        // The component isn't displayable yet
+        return;
       }
-
-      mDrawnRectangles.add(newRect);
+      g = (Graphics2D)myCanvas.getGraphics();
     }
-
-    mReducer.reduce(mDrawnRectangles, mDrawnNodes);
+    mRedraw = false;
 
     assert mDrawnRectangles.size() == mDrawnNodes.size();
     assert mHRenderer != null;
@@ -180,48 +191,188 @@ public class HTreeChart<T> extends AnimatedComponent {
     g.dispose();
   }
 
-  protected void render() {
+  /**
+   * Computes the rectangles of the nodes to draw, in pixels.
+   * <p>
+   * Only the visible part of the tree is walked: subtrees outside of the x range are skipped, as well as rows below the visible
+   * area. Runs of siblings that fit within a single pixel are merged into one block as they are found, and instead of walking their
+   * subtrees, a block per depth is added below them down to the deepest of their descendants. This keeps the cost of a render
+   * proportional to the number of pixels rather than the number of nodes, whatever the zoom level.
+   * <p>
+   * Nodes are produced level by level, from left to right, which is the order {@link HTreeChartReducer} expects.
+   */
+  private void render(@NotNull Dimension dim) {
     mNodes.clear();
     mRectangles.clear();
-    myCanvas = null;
-    if (mRoot == null) {
+    mDrawnNodes.clear();
+    mDrawnRectangles.clear();
+    mRenderedSize = new Dimension(dim);
+    mRedraw = true;
+    if (mRoot == null || mXRange.getLength() == 0) {
       return;
     }
 
+    int rowHeight = mDefaultFontMetrics.getHeight();
+    List<RenderItem<T>> level = new ArrayList<>();
+    List<RenderItem<T>> nextLevel = new ArrayList<>();
     if (inRange(mRoot)) {
-      mNodes.add(mRoot);
-      mRectangles.add(createRectangle(mRoot));
+      addNode(level, mRoot, dim.width);
     }
 
-    int head = 0;
-    while (head < mNodes.size()) {
-      HNode<T> curNode = mNodes.get(head++);
+    while (!level.isEmpty()) {
+      float top = getRowTop(level.get(0).myNode.getDepth());
+      if (top > dim.height) {
+        // This row and all the ones below it are out of the visible area
+        break;
+      }
+      boolean visible = top + rowHeight >= 0;
+
+      for (RenderItem<T> item : level) {
+        if (visible) {
+          addRectangle(item, top, rowHeight, dim.height);
+        }
+
+        if (item.mySubPixel) {
+          if (item.myMaxDepth > item.myDeepestNode.getDepth()) {
+            HNode<T> child = getDeepestChild(item.myDeepestNode, item.myMaxDepth);
+            addSubPixelItem(nextLevel, child, child, item.myLeft, item.myRight, item.myMaxDepth);
+          }
+          continue;
+        }
 
-      for (int i = 0; i < curNode.getChildCount(); ++i) {
-        HNode<T> child = curNode.getChildAt(i);
-        if (inRange(child)) {
-          mNodes.add(child);
-          mRectangles.add(createRectangle(child));
+        HNode<T> node = item.myNode;
+        for (int i = 0; i < node.getChildCount(); ++i) {
+          HNode<T> child = node.getChildAt(i);
+          if (inRange(child)) {
+            addNode(nextLevel, child, dim.width);
+          }
         }
       }
+
+      List<RenderItem<T>> tmp = level;
+      level = nextLevel;
+      nextLevel = tmp;
+      nextLevel.clear();
     }
+
+    mDrawnNodes.addAll(mNodes);
+    mDrawnRectangles.addAll(mRectangles);
+    mReducer.reduce(mDrawnRectangles, mDrawnNodes);
   }
 
   private boolean inRange(@NotNull HNode<T> node) {
     return node.getStart() <= mXRange.getMax() && node.getEnd() >= mXRange.getMin();
   }
 
+  private float getRowTop(int depth) {
+    return (float)((mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * depth - getYRange().getMin());
+  }
+
+  private void addNode(@NotNull List<RenderItem<T>> items, @NotNull HNode<T> node, int width) {
+    double left = Math.max(0, (node.getStart() - mXRange.getMin()) / mXRange.getLength() * width);
+    double right = Math.min(width, (node.getEnd() - mXRange.getMin()) / mXRange.getLength() * width);
+    if (Math.floor(left) < Math.floor(right)) {
+      items.add(new RenderItem<>(node, left, right));
+    }
+    else {
+      addSubPixelItem(items, node, node, left, right, getSubtreeMaxDepth(node));
+    }
+  }
+
+  /**
+   * Adds a block which fits within a pixel, merging it into the previous one if that is within the same pixel.
+   */
+  private static <T> void addSubPixelItem(@NotNull List<RenderItem<T>> items,
+                                          @NotNull HNode<T> node,
+                                          @NotNull HNode<T> deepestNode,
+                                          double left,
+                                          double right,
+                                          int maxDepth) {
+    if (!items.isEmpty()) {
+      RenderItem<T> last = items.get(items.size() - 1);
+      if (last.mySubPixel && Math.floor(last.myLeft) == Math.floor(left)) {
+        last.myRight = Math.max(last.myRight, right);
+        if (maxDepth > last.myMaxDepth) {
+          last.myMaxDepth = maxDepth;
+          last.myDeepestNode = deepestNode;
+        }
+        return;
+      }
+    }
+    RenderItem<T> item = new RenderItem<>(node, left, right);
+    item.mySubPixel = true;
+    item.myDeepestNode = deepestNode;
+    item.myMaxDepth = maxDepth;
+    items.add(item);
+  }
+
+  private void addRectangle(@NotNull RenderItem<T> item, float top, int rowHeight, int height) {
+    int index = mRectangles.size();
+    if (index == mRectanglePool.size()) {
+      mRectanglePool.add(new Rectangle2D.Float());
+    }
+    Rectangle2D.Float rect = mRectanglePool.get(index);
+    rect.x = (float)item.myLeft;
+    rect.y = mOrientation == Orientation.BOTTOM_UP ? height - top - rowHeight : top;
+    rect.width = (float)Math.max(0, item.myRight - item.myLeft - BORDER_PLUS_PADDING);
+    rect.height = rowHeight;
+    mRectangles.add(rect);
+    mNodes.add(item.myNode);
+  }
+
+  /**
+   * Returns the greatest depth of the nodes in the subtree of the given node. Results for large subtrees are cached until the tree
+   * is replaced, so that sub-pixel blocks don't walk the same subtrees every time the range changes.
+   */
+  private int getSubtreeMaxDepth(@NotNull HNode<T> node) {
+    Integer cached = mSubtreeMaxDepths.get(node);
+    if (cached != null) {
+      return cached;
+    }
+
+    int maxDepth = node.getDepth();
+    int size = 0;
+    Deque<HNode<T>> stack = new ArrayDeque<>();
+    stack.push(node);
+    while (!stack.isEmpty()) {
+      HNode<T> current = stack.pop();
+      maxDepth = Math.max(maxDepth, current.getDepth());
+      ++size;
+      for (int i = 0; i < current.getChildCount(); ++i) {
+        HNode<T> child = current.getChildAt(i);
+        Integer childDepth = mSubtreeMaxDepths.get(child);
+        if (childDepth != null) {
+          maxDepth = Math.max(maxDepth, childDepth);
+        }
+        else {
+          stack.push(child);
+        }
+      }
+    }
+
+    if (size >= MIN_CACHED_SUBTREE_SIZE) {
+      mSubtreeMaxDepths.put(node, maxDepth);
+    }
+    return maxDepth;
+  }
+
+  /**
+   * Returns the child of the given node whose subtree reaches the given depth.
+   */
   @NotNull
-  private Rectangle2D.Float createRectangle(@NotNull HNode<T> node) {
-    float left = (float)Math.max(0, (node.getStart() - mXRange.getMin()) / mXRange.getLength());
-    float right = (float)Math.min(1, (node.getEnd() - mXRange.getMin()) / mXRange.getLength());
-    Rectangle2D.Float rect = new Rectangle2D.Float();
-    rect.x = left;
-    rect.y = (float)((mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * node.getDepth()
-                     - getYRange().getMin());
-    rect.width = right - left;
-    rect.height = mDefaultFontMetrics.getHeight();
-    return rect;
+  private HNode<T> getDeepestChild(@NotNull HNode<T> node, int maxDepth) {
+    assert node.getChildCount() > 0;
+    HNode<T> deepest = node.getChildAt(0);
+    int deepestDepth = -1;
+    for (int i = 0; i < node.getChildCount() && deepestDepth < maxDepth; ++i) {
+      HNode<T> child = node.getChildAt(i);
+      int depth = getSubtreeMaxDepth(child);
+      if (depth > deepestDepth) {
+        deepest = child;
+        deepestDepth = depth;
+      }
+    }
+    return deepest;
   }
 
   private double positionToRange(double x) {
@@ -237,8 +388,12 @@ public class HTreeChart<T> extends AnimatedComponent {
     }
   }
 
+  /**
+   * Sets the tree to display. The tree is expected not to change afterwards, as some information about it is cached.
+   */
   public void setHTree(@Nullable HNode<T> root) {
     this.mRoot = root;
+    mSubtreeMaxDepths.clear();
     changed();
   }
 
@@ -359,23 +514,34 @@ public class HTreeChart<T> extends AnimatedComponent {
       return 0;
     }
 
-    int maxDepth = -1;
-    Queue<HNode<T>> queue = new LinkedList<>();
-    queue.add(mRoot);
-
-    while (!queue.isEmpty()) {
-      HNode<T> n = queue.poll();
-      if (n.getDepth() > maxDepth) {
-        maxDepth = n.getDepth();
-      }
-
-      for (int i = 0; i < n.getChildCount(); ++i) {
-        queue.add(n.getChildAt(i));
-      }
-    }
-    maxDepth += 1;
+    int maxDepth = getSubtreeMaxDepth(mRoot) + 1;
     return (mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * maxDepth;
   }
 
   public enum Orientation {TOP_DOWN, BOTTOM_UP}
-}
\ No newline at end of file
+
+  /**
+   * A block to draw: either a node wider than a pixel, or a run of nodes at the same depth which fit within a single pixel.
+   */
+  private static final class RenderItem<T> {
+    /**
+     * The node drawn for this block, i.e. the first node of the run for a sub-pixel block.
+     */
+    @NotNull private final HNode<T> myNode;
+    private final double myLeft;
+    private double myRight;
+    private boolean mySubPixel;
+
+    /**
+     * For a sub-pixel block, the node of the run whose subtree is the deepest, and the depth of that subtree.
+     */
+    private HNode<T> myDeepestNode;
+    private int myMaxDepth;
+
+    RenderItem(@NotNull HNode<T> node, double left, double right) {
+      myNode = node;
+      myLeft = left;
+      myRight = right;
+    }
+  }
+}
@@ -15,12 +15,15 @@
  */
 package com.android.tools.adtui.chart.hchart
 
+import com.android.tools.adtui.model.DefaultHNode
+import com.android.tools.adtui.model.HNode
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.swing.FakeUi
 import org.junit.Before
 import org.junit.Test
 
 import java.awt.*
+import java.awt.image.BufferedImage
 
 import com.google.common.truth.Truth.assertThat
 
@@ -129,6 +132,71 @@ class HTreeChartTest {
     assertThat(myChart!!.yRange.max).isWithin(EPSILON).of(15.0)
   }
 
+  @Test
+  fun testSubPixelSiblingsAreMerged() {
+    // 1000 children, each with a child of its own, within 100 pixels
+    val root = newNode(0, 1000, 0)
+    for (i in 0 until 1000) {
+      val child = newNode(i.toLong(), i + 1L, 1)
+      child.addChild(newNode(i.toLong(), i + 1L, 2))
+      root.addChild(child)
+    }
+    val nodes = renderNodes(root, HTreeChart.Orientation.TOP_DOWN, 0.0, 1000.0)
+
+    assertThat(nodes.count { it.depth == 1 }).isAtMost(200)
+    assertThat(nodes.count { it.depth == 2 }).isAtMost(200)
+    // Merged blocks still show that there are deeper calls
+    assertThat(nodes.count { it.depth == 2 }).isGreaterThan(0)
+  }
+
+  @Test
+  fun testNodesOutsideOfViewAreSkipped() {
+    // A single chain of calls much deeper than the chart, and a call outside of the range
+    val root = newNode(0, 100, 0)
+    var parent = root
+    for (depth in 1..1000) {
+      val child = newNode(0, 50, depth)
+      parent.addChild(child)
+      parent = child
+    }
+    root.addChild(newNode(80, 100, 1))
+    val nodes = renderNodes(root, HTreeChart.Orientation.BOTTOM_UP, 0.0, 60.0)
+
+    assertThat(nodes.size).isGreaterThan(1)
+    assertThat(nodes.size).isLessThan(100)
+    assertThat(nodes.all { it.end <= 50 || it === root }).isTrue()
+  }
+
+  @Test
+  fun testMaximumHeightUsesDeepestNode() {
+    myChart!!.setHTree(newNode(0, 100, 0))
+    val rowHeight = myChart!!.maximumHeight
+
+    val root = newNode(0, 100, 0)
+    val child = newNode(50, 100, 1)
+    child.addChild(newNode(50, 60, 2))
+    root.addChild(newNode(0, 50, 1))
+    root.addChild(child)
+    myChart!!.setHTree(root)
+    assertThat(myChart!!.maximumHeight).isEqualTo(rowHeight * 3)
+  }
+
+  private fun newNode(start: Long, end: Long, depth: Int): DefaultHNode<String> {
+    val node = DefaultHNode("$start-$end", start, end)
+    node.depth = depth
+    return node
+  }
+
+  private fun renderNodes(root: HNode<String>, orientation: HTreeChart.Orientation, min: Double, max: Double): List<HNode<String>> {
+    val nodes = mutableListOf<HNode<String>>()
+    val chart = HTreeChart<String>(Range(min, max), orientation, HTreeChartReducer { _, reduced -> nodes.addAll(reduced) })
+    chart.size = Dimension(100, 100)
+    chart.setHTree(root)
+    val image = BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB)
+    chart.paint(image.graphics)
+    return nodes
+  }
+
   companion object {
     private val EPSILON = 1e-3
   }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.visualtests;
+
+import com.android.tools.adtui.AnimatedComponent;
+import com.android.tools.adtui.chart.hchart.HTreeChart;
+import com.android.tools.adtui.chart.hchart.JavaMethodHRenderer;
+import com.android.tools.adtui.chart.hchart.Method;
+import com.android.tools.adtui.model.DefaultHNode;
+import com.android.tools.adtui.model.Range;
+import com.android.tools.adtui.model.updater.Updatable;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Renders synthetic call trees with a configurable depth and number of calls, to measure how {@link HTreeChart} performs on
+ * large captures. Enable the debug info to see the draw time and the number of nodes drawn while zooming and panning.
+ */
+public class HTreeChartVisualTest extends VisualTest {
+  private static final long CALL_DURATION = 1000;
+
+  private Range myRange;
+  private HTreeChart<Method> myChart;
+  private int myDepth = 20;
+  private int myCallCount = 100000;
+
+  @Override
+  protected List<Updatable> createModelList() {
+    myRange = new Range(0, 0);
+    myChart = new HTreeChart<>(myRange, HTreeChart.Orientation.TOP_DOWN);
+    myChart.setHRenderer(new JavaMethodHRenderer());
+    return Collections.emptyList();
+  }
+
+  @Override
+  protected List<AnimatedComponent> getDebugInfoComponents() {
+    return Collections.singletonList(myChart);
+  }
+
+  @Override
+  public String getName() {
+    return "HTreeChart";
+  }
+
+  @Override
+  protected void populateUi(@NotNull JPanel panel) {
+    JPanel controls = VisualTest.createControlledPane(panel, myChart);
+    controls.add(VisualTest.createVariableSlider("Depth", 1, 200, new VisualTests.Value() {
+      @Override
+      public void set(int v) {
+        myDepth = v;
+      }
+
+      @Override
+      public int get() {
+        return myDepth;
+      }
+    }));
+    controls.add(VisualTest.createVariableSlider("Calls (thousands)", 1, 2000, new VisualTests.Value() {
+      @Override
+      public void set(int v) {
+        myCallCount = v * 1000;
+      }
+
+      @Override
+      public int get() {
+        return myCallCount / 1000;
+      }
+    }));
+    controls.add(VisualTest.createButton("Generate tree", e -> generateTree()));
+    controls.add(
+      new Box.Filler(new Dimension(0, 0), new Dimension(300, Integer.MAX_VALUE), new Dimension(300, Integer.MAX_VALUE)));
+  }
+
+  /**
+   * Generates a tree with about {@link #myCallCount} calls, made of random call stacks up to {@link #myDepth} deep.
+   */
+  private void generateTree() {
+    Random random = new Random(0);
+    DefaultHNode<Method> root = newNode(0, 0);
+    List<DefaultHNode<Method>> stack = new ArrayList<>();
+    stack.add(root);
+    long time = 0;
+    for (int i = 0; i < myCallCount; ++i) {
+      // Return from a random number of calls, then call deeper
+      int returns = random.nextInt(stack.size());
+      for (int j = 0; j < returns; ++j) {
+        stack.remove(stack.size() - 1).setEnd(time);
+      }
+      if (stack.size() > myDepth) {
+        stack.remove(stack.size() - 1).setEnd(time);
+      }
+      DefaultHNode<Method> parent = stack.get(stack.size() - 1);
+      DefaultHNode<Method> node = newNode(time, parent.getDepth() + 1);
+      parent.addChild(node);
+      stack.add(node);
+      time += random.nextInt((int)CALL_DURATION) + 1;
+    }
+    for (DefaultHNode<Method> node : stack) {
+      node.setEnd(time);
+    }
+
+    myChart.setHTree(root);
+    myRange.set(0, time);
+  }
+
+  @NotNull
+  private static DefaultHNode<Method> newNode(long start, int depth) {
+    Method method = new Method();
+    method.setNamespace("com.example");
+    method.setName("method" + depth);
+    DefaultHNode<Method> node = new DefaultHNode<>(method, start, start);
+    node.setDepth(depth);
+    return node;
+  }
+}
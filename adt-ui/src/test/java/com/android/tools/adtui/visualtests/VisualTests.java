@@ -60,6 +60,7 @@ public class VisualTests {
       dialog.addTest(new FlameGraphVisualTest());
       dialog.addTest(new AccordionVisualTest());
       dialog.addTest(new ThreadCallsVisualTest());
+      dialog.addTest(new HTreeChartVisualTest());
       dialog.addTest(new AxisLineChartVisualTest());
       dialog.addTest(new StateChartVisualTest());
       dialog.addTest(new SunburstVisualTest());
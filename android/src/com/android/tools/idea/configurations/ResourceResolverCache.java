@@ -33,8 +33,11 @@ import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ResourceHelper;
 import com.android.utils.SparseArray;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.android.sdk.AndroidPlatform;
@@ -46,7 +49,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.android.SdkConstants.DOT_PNG;
 import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
@@ -55,6 +61,13 @@ import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
 public class ResourceResolverCache {
   private static final Logger LOG = Logger.getInstance(ResourceResolverCache.class);
 
+  /**
+   * Maximum number of configurations for which configured resources are retained. The configured framework resources
+   * take several megabytes per configuration, so the least recently used ones are dropped beyond this limit.
+   */
+  @VisibleForTesting
+  static final int MAX_CACHED_CONFIGURATIONS = 8;
+
   /** The configuration manager this cache corresponds to */
   private final ConfigurationManager myManager;
 
@@ -62,6 +75,9 @@ public class ResourceResolverCache {
   @VisibleForTesting
   final Map<String, ResourceResolver> myResolverMap;
 
+  /** Map from full configuration to the keys of its resolvers in {@link #myResolverMap} */
+  private final SetMultimap<String, String> myResolverKeys = HashMultimap.create();
+
   /**
    * Map of configured app resources. These are cached separately from the final resource
    * resolver since they can be shared between different layouts that only vary by theme.
@@ -69,11 +85,12 @@ public class ResourceResolverCache {
    * resolvers also includes the theme.
    */
   @VisibleForTesting
-  final Map<String, Map<ResourceType, ResourceValueMap>> myAppResourceMap;
+  final Map<String, ConfiguredAppResources> myAppResourceMap;
 
   /**
    * Map of configured framework resources. These are cached separately from the final resource
-   * resolver since they can be shared between different layouts that only vary by theme
+   * resolver since they can be shared between different layouts that only vary by theme.
+   * Only the most recently used configurations are kept; see {@link #MAX_CACHED_CONFIGURATIONS}.
    */
   @VisibleForTesting
   final Map<String, Map<ResourceType, ResourceValueMap>> myFrameworkResourceMap;
@@ -81,6 +98,10 @@ public class ResourceResolverCache {
   /** The generation timestamp of our most recently cached app resources, used to invalidate on edits */
   private long myCachedGeneration;
 
+  /** Number of resource resolvers created and the total time spent creating them, for diagnostics */
+  private int myResolverBuildCount;
+  private long myResolverBuildTimeNs;
+
   /** Map from API level to framework resources */
   private SparseArray<AndroidTargetData> myFrameworkResources = new SparseArray<>();
 
@@ -95,7 +116,21 @@ public class ResourceResolverCache {
     myManager = manager;
     myResolverMap = Maps.newHashMap();
     myAppResourceMap = Maps.newHashMap();
-    myFrameworkResourceMap = Maps.newHashMap();
+    myFrameworkResourceMap = new LinkedHashMap<String, Map<ResourceType, ResourceValueMap>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Map<ResourceType, ResourceValueMap>> eldest) {
+        if (size() <= MAX_CACHED_CONFIGURATIONS) {
+          return false;
+        }
+        // The resolvers and the app resources for the configuration would keep the framework resources alive
+        String configurationKey = eldest.getKey();
+        myAppResourceMap.remove(configurationKey);
+        for (String resolverKey : myResolverKeys.removeAll(configurationKey)) {
+          myResolverMap.remove(resolverKey);
+        }
+        return true;
+      }
+    };
   }
 
   @NotNull
@@ -108,8 +143,10 @@ public class ResourceResolverCache {
       return ResourceResolver.create(Collections.emptyMap(), Collections.emptyMap(), null, false);
     }
     if (myCachedGeneration != resources.getModificationCount()) {
+      // Resolvers are cheap to recreate compared to the configured resources they are based on, which are
+      // only updated for the resource types that have actually changed; see getConfiguredAppResources
       myResolverMap.clear();
-      myAppResourceMap.clear();
+      myResolverKeys.clear();
     }
 
     // Store the modification count as soon as possible. This ensures that if there is any modification of resources while the
@@ -128,6 +165,7 @@ public class ResourceResolverCache {
     String resolverKey = themeStyle + configurationKey;
     ResourceResolver resolver = myResolverMap.get(resolverKey);
     if (resolver == null) {
+      long start = System.nanoTime();
       Map<ResourceType, ResourceValueMap> configuredAppRes;
       Map<ResourceType, ResourceValueMap> frameworkResources;
 
@@ -163,12 +201,7 @@ public class ResourceResolverCache {
       }
 
       // App resources
-      configuredAppRes = myAppResourceMap.get(configurationKey);
-      if (configuredAppRes == null) {
-        // Get the project resource values based on the current config.
-        configuredAppRes = ReadAction.compute(() -> resources.getConfiguredResources(fullConfiguration));
-        myAppResourceMap.put(configurationKey, configuredAppRes);
-      }
+      configuredAppRes = getConfiguredAppResources(resources, configurationKey, fullConfiguration);
 
       // Resource Resolver
       assert themeStyle.startsWith(PREFIX_RESOURCE_REF) : themeStyle;
@@ -187,12 +220,78 @@ public class ResourceResolverCache {
         }
       }
 
-      myResolverMap.put(resolverKey, resolver);
+      putResolver(configurationKey, resolverKey, resolver);
+
+      long elapsed = System.nanoTime() - start;
+      myResolverBuildCount++;
+      myResolverBuildTimeNs += elapsed;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("Created resource resolver for %1$s in %2$d ms (%3$d resolvers created in %4$d ms total)", resolverKey,
+                                TimeUnit.NANOSECONDS.toMillis(elapsed), myResolverBuildCount,
+                                TimeUnit.NANOSECONDS.toMillis(myResolverBuildTimeNs)));
+      }
     }
 
     return resolver;
   }
 
+  @VisibleForTesting
+  void putResolver(@NotNull String configurationKey, @NotNull String resolverKey, @NotNull ResourceResolver resolver) {
+    myResolverMap.put(resolverKey, resolver);
+    myResolverKeys.put(configurationKey, resolverKey);
+  }
+
+  /**
+   * Returns the app resources for the given configuration. Cached resources are brought up to date by only recomputing
+   * the resource types whose {@link LocalResourceRepository#getModificationCount(ResourceType) generation} has changed,
+   * so editing a string doesn't require configuring all the other app resources again.
+   */
+  @NotNull
+  private Map<ResourceType, ResourceValueMap> getConfiguredAppResources(@NotNull LocalResourceRepository resources,
+                                                                        @NotNull String configurationKey,
+                                                                        @NotNull FolderConfiguration fullConfiguration) {
+    ConfiguredAppResources cached = myAppResourceMap.get(configurationKey);
+    if (cached == null) {
+      // Read the generations first, so that changes made while the resources are being configured are picked up next time
+      long[] generations = getGenerations(resources);
+      Map<ResourceType, ResourceValueMap> configured = ReadAction.compute(() -> resources.getConfiguredResources(fullConfiguration));
+      myAppResourceMap.put(configurationKey, new ConfiguredAppResources(configured, generations));
+      return configured;
+    }
+
+    long[] generations = getGenerations(resources);
+    List<ResourceType> changedTypes = Lists.newArrayList();
+    for (ResourceType type : ResourceType.values()) {
+      if (generations[type.ordinal()] != cached.myGenerations[type.ordinal()]) {
+        changedTypes.add(type);
+      }
+    }
+    if (changedTypes.isEmpty()) {
+      return cached.myResources;
+    }
+
+    // Copy the map rather than updating it, since it may still be used by resolvers created earlier
+    Map<ResourceType, ResourceValueMap> configured = Maps.newEnumMap(ResourceType.class);
+    configured.putAll(cached.myResources);
+    ReadAction.run(() -> {
+      for (ResourceType type : changedTypes) {
+        configured.put(type, resources.getConfiguredResources(type, fullConfiguration));
+      }
+    });
+    myAppResourceMap.put(configurationKey, new ConfiguredAppResources(configured, generations));
+    return configured;
+  }
+
+  @NotNull
+  private static long[] getGenerations(@NotNull LocalResourceRepository resources) {
+    ResourceType[] types = ResourceType.values();
+    long[] generations = new long[types.length];
+    for (ResourceType type : types) {
+      generations[type.ordinal()] = resources.getModificationCount(type);
+    }
+    return generations;
+  }
+
   /**
    * Returns a {@link ResourceRepository} for the framework resources based on the current configuration selection.
    *
@@ -313,6 +412,7 @@ public class ResourceResolverCache {
     myCachedGeneration = 0;
     myAppResourceMap.clear();
     myResolverMap.clear();
+    myResolverKeys.clear();
   }
 
   /**
@@ -336,8 +436,21 @@ public class ResourceResolverCache {
     }
     if (myCustomResolverKey != null) {
       myResolverMap.remove(myCustomResolverKey);
+      myResolverKeys.remove(myCustomConfigurationKey, myCustomResolverKey);
     }
     myCustomConfigurationKey = newCustomConfigurationKey;
     myCustomResolverKey = newCustomResolverKey;
   }
+
+  /** Configured app resources along with the resource type generations they were computed for */
+  @VisibleForTesting
+  static class ConfiguredAppResources {
+    @NotNull final Map<ResourceType, ResourceValueMap> myResources;
+    @NotNull private final long[] myGenerations;
+
+    private ConfiguredAppResources(@NotNull Map<ResourceType, ResourceValueMap> resources, @NotNull long[] generations) {
+      myResources = resources;
+      myGenerations = generations;
+    }
+  }
 }
@@ -43,15 +43,17 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.impl.status.InlineProgressIndicator;
+import com.intellij.util.concurrency.SequentialTaskExecutor;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import javax.swing.*;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 
 public class HprofEditor extends CaptureEditor {
   @NotNull private static final Logger LOG = Logger.getInstance(HprofEditor.class);
@@ -59,6 +61,13 @@ public class HprofEditor extends CaptureEditor {
   @Nullable private Snapshot mySnapshot;
   private boolean myIsValid = true;
 
+  /**
+   * Runs the analyzer tasks of this editor one at a time on pooled threads, as a {@link Snapshot} can only be read by one thread at a
+   * time. Snapshots of different editors are analyzed in parallel.
+   */
+  @NotNull private final ExecutorService myAnalysisExecutor =
+    new SequentialTaskExecutor("Hprof analysis", PooledThreadExecutor.INSTANCE);
+
   public HprofEditor(@NotNull final Project project, @NotNull final VirtualFile file) {
     AnalyzerTask[] tasks = new AnalyzerTask[]{new LeakedActivityAnalyzerTask(), new DuplicatedStringsAnalyzerTask()};
     myPanel = new CapturePanel(project, this, tasks, true);
@@ -224,8 +233,8 @@ public class HprofEditor extends CaptureEditor {
     MemoryAnalyzer memoryAnalyzer = new MemoryAnalyzer();
     assert memoryAnalyzer.accept(captureGroup);
 
-    // TODO change this back to PooledThreadExecutor.INSTANCE once multi-reader problem has been solved in Snapshot
-    return memoryAnalyzer.analyze(captureGroup, listeners, tasks, EdtExecutor.INSTANCE, Executors.newSingleThreadExecutor());
+    // The tasks stay on the sequential executor until Snapshot supports concurrent readers
+    return memoryAnalyzer.analyze(captureGroup, listeners, tasks, EdtExecutor.INSTANCE, myAnalysisExecutor);
   }
 
   private static void updateIndicator(@NotNull final InlineProgressIndicator indicator, final double fraction, @NotNull final String text) {
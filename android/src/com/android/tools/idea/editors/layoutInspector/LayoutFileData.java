@@ -17,13 +17,15 @@ package com.android.tools.idea.editors.layoutInspector;
 
 import com.android.layoutinspector.LayoutInspectorCaptureOptions;
 import com.android.layoutinspector.model.ViewNode;
+import com.google.common.io.ByteStreams;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 
@@ -32,11 +34,8 @@ public class LayoutFileData {
   @Nullable public final ViewNode myNode;
 
   public LayoutFileData(@NotNull VirtualFile file) throws IOException {
-    byte[] previewBytes;
-
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(file.contentsToByteArray()));
-
-    try {
+    // Stream the capture rather than loading it in memory first: the preview image makes up most of the file
+    try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(file.getInputStream()))) {
       // Parse options
       LayoutInspectorCaptureOptions options = new LayoutInspectorCaptureOptions();
       options.parse(input.readUTF());
@@ -49,14 +48,9 @@ public class LayoutFileData {
         throw new IOException("Error parsing view node");
       }
 
-      // Preview image
-      previewBytes = new byte[input.readInt()];
-      input.readFully(previewBytes);
+      // Preview image, decoded straight from the file. ImageIO would otherwise buffer the stream in a temporary file.
+      int previewLength = input.readInt();
+      myBufferedImage = ImageIO.read(new MemoryCacheImageInputStream(ByteStreams.limit(input, previewLength)));
     }
-    finally {
-      input.close();
-    }
-
-    myBufferedImage = ImageIO.read(new ByteArrayInputStream(previewBytes));
   }
 }
@@ -18,6 +18,7 @@ package com.android.tools.idea.editors.layoutInspector.ui;
 import com.android.layoutinspector.model.DisplayInfo;
 import com.android.layoutinspector.model.ViewNode;
 import com.android.tools.idea.editors.theme.MaterialColors;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import org.jetbrains.annotations.NotNull;
@@ -27,6 +28,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.util.List;
 
 /**
@@ -40,6 +42,8 @@ public class ViewNodeActiveDisplay extends JComponent {
 
   private static final Stroke DEFAULT_STROKE = new BasicStroke(1);
   private static final Stroke THICK_STROKE = new BasicStroke(2);
+  /** Distance by which the boxes drawn with {@link #THICK_STROKE} can extend beyond the bounds of their node. */
+  @VisibleForTesting static final int STROKE_MARGIN = 2;
 
   @NotNull
   private final ViewNode mRoot;
@@ -55,6 +59,14 @@ public class ViewNodeActiveDisplay extends JComponent {
   private int mDrawShiftX;
   private int mDrawShiftY;
 
+  /**
+   * The preview scaled down to the size it is painted at, in device pixels. Captures of high resolution devices are much larger
+   * than the component, so scaling them on every repaint makes hovering slow.
+   */
+  @Nullable
+  private BufferedImage mScaledPreview;
+  private double mScaledPreviewDeviceScale;
+
   @Nullable
   private ViewNode mHoverNode;
   @Nullable
@@ -79,8 +91,9 @@ public class ViewNodeActiveDisplay extends JComponent {
 
   public void setHoverNode(@Nullable ViewNode node) {
     if (!Objects.equal(node, mHoverNode)) {
+      repaintNode(mHoverNode);
       mHoverNode = node;
-      repaint();
+      repaintNode(mHoverNode);
 
       for (ViewNodeActiveDisplayListener listener : mListeners) {
         listener.onViewNodeOver(mHoverNode);
@@ -90,8 +103,9 @@ public class ViewNodeActiveDisplay extends JComponent {
 
   public void setSelectedNode(@NotNull ViewNode node) {
     if (!Objects.equal(node, mSelectedNode)) {
+      repaintNode(mSelectedNode);
       mSelectedNode = node;
-      repaint();
+      repaintNode(mSelectedNode);
 
       for (ViewNodeActiveDisplayListener listener : mListeners) {
         listener.onNodeSelected(mSelectedNode);
@@ -99,6 +113,12 @@ public class ViewNodeActiveDisplay extends JComponent {
     }
   }
 
+  @VisibleForTesting
+  @Nullable
+  BufferedImage getScaledPreview() {
+    return mScaledPreview;
+  }
+
   @Override
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
@@ -107,6 +127,7 @@ public class ViewNodeActiveDisplay extends JComponent {
       mLastWidth = getWidth();
       mLastHeight = getHeight();
       recalculateNodeBounds();
+      mScaledPreview = null;
     }
 
     paintPreview((Graphics2D) g);
@@ -158,19 +179,37 @@ public class ViewNodeActiveDisplay extends JComponent {
     }
   }
 
+  /**
+   * Repaints only the area covered by the box of the given node, e.g. when it stops or starts being hovered.
+   */
+  private void repaintNode(@Nullable ViewNode node) {
+    if (node != null) {
+      Rectangle box = node.previewBox;
+      repaint(mDrawShiftX + box.x - STROKE_MARGIN, mDrawShiftY + box.y - STROKE_MARGIN,
+              box.width + 2 * STROKE_MARGIN + 1, box.height + 2 * STROKE_MARGIN + 1);
+    }
+  }
+
   private void paintPreview(Graphics2D g) {
     g.translate(mDrawShiftX, mDrawShiftY);
 
-    if (mPreview != null) {
-      g.drawImage(mPreview, 0, 0, mRoot.previewBox.width, mRoot.previewBox.height,
-                  0, 0, mPreview.getWidth(null), mPreview.getHeight(null), null);
+    int width = mRoot.previewBox.width;
+    int height = mRoot.previewBox.height;
+    if (mPreview != null && width > 0 && height > 0) {
+      // Scale to device pixels, so that the preview stays sharp on HiDPI screens
+      double deviceScale = g.getTransform().getScaleX();
+      if (mScaledPreview == null || mScaledPreviewDeviceScale != deviceScale) {
+        mScaledPreview = scaleImage(mPreview, (int)Math.ceil(width * deviceScale), (int)Math.ceil(height * deviceScale));
+        mScaledPreviewDeviceScale = deviceScale;
+      }
+      g.drawImage(mScaledPreview, 0, 0, width, height, null);
     }
 
-    g.clipRect(0, 0, mRoot.previewBox.width, mRoot.previewBox.height);
+    g.clipRect(0, 0, width, height);
     g.setColor(DEFAULT_COLOR);
     g.setStroke(DEFAULT_STROKE);
 
-    paintNode(mRoot, g);
+    paintNode(mRoot, g, g.getClipBounds());
 
     g.setStroke(THICK_STROKE);
     if (mHoverNode != null && mSelectedNode != mHoverNode) {
@@ -183,20 +222,53 @@ public class ViewNodeActiveDisplay extends JComponent {
     }
   }
 
-  private void paintNode(ViewNode node, Graphics2D g) {
-    if (node != mHoverNode && node != mSelectedNode) {
+  private void paintNode(ViewNode node, Graphics2D g, @Nullable Rectangle clip) {
+    // Children may lie outside of the box of their parent, so only the box itself can be skipped when it is outside of the clip
+    if (node != mHoverNode && node != mSelectedNode && (clip == null || intersects(node.previewBox, clip))) {
       // Hover node & selected node are drawn last
       paintBox(node.previewBox, g);
     }
     if (!node.isLeaf()) {
       for (ViewNode child : node.children) {
         if (child.isDrawn()) {
-          paintNode(child, g);
+          paintNode(child, g, clip);
         }
       }
     }
   }
 
+  private static boolean intersects(@NotNull Rectangle box, @NotNull Rectangle clip) {
+    return box.x <= clip.x + clip.width && box.x + box.width >= clip.x &&
+           box.y <= clip.y + clip.height && box.y + box.height >= clip.y;
+  }
+
+  /**
+   * Scales the image to the given size. Large reductions are done by halving the image in several steps, since a single bilinear
+   * step only samples a few of the source pixels and gives a noisy result.
+   */
+  @NotNull
+  private static BufferedImage scaleImage(@NotNull Image image, int width, int height) {
+    Image current = image;
+    int currentWidth = image.getWidth(null);
+    int currentHeight = image.getHeight(null);
+    do {
+      currentWidth = Math.max(width, currentWidth / 2);
+      currentHeight = Math.max(height, currentHeight / 2);
+      BufferedImage scaled = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D g = scaled.createGraphics();
+      try {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+      }
+      finally {
+        g.dispose();
+      }
+      current = scaled;
+    }
+    while (currentWidth != width || currentHeight != height);
+    return (BufferedImage)current;
+  }
+
   private void paintBox(Rectangle box, Graphics2D g) {
     g.drawRect(box.x, box.y, box.width, box.height);
   }
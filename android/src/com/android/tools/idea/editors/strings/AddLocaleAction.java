@@ -120,10 +120,10 @@ final class AddLocaleAction extends AnAction {
       return data.getStringResource(key);
     }
 
-    Optional<StringResource> optionalResource = data.getResources().stream()
-      .filter(resource -> resource.getKey().getDirectory() != null)
+    Optional<StringResourceKey> optionalKey = data.getKeys().stream()
+      .filter(k -> k.getDirectory() != null)
       .findFirst();
 
-    return optionalResource.orElseThrow(IllegalStateException::new);
+    return data.getStringResource(optionalKey.orElseThrow(IllegalStateException::new));
   }
 }
@@ -36,16 +36,27 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * The string resources shown in the translations editor.
+ * <p>
+ * Projects can have thousands of keys and dozens of locales, so a {@link StringResource} is only created when its key is first
+ * asked for, typically when its row is painted, and the locales are computed once from the configurations of the resource items.
+ */
 public class StringResourceData {
   private final AndroidFacet myFacet;
+  private final StringResourceRepository myRepository;
+  private final Set<StringResourceKey> myKeys;
   private final Map<StringResourceKey, StringResource> myKeyToResourceMap;
 
-  public StringResourceData(@NotNull AndroidFacet facet,
-                            @NotNull Map<StringResourceKey, StringResource> keyToResourceMap) {
+  @Nullable
+  private List<Locale> myLocaleList;
+
+  StringResourceData(@NotNull AndroidFacet facet, @NotNull StringResourceRepository repository) {
     myFacet = facet;
-    myKeyToResourceMap = keyToResourceMap;
+    myRepository = repository;
+    myKeys = repository.getKeys();
+    myKeyToResourceMap = new HashMap<>();
   }
 
   public void changeKeyName(@NotNull StringResourceKey key, @NotNull String newName) {
@@ -83,7 +94,7 @@ public class StringResourceData {
 
   @Nullable
   public String validateKey(@NotNull StringResourceKey key) {
-    if (!myKeyToResourceMap.keySet().contains(key)) {
+    if (!myKeys.contains(key)) {
       throw new IllegalArgumentException("Key " + key + " does not exist.");
     }
 
@@ -113,8 +124,8 @@ public class StringResourceData {
   @VisibleForTesting
   Collection<Locale> getMissingTranslations(@NotNull StringResourceKey key) {
     Set<Locale> missingTranslations = Sets.newHashSet();
-    for (Locale locale : getLocaleSet()) {
-      StringResource stringResource = getStringResource(key);
+    StringResource stringResource = getStringResource(key);
+    for (Locale locale : getLocaleList()) {
       if (stringResource.isTranslationMissing(locale)) {
         missingTranslations.add(locale);
       }
@@ -164,45 +175,42 @@ public class StringResourceData {
   }
 
   boolean containsKey(@NotNull StringResourceKey key) {
-    return myKeyToResourceMap.containsKey(key);
+    return myKeys.contains(key);
   }
 
   @NotNull
   public StringResource getStringResource(@NotNull StringResourceKey key) {
-    StringResource resource = myKeyToResourceMap.get(key);
-
-    if (resource == null) {
+    if (!myKeys.contains(key)) {
       throw new IllegalArgumentException(key.toString());
     }
 
-    return resource;
-  }
-
-  @NotNull
-  public Collection<StringResource> getResources() {
-    return myKeyToResourceMap.values();
+    return myKeyToResourceMap.computeIfAbsent(key, k -> new StringResource(k, myRepository, myFacet.getModule().getProject()));
   }
 
   @NotNull
   public List<StringResourceKey> getKeys() {
-    return new ArrayList<>(myKeyToResourceMap.keySet());
+    return new ArrayList<>(myKeys);
   }
 
+  /**
+   * Returns the locales with at least one translation when the data was loaded, sorted by language name. Adding or removing
+   * locales reloads the data.
+   */
   @NotNull
   public List<Locale> getLocaleList() {
-    return getTranslatedLocaleStream()
-      .distinct()
-      .sorted(Locale.LANGUAGE_NAME_COMPARATOR)
-      .collect(Collectors.toList());
-  }
+    if (myLocaleList == null) {
+      myLocaleList = myKeys.stream()
+        .flatMap(key -> myRepository.getTranslatedLocales(key).stream())
+        .distinct()
+        .sorted(Locale.LANGUAGE_NAME_COMPARATOR)
+        .collect(Collectors.toList());
+    }
 
-  @NotNull
-  Set<Locale> getLocaleSet() {
-    return getTranslatedLocaleStream().collect(Collectors.toSet());
+    return Collections.unmodifiableList(myLocaleList);
   }
 
   @NotNull
-  private Stream<Locale> getTranslatedLocaleStream() {
-    return myKeyToResourceMap.values().stream().flatMap(resource -> resource.getTranslatedLocales().stream());
+  Set<Locale> getLocaleSet() {
+    return new HashSet<>(getLocaleList());
   }
 }
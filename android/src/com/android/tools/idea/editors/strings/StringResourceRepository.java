@@ -24,14 +24,12 @@ import com.android.tools.idea.rendering.Locale;
 import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.MultiResourceRepository;
 import com.android.tools.idea.res.ResourceFolderRepository;
-import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -53,18 +51,28 @@ public class StringResourceRepository {
 
   @NotNull
   final StringResourceData getData(@NotNull AndroidFacet facet) {
-    Project project = facet.getModule().getProject();
-
-    Map<StringResourceKey, StringResource> map = myKeyToRepositoryMap.keySet().stream()
-      .collect(Collectors.toMap(Function.identity(),
-                                key -> new StringResource(key, this, project),
-                                (resource1, resource2) -> {
-                                  throw new IllegalStateException("Duplicate key " + resource1);
-                                },
-                                LinkedHashMap::new
-      ));
-
-    return new StringResourceData(facet, map);
+    return new StringResourceData(facet, this);
+  }
+
+  /**
+   * Returns the keys of all the string resources, in the order of the child repositories.
+   */
+  @NotNull
+  final Set<StringResourceKey> getKeys() {
+    return Collections.unmodifiableSet(myKeyToRepositoryMap.keySet());
+  }
+
+  /**
+   * Returns the locales the key has a translation for. Unlike {@link StringResource}, this only looks at the configurations of the
+   * resource items, not at their values, so it is cheap to call for every key.
+   */
+  @NotNull
+  final Collection<Locale> getTranslatedLocales(@NotNull StringResourceKey key) {
+    return getItems(myKeyToRepositoryMap.get(key), key).stream()
+      .map(item -> item.getConfiguration().getLocaleQualifier())
+      .filter(Objects::nonNull)
+      .map(Locale::create)
+      .collect(Collectors.toList());
   }
 
   @NotNull
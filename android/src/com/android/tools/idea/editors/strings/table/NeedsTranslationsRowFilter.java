@@ -15,13 +15,13 @@
  */
 package com.android.tools.idea.editors.strings.table;
 
+import com.android.tools.idea.editors.strings.StringResource;
 import com.intellij.openapi.actionSystem.Presentation;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.stream.IntStream;
 
-import static com.android.tools.idea.editors.strings.table.StringResourceTableModel.DEFAULT_VALUE_COLUMN;
-import static com.android.tools.idea.editors.strings.table.StringResourceTableModel.UNTRANSLATABLE_COLUMN;
+import static com.android.tools.idea.editors.strings.table.StringResourceTableModel.FIXED_COLUMN_COUNT;
 
 public final class NeedsTranslationsRowFilter extends StringResourceTableRowFilter {
 
@@ -39,12 +39,20 @@ public final class NeedsTranslationsRowFilter extends StringResourceTableRowFilt
 
   @Override
   public boolean include(@NotNull Entry<? extends StringResourceTableModel, ? extends Integer> entry) {
-    if ((boolean)entry.getValue(UNTRANSLATABLE_COLUMN)) {
+    StringResourceTableModel model = entry.getModel();
+    StringResource resource = model.getStringResourceAt(entry.getIdentifier());
+
+    if (!resource.isTranslatable()) {
       return false;
     }
 
-    return myShowAll || IntStream.range(DEFAULT_VALUE_COLUMN, entry.getValueCount())
-      .mapToObj(entry::getStringValue)
-      .anyMatch(String::isEmpty);
+    if (myShowAll || resource.getDefaultValueAsString().isEmpty()) {
+      return true;
+    }
+
+    // Go through the resource rather than the entry values so the cells of every column don't have to be converted to strings
+    return IntStream.range(FIXED_COLUMN_COUNT, model.getColumnCount())
+      .mapToObj(model::getLocale)
+      .anyMatch(locale -> locale != null && resource.getTranslationAsString(locale).isEmpty());
   }
 }
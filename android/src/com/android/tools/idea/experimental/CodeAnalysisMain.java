@@ -18,15 +18,20 @@ package com.android.tools.idea.experimental;
 import com.android.tools.idea.experimental.codeanalysis.PsiCFGScene;
 import com.android.tools.idea.experimental.codeanalysis.datastructs.PsiCFGClass;
 import com.android.tools.idea.experimental.codeanalysis.utils.PsiCFGAnalysisUtil;
+import com.android.tools.idea.experimental.codeanalysis.utils.PsiCFGDebugUtil;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.intellij.analysis.AnalysisScope;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class CodeAnalysisMain {
 
@@ -36,6 +41,14 @@ public class CodeAnalysisMain {
 
   private PsiCFGScene mScene;
 
+  /**
+   * The PSI modification count and the files the scene in {@link #mScene} was built from.
+   * The CFGs and the call graph only depend on the PSI of these files (and of the library
+   * classes they refer to), so the scene can be reused as long as neither changes.
+   */
+  private long mSceneModificationCount = -1;
+  private Set<PsiFile> mSceneFiles;
+
   private CodeAnalysisMain(Project project) {
     mProject = project;
   }
@@ -55,33 +68,66 @@ public class CodeAnalysisMain {
   public void analyze(@NotNull AnalysisScope scope) {
 
 //    PsiDocumentManager.getInstance(mProject).commitAllDocuments();
-    //Create a mScene for this project.
-    //Each project has its own mScene.
-    mScene = PsiCFGScene.createFreshInstance(mProject);
-    PsiCFGAnalysisUtil AnalysisUtil = mScene.analysisUtil;
+    long modificationCount = PsiManager.getInstance(mProject).getModificationTracker().getModificationCount();
 
     //Get list of java files available in this project
-    int fileCount = scope.getFileCount();
-    //LOG.info("File count in scope " + fileCount);
+    long start = System.nanoTime();
     PsiFile[] allFilesInScope = findAllJavaFiles(mProject, scope);
-    //LOG.info("File count in visitor " + allFilesInScope.length);
+    logPhaseTime("Collect java files", start);
     //outputFileNames(allFilesInScope);
 
+    Set<PsiFile> files = Sets.newHashSet(Arrays.asList(allFilesInScope));
+    if (mScene != null && modificationCount == mSceneModificationCount && files.equals(mSceneFiles)) {
+      //Nothing changed since the last analysis, the CFGs and the call graph are still valid.
+      PsiCFGDebugUtil.LOG.info("Reusing the CFGs and the call graph of the previous analysis");
+      return;
+    }
+
+    //Create a mScene for this project.
+    //Each project has its own mScene.
+    mScene = PsiCFGScene.createFreshInstance(mProject);
+    mSceneModificationCount = -1;
+    mSceneFiles = null;
+    PsiCFGAnalysisUtil AnalysisUtil = mScene.analysisUtil;
+
     //Extract all java classes from java files.
     //Consider these classes are application classes.
     //As they are written by developer
+    start = System.nanoTime();
     initiateProjectClassesFromPsiFile(allFilesInScope);
-    PsiCFGClass[] allClasses = mScene.getAllApplicationClasses();
+    logPhaseTime("Create application classes", start);
 
     //Perform the analysis
+    start = System.nanoTime();
     AnalysisUtil.performStage0();
+    logPhaseTime("Stage 0 (library classes)", start);
+    start = System.nanoTime();
     AnalysisUtil.performStage1();
+    logPhaseTime("Stage 1 (fields and methods)", start);
+    start = System.nanoTime();
     AnalysisUtil.performStage2();
+    logPhaseTime("Stage 2 (class hierarchy)", start);
+    start = System.nanoTime();
     AnalysisUtil.performStage3();
+    logPhaseTime("Stage 3 (method CFGs)", start);
+    start = System.nanoTime();
     AnalysisUtil.performStage4();
+    logPhaseTime("Stage 4 (library class hierarchy)", start);
     //AnalysisUtil.summarizeStage();
+    start = System.nanoTime();
     AnalysisUtil.performStage5();
+    logPhaseTime("Stage 5 (call graph)", start);
+    start = System.nanoTime();
     AnalysisUtil.performStage6();
+    logPhaseTime("Stage 6", start);
+
+    mSceneModificationCount = modificationCount;
+    mSceneFiles = files;
+  }
+
+  private static void logPhaseTime(@NotNull String phase, long startNs) {
+    PsiCFGDebugUtil.LOG.info(String.format("%1$s took %2$d ms", phase,
+                                           TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs)));
   }
 
   private void outputFileNames(PsiFile[] filesArray) {
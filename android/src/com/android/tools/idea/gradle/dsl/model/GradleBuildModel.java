@@ -41,7 +41,9 @@ import com.android.tools.idea.gradle.plugin.AndroidPluginInfo;
 import com.google.common.collect.ImmutableList;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.HashSet;
 import org.jetbrains.annotations.NonNls;
@@ -58,6 +60,8 @@ import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.path.GrM
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -96,6 +100,26 @@ public class GradleBuildModel extends GradleFileModel {
     return file != null ? parseBuildFile(file, module.getProject(), module.getName()) : null;
   }
 
+  /**
+   * Returns the models of the build files of the given modules, parsing the settings file only once for all of them rather than
+   * once per module. Modules without a build file are not in the returned map.
+   */
+  @NotNull
+  public static Map<Module, GradleBuildModel> get(@NotNull Project project, @NotNull Collection<Module> modules) {
+    Map<Module, GradleBuildModel> models = new HashMap<>();
+    ApplicationManager.getApplication().runReadAction(() -> {
+      GradleSettingsModel settingsModel = GradleSettingsModel.get(project);
+      for (Module module : modules) {
+        ProgressManager.checkCanceled();
+        VirtualFile file = getGradleBuildFile(module);
+        if (file != null) {
+          models.put(module, parseBuildFile(file, project, module.getName(), settingsModel));
+        }
+      }
+    });
+    return models;
+  }
+
   @NotNull
   public static GradleBuildModel parseBuildFile(@NotNull VirtualFile file, @NotNull Project project) {
     return parseBuildFile(file, project, "<Unknown>");
@@ -103,17 +127,29 @@ public class GradleBuildModel extends GradleFileModel {
 
   @NotNull
   public static GradleBuildModel parseBuildFile(@NotNull VirtualFile file, @NotNull Project project, @NotNull String moduleName) {
+    return ApplicationManager.getApplication().runReadAction(
+      (Computable<GradleBuildModel>)() -> parseBuildFile(file, project, moduleName, GradleSettingsModel.get(project)));
+  }
+
+  /**
+   * Parses the given build file, looking up its parent modules in the given settings model instead of parsing the settings file again.
+   */
+  @NotNull
+  static GradleBuildModel parseBuildFile(@NotNull VirtualFile file,
+                                         @NotNull Project project,
+                                         @NotNull String moduleName,
+                                         @Nullable GradleSettingsModel settingsModel) {
     GradleBuildDslFile buildDslFile = new GradleBuildDslFile(file, project, moduleName);
     ApplicationManager.getApplication().runReadAction(() -> {
-      populateWithParentModuleSubProjectsProperties(buildDslFile);
+      populateWithParentModuleSubProjectsProperties(buildDslFile, settingsModel);
       populateSiblingDslFileWithGradlePropertiesFile(buildDslFile);
       buildDslFile.parse();
     });
     return new GradleBuildModel(buildDslFile);
   }
 
-  private static void populateWithParentModuleSubProjectsProperties(@NotNull GradleBuildDslFile buildDslFile) {
-    GradleSettingsModel gradleSettingsModel = GradleSettingsModel.get(buildDslFile.getProject());
+  private static void populateWithParentModuleSubProjectsProperties(@NotNull GradleBuildDslFile buildDslFile,
+                                                                   @Nullable GradleSettingsModel gradleSettingsModel) {
     if (gradleSettingsModel == null) {
       return;
     }
@@ -20,6 +20,7 @@ import com.android.tools.idea.gradle.dsl.parser.GradleDslFile;
 import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslElement;
 import com.android.tools.idea.gradle.dsl.parser.settings.ProjectPropertiesDslElement;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
@@ -27,6 +28,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 
 import static com.android.SdkConstants.FN_BUILD_GRADLE;
 import static com.android.tools.idea.gradle.util.GradleUtil.getGradleSettingsFile;
@@ -108,9 +110,12 @@ public class GradleSettingsModel extends GradleFileModel {
 
   @Nullable
   public File moduleDirectory(String modulePath) {
-    modulePath = standardiseModulePath(modulePath);
+    return moduleDirectory(standardiseModulePath(modulePath), Sets.newHashSet(modulePaths()));
+  }
 
-    if (!modulePaths().contains(modulePath)) {
+  @Nullable
+  private File moduleDirectory(@NotNull String modulePath, @NotNull Set<String> allModulePaths) {
+    if (!allModulePaths.contains(modulePath)) {
       return null;
     }
 
@@ -133,11 +138,11 @@ public class GradleSettingsModel extends GradleFileModel {
       parentDir = rootDirPath;
     }
     else {
-      String parentModule = parentModule(modulePath);
+      String parentModule = parentModule(modulePath, allModulePaths);
       if (parentModule == null) {
         return null;
       }
-      parentDir = moduleDirectory(parentModule);
+      parentDir = moduleDirectory(parentModule, allModulePaths);
     }
     String moduleName = modulePath.substring(modulePath.lastIndexOf(':') + 1);
     return new File(parentDir, moduleName);
@@ -145,8 +150,11 @@ public class GradleSettingsModel extends GradleFileModel {
 
   @Nullable
   public String moduleWithDirectory(@NotNull File moduleDir) {
-    for (String modulePath : modulePaths()) {
-      if (filesEqual(moduleDir, moduleDirectory(modulePath))) {
+    // Collect the module paths only once, projects with many modules have many of them
+    List<String> modulePaths = modulePaths();
+    Set<String> allModulePaths = Sets.newHashSet(modulePaths);
+    for (String modulePath : modulePaths) {
+      if (filesEqual(moduleDir, moduleDirectory(modulePath, allModulePaths))) {
         return modulePath;
       }
     }
@@ -163,14 +171,17 @@ public class GradleSettingsModel extends GradleFileModel {
     if (buildFile == null) {
       return null;
     }
-    return GradleBuildModel.parseBuildFile(buildFile, myGradleDslFile.getProject(), modulePath.substring(modulePath.lastIndexOf(':') + 1));
+    return GradleBuildModel.parseBuildFile(buildFile, myGradleDslFile.getProject(), modulePath.substring(modulePath.lastIndexOf(':') + 1),
+                                           this);
   }
 
   @Nullable
   public String parentModule(@NotNull String modulePath) {
-    modulePath = standardiseModulePath(modulePath);
+    return parentModule(standardiseModulePath(modulePath), Sets.newHashSet(modulePaths()));
+  }
 
-    List<String> allModulePaths = modulePaths();
+  @Nullable
+  private static String parentModule(@NotNull String modulePath, @NotNull Set<String> allModulePaths) {
     if (!allModulePaths.contains(modulePath)) {
       return null;
     }
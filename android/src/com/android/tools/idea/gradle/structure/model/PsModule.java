@@ -56,7 +56,7 @@ public abstract class PsModule extends PsChildModel {
     myResolvedModel = resolvedModel;
     myGradlePath = gradlePath;
     myModuleName = resolvedModel.getName();
-    myParsedModel = GradleBuildModel.get(myResolvedModel);
+    myParsedModel = parent.getParsedModel(myResolvedModel);
   }
 
   protected PsModule(@NotNull PsProject parent, @NotNull String name) {
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.gradle.structure.model;
 
+import com.android.tools.idea.gradle.dsl.model.GradleBuildModel;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.model.JavaModuleModel;
 import com.android.tools.idea.gradle.project.facet.java.JavaFacet;
@@ -29,6 +30,7 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import static com.android.tools.idea.gradle.util.GradleUtil.getGradlePath;
@@ -37,6 +39,8 @@ public class PsProject extends PsModel {
   @NotNull private final Project myProject;
 
   @NotNull private final List<PsModule> myModules = Lists.newArrayList();
+  // Build files parsed for the modules that are not created yet
+  @NotNull private final Map<Module, GradleBuildModel> myParsedModels;
 
   private boolean myModified;
 
@@ -44,10 +48,18 @@ public class PsProject extends PsModel {
     super(null);
     myProject = project;
 
+    List<Module> gradleModules = Lists.newArrayList();
     for (Module resolvedModel : ModuleManager.getInstance(myProject).getModules()) {
+      // Only Gradle-based modules are displayed in the PSD.
+      if (getGradlePath(resolvedModel) != null) {
+        gradleModules.add(resolvedModel);
+      }
+    }
+    myParsedModels = GradleBuildModel.get(myProject, gradleModules);
+
+    for (Module resolvedModel : gradleModules) {
       String gradlePath = getGradlePath(resolvedModel);
       if (gradlePath != null) {
-        // Only Gradle-based modules are displayed in the PSD.
         PsModule module = null;
 
         AndroidModuleModel gradleModel = AndroidModuleModel.get(resolvedModel);
@@ -70,6 +82,17 @@ public class PsProject extends PsModel {
         }
       }
     }
+    myParsedModels.clear();
+  }
+
+  /**
+   * Returns the parsed build file of the given module, reusing the one parsed with the build files of all the modules of the project
+   * when it was not handed out yet.
+   */
+  @Nullable
+  GradleBuildModel getParsedModel(@NotNull Module module) {
+    GradleBuildModel parsedModel = myParsedModels.remove(module);
+    return parsedModel != null ? parsedModel : GradleBuildModel.get(module);
   }
 
   @Nullable
@@ -144,7 +144,7 @@ public class LintIdeJavaParser extends JavaParser {
     PsiJavaFile javaFile = (PsiJavaFile)psiFile;
 
     try {
-      return LombokPsiConverter.convert(javaFile);
+      return LombokPsiConverter.getCompilationUnit(javaFile);
     } catch (ProcessCanceledException ignore) {
       context.getDriver().cancel();
       return null;
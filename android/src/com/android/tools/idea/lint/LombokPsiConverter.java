@@ -21,6 +21,7 @@ import com.google.common.base.Splitter;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -28,6 +29,9 @@ import com.intellij.psi.*;
 import com.intellij.psi.impl.source.tree.JavaElementType;
 import com.intellij.psi.javadoc.PsiDocComment;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import lombok.ast.*;
 
 /**
@@ -202,6 +206,24 @@ public class LombokPsiConverter {
     }
   }
 
+  /**
+   * Returns the Lombok AST tree of the given {@link PsiJavaFile}, converting it again only if the file or the Java structure of the
+   * project changed since the last call. The tree is shared by the lint runs of the editor and of batch inspections, which only
+   * read it.
+   *
+   * @param javaFile the file to be converted
+   * @return a corresponding Lombok AST tree
+   */
+  @Nullable
+  public static CompilationUnit getCompilationUnit(@NonNull PsiJavaFile javaFile) {
+    return CachedValuesManager.getCachedValue(javaFile, () -> {
+      CompilationUnit compilationUnit = convert(javaFile);
+      // Don't keep the result of a conversion that was cancelled halfway
+      ProgressManager.checkCanceled();
+      return CachedValueProvider.Result.create(compilationUnit, javaFile, PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+    });
+  }
+
   public static Node toNode(@NonNull PsiElement element) {
     if (element instanceof PsiClass) {
       return toTypeDeclaration((PsiClass)element);
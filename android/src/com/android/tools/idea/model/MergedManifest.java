@@ -25,6 +25,8 @@ import com.android.sdklib.AndroidVersion;
 import com.android.sdklib.IAndroidTarget;
 import com.android.sdklib.SdkVersionInfo;
 import com.android.sdklib.devices.Device;
+import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
+import com.android.tools.idea.gradle.project.sync.GradleSyncState;
 import com.android.tools.idea.rendering.multi.CompatibilityRenderTarget;
 import com.android.tools.idea.run.activity.ActivityLocatorUtils;
 import com.android.tools.lint.checks.PermissionHolder;
@@ -33,11 +35,27 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.intellij.ProjectTopics;
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.util.PathUtil;
+import com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.android.dom.manifest.Manifest;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
@@ -47,6 +65,9 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.android.SdkConstants.*;
 import static com.android.tools.lint.checks.PermissionRequirement.ATTR_PROTECTION_LEVEL;
@@ -55,28 +76,26 @@ import static com.android.xml.AndroidManifest.*;
 
 /**
  * To get a {@linkplain MergedManifest} use {@link MergedManifest#get(AndroidFacet)} or {@link MergedManifest#get(Module)}
+ * <p>
+ * The merged manifest data is published as an immutable {@link Snapshot}. Changes to manifest files (on disk or in the PSI),
+ * project roots and Gradle syncs mark the current snapshot as stale and schedule its recomputation in the background. Readers
+ * of an up to date snapshot don't lock and don't check any files; only readers of a stale snapshot recompute it synchronously.
  */
 public class MergedManifest {
+  /** Delay before recomputing the snapshot after a change, so that a burst of edits only causes a single merge. */
+  private static final int RECOMPUTE_DELAY_MS = 300;
 
   private final Module myModule;
-  private String myPackage;
-  private String myApplicationId;
-  private Integer myVersionCode;
-  private String myManifestTheme;
-  private Map<String, ActivityAttributes> myActivityAttributesMap;
+
+  /** Incremented whenever something the merged manifest depends on may have changed. */
+  private final AtomicLong myModificationCount = new AtomicLong();
+  private final AtomicBoolean myRecomputeScheduled = new AtomicBoolean();
+  private final Object myLock = new Object();
+  @Nullable private volatile Snapshot mySnapshot;
+
+  // The fields below are guarded by myLock.
   private ManifestInfo.ManifestFile myManifestFile;
-  private long myLastChecked;
-  private AndroidVersion myMinSdk;
-  private AndroidVersion myTargetSdk;
-  private String myApplicationIcon;
-  private String myApplicationLabel;
-  private boolean myApplicationSupportsRtl;
-  private Boolean myApplicationDebuggable;
-  private @Nullable Map<String, XmlNode.NodeKey> myNodeKeys;
-  private Document myDocument;
-  private List<VirtualFile> myManifestFiles;
-  private ModulePermissions myPermissionHolder;
-  private boolean myApplicationHasCode = true;
+  private boolean myListening;
 
   /**
    * Constructs a new MergedManifest
@@ -119,8 +138,7 @@ public class MergedManifest {
 
   @Nullable
   public Document getDocument() {
-    sync();
-    return myDocument;
+    return getSnapshot().myDocument;
   }
 
   /**
@@ -130,7 +148,7 @@ public class MergedManifest {
    */
   @Nullable
   public List<VirtualFile> getManifestFiles() {
-    return myManifestFiles;
+    return getSnapshot().myManifestFiles;
   }
 
   /**
@@ -139,7 +157,7 @@ public class MergedManifest {
    */
   @VisibleForTesting
   public void clear() {
-    myLastChecked = 0;
+    myModificationCount.incrementAndGet();
   }
 
   /**
@@ -149,8 +167,7 @@ public class MergedManifest {
    */
   @Nullable
   public String getPackage() {
-    sync();
-    return myPackage;
+    return getSnapshot().myPackage;
   }
 
   /**
@@ -158,14 +175,12 @@ public class MergedManifest {
    */
   @Nullable
   public String getApplicationId() {
-    sync();
-    return myApplicationId;
+    return getSnapshot().myApplicationId;
   }
 
   @Nullable
   public Integer getVersionCode() {
-    sync();
-    return myVersionCode;
+    return getSnapshot().myVersionCode;
   }
 
   /**
@@ -175,11 +190,7 @@ public class MergedManifest {
    */
   @NotNull
   public Map<String, ActivityAttributes> getActivityAttributesMap() {
-    sync();
-    if (myActivityAttributesMap == null) {
-      return Collections.emptyMap();
-    }
-    return myActivityAttributesMap;
+    return getSnapshot().myActivityAttributesMap;
   }
 
   /**
@@ -187,11 +198,12 @@ public class MergedManifest {
    */
   @Nullable
   public ActivityAttributes getActivityAttributes(@NotNull String activity) {
+    Snapshot snapshot = getSnapshot();
     int index = activity.indexOf('.');
-    if (index <= 0 && myApplicationId != null && !myApplicationId.isEmpty()) {
-      activity = myApplicationId + (index == -1 ? "." : "") + activity;
+    if (index <= 0 && snapshot.myApplicationId != null && !snapshot.myApplicationId.isEmpty()) {
+      activity = snapshot.myApplicationId + (index == -1 ? "." : "") + activity;
     }
-    return getActivityAttributesMap().get(activity);
+    return snapshot.myActivityAttributesMap.get(activity);
   }
 
   /**
@@ -201,8 +213,7 @@ public class MergedManifest {
    */
   @Nullable
   public String getManifestTheme() {
-    sync();
-    return myManifestTheme;
+    return getSnapshot().myManifestTheme;
   }
 
   /**
@@ -216,10 +227,9 @@ public class MergedManifest {
    */
   @NotNull
   public String getDefaultTheme(@Nullable IAndroidTarget renderingTarget, @Nullable ScreenSize screenSize, @Nullable Device device) {
-    sync();
-
-    if (myManifestTheme != null) {
-      return myManifestTheme;
+    String manifestTheme = getSnapshot().myManifestTheme;
+    if (manifestTheme != null) {
+      return manifestTheme;
     }
 
     // For Android Wear and Android TV, the defaults differ
@@ -265,8 +275,7 @@ public class MergedManifest {
    */
   @Nullable
   public String getApplicationIcon() {
-    sync();
-    return myApplicationIcon;
+    return getSnapshot().myApplicationIcon;
   }
 
   /**
@@ -276,8 +285,7 @@ public class MergedManifest {
    */
   @Nullable
   public String getApplicationLabel() {
-    sync();
-    return myApplicationLabel;
+    return getSnapshot().myApplicationLabel;
   }
 
   /**
@@ -286,8 +294,7 @@ public class MergedManifest {
    * @return true if the application has RTL support.
    */
   public boolean isRtlSupported() {
-    sync();
-    return myApplicationSupportsRtl;
+    return getSnapshot().myApplicationSupportsRtl;
   }
 
   /**
@@ -295,16 +302,14 @@ public class MergedManifest {
    */
   @Nullable
   public Boolean getApplicationDebuggable() {
-    sync();
-    return myApplicationDebuggable;
+    return getSnapshot().myApplicationDebuggable;
   }
 
   /**
    * Returns the value for the hasCode flag set in the manifest. Returns true if not set
    */
   public boolean getApplicationHasCode() {
-    sync();
-    return myApplicationHasCode;
+    return getSnapshot().myApplicationHasCode;
   }
 
   /**
@@ -314,8 +319,11 @@ public class MergedManifest {
    */
   @NotNull
   public AndroidVersion getTargetSdkVersion() {
-    sync();
-    return myTargetSdk != null ? myTargetSdk : getMinSdkVersion();
+    Snapshot snapshot = getSnapshot();
+    if (snapshot.myTargetSdk != null) {
+      return snapshot.myTargetSdk;
+    }
+    return snapshot.myMinSdk != null ? snapshot.myMinSdk : AndroidVersion.DEFAULT;
   }
 
   /**
@@ -325,8 +333,8 @@ public class MergedManifest {
    */
   @NotNull
   public AndroidVersion getMinSdkVersion() {
-    sync();
-    return myMinSdk != null ? myMinSdk : AndroidVersion.DEFAULT;
+    AndroidVersion minSdk = getSnapshot().myMinSdk;
+    return minSdk != null ? minSdk : AndroidVersion.DEFAULT;
   }
 
   /**
@@ -334,29 +342,25 @@ public class MergedManifest {
    */
   @NotNull
   public PermissionHolder getPermissionHolder() {
-    sync();
-    if (myPermissionHolder == null) {
+    PermissionHolder permissionHolder = getSnapshot().myPermissionHolder;
+    if (permissionHolder == null) {
       return new ModulePermissions(Collections.emptySet(), Collections.emptySet());
     }
-    return myPermissionHolder;
+    return permissionHolder;
   }
 
   /**
-   * Ensure that the package, theme and activity maps are initialized and up to date
-   * with respect to the manifest file
+   * Returns the latest snapshot of the merged manifest, recomputing it first if something it depends on has changed since
+   * it was computed.
    */
-  private void sync() {
-    // Since each of the accessors call sync(), allow a bunch of immediate
-    // accessors to all bypass the file stat() below
-    long now = System.currentTimeMillis();
-    if (now - myLastChecked < 50 && myManifestFile != null) {
-      return;
+  @NotNull
+  private Snapshot getSnapshot() {
+    Snapshot snapshot = mySnapshot;
+    if (snapshot == null || snapshot.myModificationCount != myModificationCount.get()) {
+      ApplicationManager.getApplication().runReadAction(this::syncWithReadPermission);
+      snapshot = mySnapshot;
     }
-    myLastChecked = now;
-
-    // TODO remove this time based checking
-
-    ApplicationManager.getApplication().runReadAction(this::syncWithReadPermission);
+    return snapshot != null ? snapshot : Snapshot.EMPTY;
   }
 
   static String getAttributeValue(@NotNull Element element,
@@ -366,62 +370,86 @@ public class MergedManifest {
   }
 
   /**
-   * This method is synchronized to ensure that two simultaneous sync requests from different threads don't interfere with each other.
+   * Brings the published snapshot up to date with respect to the manifest files. Synchronized to ensure that two simultaneous
+   * sync requests from different threads don't interfere with each other; readers of an up to date snapshot never get here.
    */
-  protected synchronized void syncWithReadPermission() {
-    AndroidFacet facet = AndroidFacet.getInstance(myModule);
-    assert facet != null : "Attempt to obtain manifest info from a non Android module: " + myModule.getName();
+  protected void syncWithReadPermission() {
+    synchronized (myLock) {
+      long modificationCount = myModificationCount.get();
+      Snapshot snapshot = mySnapshot;
+      if (snapshot != null && snapshot.myModificationCount == modificationCount) {
+        // Brought up to date by another thread while we were waiting for the lock
+        return;
+      }
 
-    if (myManifestFile == null) {
-      myManifestFile = ManifestInfo.ManifestFile.create(facet);
-    }
+      AndroidFacet facet = AndroidFacet.getInstance(myModule);
+      assert facet != null : "Attempt to obtain manifest info from a non Android module: " + myModule.getName();
 
-    // Check to see if our data is up to date
-    boolean refresh = myManifestFile.refresh();
-    if (!refresh) {
-      // Already have up to date data
-      return;
+      startListening();
+      if (myManifestFile == null) {
+        myManifestFile = ManifestInfo.ManifestFile.create(facet);
+      }
+
+      try {
+        // Check to see if our data is up to date
+        if (myManifestFile.refresh()) {
+          mySnapshot = createSnapshot(facet, myManifestFile, modificationCount);
+        }
+        else {
+          // Already have up to date data
+          mySnapshot = (snapshot != null ? snapshot : Snapshot.EMPTY).withModificationCount(modificationCount);
+        }
+      }
+      catch (ProcessCanceledException e) {
+        myManifestFile = null; // clear the file, to make sure we reload everything on next call to this method
+        mySnapshot = null;
+        throw e;
+      }
     }
+  }
 
-    myActivityAttributesMap = new HashMap<>();
-    myManifestTheme = null;
-    myTargetSdk = AndroidVersion.DEFAULT;
-    myMinSdk = AndroidVersion.DEFAULT;
-    myPackage = ""; //$NON-NLS-1$
-    myApplicationId = ""; //$NON-NLS-1$
-    myVersionCode = null;
-    myApplicationIcon = null;
-    myApplicationLabel = null;
-    myApplicationSupportsRtl = false;
-    myNodeKeys = null;
-    myActivities = Lists.newArrayList();
-    myActivityAliases = Lists.newArrayListWithExpectedSize(4);
-    myServices = Lists.newArrayListWithExpectedSize(4);
+  @NotNull
+  private Snapshot createSnapshot(@NotNull AndroidFacet facet, @NotNull ManifestInfo.ManifestFile manifestFile, long modificationCount) {
+    Snapshot snapshot = new Snapshot(modificationCount);
+    Map<String, ActivityAttributes> activityAttributesMap = new HashMap<>();
+    List<Element> activities = Lists.newArrayList();
+    List<Element> activityAliases = Lists.newArrayListWithExpectedSize(4);
+    List<Element> services = Lists.newArrayListWithExpectedSize(4);
     Set<String> permissions = Sets.newHashSetWithExpectedSize(30);
     Set<String> revocable = Sets.newHashSetWithExpectedSize(2);
+    snapshot.myTargetSdk = AndroidVersion.DEFAULT;
+    snapshot.myMinSdk = AndroidVersion.DEFAULT;
+    snapshot.myPackage = ""; //$NON-NLS-1$
+    snapshot.myApplicationId = ""; //$NON-NLS-1$
+    snapshot.myActivityAttributesMap = Collections.unmodifiableMap(activityAttributesMap);
+    snapshot.myActivities = Collections.unmodifiableList(activities);
+    snapshot.myActivityAliases = Collections.unmodifiableList(activityAliases);
+    snapshot.myServices = Collections.unmodifiableList(services);
+    snapshot.setManifestFile(manifestFile);
 
     try {
-      Document document = myManifestFile.getXmlDocument();
+      Document document = manifestFile.getXmlDocument();
       if (document == null) {
-        return;
+        return snapshot;
       }
-      myDocument = document;
-      myManifestFiles = myManifestFile.getManifestFiles();
+      snapshot.myDocument = document;
+      snapshot.myManifestFiles = manifestFile.getManifestFiles();
 
       Element root = document.getDocumentElement();
       if (root == null) {
-        return;
+        return snapshot;
       }
 
-      myApplicationId = getAttributeValue(root, null, ATTRIBUTE_PACKAGE);
+      String applicationId = getAttributeValue(root, null, ATTRIBUTE_PACKAGE);
+      snapshot.myApplicationId = applicationId;
 
       // The package comes from the main manifest, NOT from the merged manifest.
       Manifest manifest = facet.getManifest();
-      myPackage = manifest == null ? myApplicationId : manifest.getPackage().getValue();
+      snapshot.myPackage = manifest == null ? applicationId : manifest.getPackage().getValue();
 
       String versionCode = getAttributeValue(root, ANDROID_URI, ATTR_VERSION_CODE);
       try {
-        myVersionCode = Integer.valueOf(versionCode);
+        snapshot.myVersionCode = Integer.valueOf(versionCode);
       }
       catch (NumberFormatException ignored) {}
 
@@ -431,16 +459,16 @@ public class MergedManifest {
           String nodeName = node.getNodeName();
           if (NODE_APPLICATION.equals(nodeName)) {
             Element application = (Element) node;
-            myApplicationIcon = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_ICON);
-            myApplicationLabel = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_LABEL);
-            myManifestTheme = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_THEME);
-            myApplicationSupportsRtl = VALUE_TRUE.equals(getAttributeValue(application, ANDROID_URI, ATTRIBUTE_SUPPORTS_RTL));
+            snapshot.myApplicationIcon = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_ICON);
+            snapshot.myApplicationLabel = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_LABEL);
+            snapshot.myManifestTheme = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_THEME);
+            snapshot.myApplicationSupportsRtl = VALUE_TRUE.equals(getAttributeValue(application, ANDROID_URI, ATTRIBUTE_SUPPORTS_RTL));
 
             String debuggable = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_DEBUGGABLE);
-            myApplicationDebuggable = debuggable == null ? null : VALUE_TRUE.equals(debuggable);
+            snapshot.myApplicationDebuggable = debuggable == null ? null : VALUE_TRUE.equals(debuggable);
 
             String hasCode = getAttributeValue(application, ANDROID_URI, ATTRIBUTE_HASCODE);
-            myApplicationHasCode = hasCode == null ? true : VALUE_TRUE.equals(hasCode);
+            snapshot.myApplicationHasCode = hasCode == null ? true : VALUE_TRUE.equals(hasCode);
 
             Node child = node.getFirstChild();
             while (child != null) {
@@ -448,13 +476,13 @@ public class MergedManifest {
                 String childNodeName = child.getNodeName();
                 if (NODE_ACTIVITY.equals(childNodeName)) {
                   Element element = (Element)child;
-                  ActivityAttributes attributes = new ActivityAttributes(element, myApplicationId);
-                  myActivityAttributesMap.put(attributes.getName(), attributes);
-                  myActivities.add(element);
+                  ActivityAttributes attributes = new ActivityAttributes(element, applicationId);
+                  activityAttributesMap.put(attributes.getName(), attributes);
+                  activities.add(element);
                 } else if (NODE_ACTIVITY_ALIAS.equals(childNodeName)) {
-                  myActivityAliases.add((Element) child);
+                  activityAliases.add((Element) child);
                 } else if (NODE_SERVICE.equals(childNodeName)) {
-                  myServices.add((Element) child);
+                  services.add((Element) child);
                 }
               }
               child = child.getNextSibling();
@@ -462,8 +490,8 @@ public class MergedManifest {
           } else if (NODE_USES_SDK.equals(nodeName)) {
             // Look up target SDK
             Element usesSdk = (Element) node;
-            myMinSdk = getApiVersion(usesSdk, ATTRIBUTE_MIN_SDK_VERSION, AndroidVersion.DEFAULT);
-            myTargetSdk = getApiVersion(usesSdk, ATTRIBUTE_TARGET_SDK_VERSION, myMinSdk);
+            snapshot.myMinSdk = getApiVersion(usesSdk, ATTRIBUTE_MIN_SDK_VERSION, AndroidVersion.DEFAULT);
+            snapshot.myTargetSdk = getApiVersion(usesSdk, ATTRIBUTE_TARGET_SDK_VERSION, snapshot.myMinSdk);
           } else if (TAG_USES_PERMISSION.equals(nodeName)
                      || TAG_USES_PERMISSION_SDK_23.equals(nodeName)
                      || TAG_USES_PERMISSION_SDK_M.equals(nodeName)) {
@@ -487,16 +515,126 @@ public class MergedManifest {
 
         node = node.getNextSibling();
       }
-      myPermissionHolder = new ModulePermissions(ImmutableSet.copyOf(permissions), ImmutableSet.copyOf(revocable));
+      snapshot.myPermissionHolder = new ModulePermissions(ImmutableSet.copyOf(permissions), ImmutableSet.copyOf(revocable));
     }
     catch (ProcessCanceledException e) {
-      myManifestFile = null; // clear the file, to make sure we reload everything on next call to this method
-      myDocument = null;
       throw e;
     }
     catch (Exception e) {
       Logger.getInstance(MergedManifest.class).warn("Could not read Manifest data", e);
     }
+    return snapshot;
+  }
+
+  /**
+   * Starts tracking changes to everything the merged manifest depends on. Called with {@link #myLock} held.
+   */
+  private void startListening() {
+    if (myListening) {
+      return;
+    }
+    myListening = true;
+
+    Project project = myModule.getProject();
+    MessageBusConnection connection = project.getMessageBus().connect(myModule);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          // Assume that all android manifest files have the same filename
+          if (FN_ANDROID_MANIFEST_XML.equals(PathUtil.getFileName(event.getPath()))) {
+            invalidate();
+            return;
+          }
+        }
+      }
+    });
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        // The source providers, and therefore the flavor and build type manifests, may have changed
+        invalidate();
+      }
+    });
+    GradleSyncState.subscribe(project, new GradleSyncListener.Adapter() {
+      @Override
+      public void syncSucceeded(@NotNull Project project) {
+        invalidate();
+      }
+
+      @Override
+      public void syncFailed(@NotNull Project project, @NotNull String errorMessage) {
+        invalidate();
+      }
+
+      @Override
+      public void syncSkipped(@NotNull Project project) {
+        invalidate();
+      }
+    }, myModule);
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        psiChange(event);
+      }
+
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        psiChange(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        psiChange(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        psiChange(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        psiChange(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        psiChange(event);
+      }
+    }, myModule);
+  }
+
+  private void psiChange(@NotNull PsiTreeChangeEvent event) {
+    PsiFile file = event.getFile();
+    if (file != null && FN_ANDROID_MANIFEST_XML.equals(file.getName())) {
+      invalidate();
+    }
+  }
+
+  /**
+   * Marks the current snapshot as stale and schedules its recomputation, so that readers are likely to find an up to date
+   * snapshot by the time they need it.
+   */
+  private void invalidate() {
+    myModificationCount.incrementAndGet();
+
+    Application application = ApplicationManager.getApplication();
+    if (application.isUnitTestMode() || !myRecomputeScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    JobScheduler.getScheduler().schedule(() -> application.executeOnPooledThread(() -> {
+      myRecomputeScheduled.set(false);
+      if (myModule.isDisposed() || myModule.getProject().isDisposed()) {
+        return;
+      }
+      // Give way to write actions; if this gets cancelled, the next reader recomputes the snapshot
+      ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> {
+        if (!myModule.isDisposed()) {
+          syncWithReadPermission();
+        }
+      });
+    }), RECOMPUTE_DELAY_MS, TimeUnit.MILLISECONDS);
   }
 
   private static AndroidVersion getApiVersion(Element usesSdk, String attribute, AndroidVersion defaultApiLevel) {
@@ -513,21 +651,15 @@ public class MergedManifest {
 
   @NotNull
   public List<Element> getActivities() {
-    sync();
-    return myActivities;
+    return getSnapshot().myActivities;
   }
 
-  private List<Element> myActivities = Collections.emptyList();
-  private List<Element> myActivityAliases = Collections.emptyList();
-  private List<Element> myServices = Collections.emptyList();
-
   /**
    * @return the list of activity aliases defined in the manifest.
    */
   @NotNull
   public List<Element> getActivityAliases() {
-    sync();
-    return myActivityAliases;
+    return getSnapshot().myActivityAliases;
   }
 
   /**
@@ -535,16 +667,16 @@ public class MergedManifest {
    */
   @NotNull
   public List<Element> getServices() {
-    return myServices;
+    return getSnapshot().myServices;
   }
 
   @Nullable
   public Element findUsedFeature(@NotNull String name) {
-    sync();
-    if (myDocument == null) {
+    Document document = getSnapshot().myDocument;
+    if (document == null) {
       return null;
     }
-    Node node = myDocument.getDocumentElement().getFirstChild();
+    Node node = document.getDocumentElement().getFirstChild();
     while (node != null) {
       if (node.getNodeType() == Node.ELEMENT_NODE && NODE_USES_FEATURE.equals(node.getNodeName())) {
         Element element = (Element)node;
@@ -560,49 +692,48 @@ public class MergedManifest {
 
   @NotNull
   public ImmutableList<MergingReport.Record> getLoggingRecords() {
-    sync();
-    return myManifestFile == null ? ImmutableList.of() : myManifestFile.getLoggingRecords();
+    ImmutableList<MergingReport.Record> records = getSnapshot().myLoggingRecords;
+    return records == null ? ImmutableList.of() : records;
   }
 
   @Nullable
   public Actions getActions() {
-    sync();
-    return myManifestFile == null ? null : myManifestFile.getActions();
+    return getSnapshot().myActions;
   }
 
   @Nullable
   public XmlNode.NodeKey getNodeKey(String name) {
-    sync();
-    if (myNodeKeys == null) {
-      HashMap<String, XmlNode.NodeKey> nodeKeys = new HashMap<>();
-      Actions actions = getActions();
+    Snapshot snapshot = getSnapshot();
+    Map<String, XmlNode.NodeKey> nodeKeys = snapshot.myNodeKeys;
+    if (nodeKeys == null) {
+      // Computed lazily; concurrent readers may compute it twice, which is harmless
+      nodeKeys = new HashMap<>();
+      Actions actions = snapshot.myActions;
       if (actions != null) {
         Set<XmlNode.NodeKey> keys = actions.getNodeKeys();
         for (XmlNode.NodeKey key : keys) {
           nodeKeys.put(key.toString(), key);
         }
       }
-      myNodeKeys = nodeKeys;
+      snapshot.myNodeKeys = nodeKeys;
     }
-    return myNodeKeys.get(name);
+    return nodeKeys.get(name);
   }
 
   @Nullable
   public Element findActivity(@Nullable String qualifiedName) {
-    sync();
-    if (qualifiedName == null || myActivities == null) {
+    if (qualifiedName == null) {
       return null;
     }
-    return getActivityOrAliasByName(qualifiedName, myActivities);
+    return getActivityOrAliasByName(qualifiedName, getSnapshot().myActivities);
   }
 
   @Nullable
   public Element findActivityAlias(@Nullable String qualifiedName) {
-    sync();
-    if (qualifiedName == null || myActivityAliases == null) {
+    if (qualifiedName == null) {
       return null;
     }
-    return getActivityOrAliasByName(qualifiedName, myActivityAliases);
+    return getActivityOrAliasByName(qualifiedName, getSnapshot().myActivityAliases);
   }
 
   @Nullable
@@ -621,6 +752,79 @@ public class MergedManifest {
     return myModule;
   }
 
+  /**
+   * The data extracted from one version of the merged manifest. A snapshot is never modified after it has been published, except
+   * for the lazily computed node keys, so it can be shared between threads without locking.
+   */
+  private static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(-1);
+
+    /** The value of {@link #myModificationCount} this snapshot is up to date with. */
+    final long myModificationCount;
+
+    @Nullable String myPackage;
+    @Nullable String myApplicationId;
+    @Nullable Integer myVersionCode;
+    @Nullable String myManifestTheme;
+    @NotNull Map<String, ActivityAttributes> myActivityAttributesMap = Collections.emptyMap();
+    @Nullable AndroidVersion myMinSdk;
+    @Nullable AndroidVersion myTargetSdk;
+    @Nullable String myApplicationIcon;
+    @Nullable String myApplicationLabel;
+    boolean myApplicationSupportsRtl;
+    @Nullable Boolean myApplicationDebuggable;
+    boolean myApplicationHasCode = true;
+    @Nullable Document myDocument;
+    @Nullable List<VirtualFile> myManifestFiles;
+    @Nullable PermissionHolder myPermissionHolder;
+    @NotNull List<Element> myActivities = Collections.emptyList();
+    @NotNull List<Element> myActivityAliases = Collections.emptyList();
+    @NotNull List<Element> myServices = Collections.emptyList();
+    @Nullable ImmutableList<MergingReport.Record> myLoggingRecords;
+    @Nullable Actions myActions;
+    @Nullable volatile Map<String, XmlNode.NodeKey> myNodeKeys;
+
+    Snapshot(long modificationCount) {
+      myModificationCount = modificationCount;
+    }
+
+    /**
+     * Records the manifest file state the snapshot was created from. The logging records and actions are copied out of
+     * {@link ManifestInfo.ManifestFile} since it is updated in place by later merges.
+     */
+    void setManifestFile(@NotNull ManifestInfo.ManifestFile manifestFile) {
+      myLoggingRecords = manifestFile.getLoggingRecords();
+      myActions = manifestFile.getActions();
+    }
+
+    @NotNull
+    Snapshot withModificationCount(long modificationCount) {
+      Snapshot copy = new Snapshot(modificationCount);
+      copy.myPackage = myPackage;
+      copy.myApplicationId = myApplicationId;
+      copy.myVersionCode = myVersionCode;
+      copy.myManifestTheme = myManifestTheme;
+      copy.myActivityAttributesMap = myActivityAttributesMap;
+      copy.myMinSdk = myMinSdk;
+      copy.myTargetSdk = myTargetSdk;
+      copy.myApplicationIcon = myApplicationIcon;
+      copy.myApplicationLabel = myApplicationLabel;
+      copy.myApplicationSupportsRtl = myApplicationSupportsRtl;
+      copy.myApplicationDebuggable = myApplicationDebuggable;
+      copy.myApplicationHasCode = myApplicationHasCode;
+      copy.myDocument = myDocument;
+      copy.myManifestFiles = myManifestFiles;
+      copy.myPermissionHolder = myPermissionHolder;
+      copy.myActivities = myActivities;
+      copy.myActivityAliases = myActivityAliases;
+      copy.myServices = myServices;
+      copy.myLoggingRecords = myLoggingRecords;
+      copy.myActions = myActions;
+      copy.myNodeKeys = myNodeKeys;
+      return copy;
+    }
+  }
+
   public static class ActivityAttributes {
     @NotNull private final Element myElement;
     @Nullable private final String myIcon;
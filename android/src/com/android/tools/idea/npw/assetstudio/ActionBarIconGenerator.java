@@ -39,7 +39,7 @@ public class ActionBarIconGenerator extends GraphicGenerator {
             return PLACEHOLDER_IMAGE;
         }
 
-        BufferedImage sourceImage = getTrimmedAndPaddedImage(options);
+        BufferedImage sourceImage = getTrimmedAndPaddedImage(context, options);
         if (sourceImage == null) {
             sourceImage = AssetStudioUtils.createDummyImage();
         }
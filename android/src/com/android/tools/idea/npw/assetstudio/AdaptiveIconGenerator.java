@@ -1017,7 +1017,7 @@ public class AdaptiveIconGenerator extends GraphicGenerator {
   }
 
   /** Options specific to generating launcher icons */
-  public static class AdaptiveIconOptions extends Options implements Cloneable {
+  public static class AdaptiveIconOptions extends Options {
     /** The foreground layer name, used to generate resource paths */
     public String foregroundLayerName;
 
@@ -1091,12 +1091,7 @@ public class AdaptiveIconGenerator extends GraphicGenerator {
 
     @Override
     public AdaptiveIconOptions clone() {
-      try {
-        return (AdaptiveIconOptions)super.clone();
-      }
-      catch (CloneNotSupportedException e) {
-        throw new Error(e); // Not possible.
-      }
+      return (AdaptiveIconOptions)super.clone();
     }
   }
 
@@ -19,12 +19,15 @@ package com.android.tools.idea.npw.assetstudio;
 import com.android.SdkConstants;
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.android.ide.common.internal.WaitableExecutor;
 import com.android.resources.Density;
 import com.android.resources.ResourceFolderType;
 import com.android.utils.FileUtils;
+import com.android.utils.Pair;
 import com.android.utils.SdkUtils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.containers.EmptyIterator;
@@ -74,7 +77,7 @@ public abstract class GraphicGenerator {
     /**
      * Options used for all generators.
      */
-    public static class Options {
+    public static class Options implements Cloneable {
         /** Indicates that the graphic generator may use placeholders instead of real images. */
         public boolean usePlaceholders;
 
@@ -95,6 +98,15 @@ public abstract class GraphicGenerator {
 
         /** Controls the directory where to store the icon/resource. */
         @NotNull public IconFolderKind iconFolderKind = IconFolderKind.DRAWABLE;
+
+        @Override
+        public Options clone() {
+            try {
+                return (Options) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new Error(e); // Not possible.
+            }
+        }
     }
 
     public enum IconFolderKind {
@@ -303,12 +315,13 @@ public abstract class GraphicGenerator {
         // Vector image only need to generate one preview image, so we by pass all the
         // other image densities.
         if (options.density == Density.ANYDPI) {
-            generateImageAndUpdateMap(category, categoryMap, context, options, name);
+            updateMap(category, categoryMap, options, name, generate(context, options));
             return;
         }
         Density[] densityValues = Density.values();
         // Sort density values into ascending order
         Arrays.sort(densityValues, Comparator.comparingInt(Density::getDpiValue));
+        List<Options> densityOptions = new ArrayList<>();
         for (Density density : densityValues) {
             if (!density.isValidValueForDevice()) {
                 continue;
@@ -318,18 +331,37 @@ public abstract class GraphicGenerator {
                 // TODO don't manually check and instead gracefully handle missing stencils.
                 continue;
             }
-            options.density = density;
-            generateImageAndUpdateMap(category, categoryMap, context, options, name);
+            // Each density gets its own copy of the options since the images are rendered concurrently.
+            Options localOptions = options.clone();
+            localOptions.density = density;
+            densityOptions.add(localOptions);
+        }
+
+        // Render all densities in parallel. The results are collected in completion order, so
+        // they are matched back to their options to keep the ascending density order in the map.
+        WaitableExecutor<Pair<Options, BufferedImage>> executor = WaitableExecutor.useGlobalSharedThreadPool();
+        for (Options localOptions : densityOptions) {
+            executor.execute(() -> Pair.of(localOptions, generate(context, localOptions)));
+        }
+        Map<Options, BufferedImage> images = new IdentityHashMap<>();
+        try {
+            for (Pair<Options, BufferedImage> result : executor.waitForTasksWithQuickFail(true)) {
+                images.put(result.getFirst(), result.getSecond());
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        for (Options localOptions : densityOptions) {
+            updateMap(category, categoryMap, localOptions, name, images.get(localOptions));
         }
     }
 
-    private void generateImageAndUpdateMap(
+    private void updateMap(
             String category,
             Map<String, Map<String, BufferedImage>> categoryMap,
-            GraphicGeneratorContext context,
             Options options,
-            String name) {
-        BufferedImage image = generate(context, options);
+            String name,
+            BufferedImage image) {
         // The category key is either the "category" parameter or the density if not present
         String mapCategory = category;
         if (mapCategory == null) {
@@ -486,6 +518,28 @@ public abstract class GraphicGenerator {
         return getTrimmedAndPaddedImage(options.sourceImageFuture, options.isTrimmed, options.paddingPercent);
     }
 
+    /**
+     * Same as {@link #getTrimmedAndPaddedImage(Options)}, but shares the result through the image
+     * cache of the given context. Trimming scans the whole source image, so the result is computed
+     * once for all densities rendered from the same source and not again when unrelated options change.
+     */
+    @Nullable
+    public static BufferedImage getTrimmedAndPaddedImage(@NonNull GraphicGeneratorContext context, @NonNull Options options) {
+        ListenableFuture<BufferedImage> imageFuture = options.sourceImageFuture;
+        if (imageFuture == null) {
+            return null;
+        }
+        boolean isTrimmed = options.isTrimmed;
+        int paddingPercent = options.paddingPercent;
+        if (!isTrimmed && paddingPercent == 0) {
+            return getTrimmedAndPaddedImage(imageFuture, false, 0);
+        }
+        TrimmedImageKey key = new TrimmedImageKey(imageFuture, isTrimmed, paddingPercent);
+        ListenableFuture<BufferedImage> result = context.getFromCacheOrCreate(
+                key, () -> Futures.immediateFuture(getTrimmedAndPaddedImage(imageFuture, isTrimmed, paddingPercent)));
+        return Futures.getUnchecked(result);
+    }
+
     @Nullable
     public static BufferedImage getTrimmedAndPaddedImage(@Nullable ListenableFuture<BufferedImage> imageFuture, boolean isTrimmed,
                                                          int paddingPercent) {
@@ -509,6 +563,35 @@ public abstract class GraphicGenerator {
         }
     }
 
+    /** Cache key of a trimmed and padded source image. The source is compared by identity. */
+    private static final class TrimmedImageKey {
+        @NonNull private final ListenableFuture<BufferedImage> mySource;
+        private final boolean myTrimmed;
+        private final int myPaddingPercent;
+
+        TrimmedImageKey(@NonNull ListenableFuture<BufferedImage> source, boolean trimmed, int paddingPercent) {
+            mySource = source;
+            myTrimmed = trimmed;
+            myPaddingPercent = paddingPercent;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(mySource), myTrimmed, myPaddingPercent);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TrimmedImageKey)) {
+                return false;
+            }
+            TrimmedImageKey other = (TrimmedImageKey) obj;
+            return mySource == other.mySource
+                    && myTrimmed == other.myTrimmed
+                    && myPaddingPercent == other.myPaddingPercent;
+        }
+    }
+
     private static Logger getLog() {
         return Logger.getInstance(GraphicGenerator.class);
     }
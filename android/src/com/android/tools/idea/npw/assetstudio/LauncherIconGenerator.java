@@ -205,7 +205,7 @@ public class LauncherIconGenerator extends GraphicGenerator {
             return PLACEHOLDER_IMAGE;
         }
 
-        BufferedImage sourceImage = getTrimmedAndPaddedImage(options);
+        BufferedImage sourceImage = getTrimmedAndPaddedImage(context, options);
         if (sourceImage == null) {
             sourceImage = AssetStudioUtils.createDummyImage();
         }
@@ -40,7 +40,7 @@ public class MenuIconGenerator extends GraphicGenerator {
             return PLACEHOLDER_IMAGE;
         }
 
-        BufferedImage sourceImage = getTrimmedAndPaddedImage(options);
+        BufferedImage sourceImage = getTrimmedAndPaddedImage(context, options);
         if (sourceImage == null) {
             sourceImage = AssetStudioUtils.createDummyImage();
         }
@@ -41,7 +41,7 @@ public class TabIconGenerator extends GraphicGenerator {
             return PLACEHOLDER_IMAGE;
         }
 
-        BufferedImage sourceImage = getTrimmedAndPaddedImage(options);
+        BufferedImage sourceImage = getTrimmedAndPaddedImage(context, options);
         if (sourceImage == null) {
             sourceImage = AssetStudioUtils.createDummyImage();
         }
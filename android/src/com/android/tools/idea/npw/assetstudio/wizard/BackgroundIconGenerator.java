@@ -45,12 +45,14 @@ public class BackgroundIconGenerator {
                       @NotNull Consumer<IconGeneratorResult> onDone) {
     ApplicationManager.getApplication().assertIsDispatchThread();
 
-    // If there is at least one request with the same icon type, ignore this one
-    if (myImageRequests.stream().anyMatch(x -> Objects.equals(x.getIconType(), iconType))) {
-      return;
-    }
-
     if (iconGenerator.sourceAsset().get().isPresent()) {
+      // A pending request with the same icon type was created from older options, so it is replaced by this one.
+      // A running request with the same icon type can't be interrupted, but its result is dropped when it is done.
+      myImageRequests.removeIf(x -> Objects.equals(x.getIconType(), iconType));
+      if (myRunningRequest != null && Objects.equals(myRunningRequest.getIconType(), iconType)) {
+        myRunningRequest.markObsolete();
+      }
+
       GraphicGenerator.Options options = iconGenerator.createOptions(true);
       Request request = new Request(iconType, iconGenerator, options, onDone);
       myImageRequests.add(request);
@@ -85,6 +87,7 @@ public class BackgroundIconGenerator {
     @NotNull private final Consumer<IconGeneratorResult> myOnDone;
     @NotNull private final GraphicGenerator.Options myOptions;
     @Nullable private IconGeneratorResult myGeneratorResult;
+    private boolean myObsolete;
 
     public Request(@NotNull AndroidAdaptiveIconType iconType,
                    @NotNull AndroidIconGenerator iconGenerator,
@@ -103,7 +106,17 @@ public class BackgroundIconGenerator {
     }
 
     public void done() {
-      myOnDone.accept(myGeneratorResult);
+      if (!myObsolete) {
+        myOnDone.accept(myGeneratorResult);
+      }
+    }
+
+    /**
+     * Called when a more recent request for the same icon type has been enqueued. Obsolete requests don't
+     * report their result, so that previews don't flicker back to a stale state.
+     */
+    public void markObsolete() {
+      myObsolete = true;
     }
 
     @NotNull
@@ -17,86 +17,250 @@ package com.android.tools.idea.rendering;
 
 import com.android.annotations.VisibleForTesting;
 import com.android.ide.common.resources.ResourceResolver;
-import com.google.common.collect.Maps;
-import com.intellij.openapi.diagnostic.Logger;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.ui.EmptyIcon;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import icons.AndroidIcons;
+import org.jetbrains.android.util.AndroidUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import javax.swing.*;
-
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.android.SdkConstants.DOT_XML;
 
+/**
+ * Cache of the thumbnails displayed in the gutter for image resources.
+ * <p>
+ * Thumbnails are kept in an LRU cache bounded by the memory used by their images. Missing thumbnails requested by
+ * {@link #getIconAsync} from the event dispatch thread are rendered on a pooled thread and a transparent placeholder is returned in
+ * the meantime; editor gutters are repainted once the thumbnails are ready. Entries are invalidated when the image file changes on
+ * disk or its document is edited, and downscaled bitmaps are kept on disk so that large images don't have to be decoded again after
+ * a restart.
+ */
 public class GutterIconCache {
-  private static final Logger LOG = Logger.getInstance(GutterIconCache.class);
   private static final Icon NONE = AndroidIcons.Android; // placeholder
 
   @VisibleForTesting static final int MAX_WIDTH = JBUI.scale(16);
   @VisibleForTesting static final int MAX_HEIGHT = JBUI.scale(16);
 
-  private static final GutterIconCache ourInstance = new GutterIconCache();
+  /** Upper bound for the memory used by the cached thumbnails, in bytes. */
+  private static final long MAX_CACHE_WEIGHT = 8 * 1024 * 1024;
+  private static final Icon RENDERING = EmptyIcon.create(MAX_WIDTH, MAX_HEIGHT);
+
+  private static GutterIconCache ourInstance;
 
-  private Map<String, Icon> myThumbnailCache = Maps.newHashMap();
+  private final Cache<String, Icon> myThumbnailCache =
+    CacheBuilder.newBuilder().maximumWeight(MAX_CACHE_WEIGHT).weigher(GutterIconCache::getIconWeight).build();
+
+  /**
+   * Paths whose thumbnails are being rendered in the background, mapped to the invalidation count at the time the rendering started.
+   * A rendered thumbnail is only cached if no invalidation happened in the meantime.
+   */
+  private final Map<String, Long> myPendingRenders = new ConcurrentHashMap<>();
+  private final AtomicBoolean myRepaintScheduled = new AtomicBoolean();
+  private final AtomicLong myInvalidationCount = new AtomicLong();
+  @Nullable private final GutterIconThumbnailStore myThumbnailStore;
+  private volatile boolean myRetina;
 
   /**
-   * Stores timestamps for the last modification time of image files using the
-   * path as a key.
+   * Creates a cache listening to file and document changes until the given disposable is disposed. Use {@link #getInstance()}
+   * outside of tests.
    */
-  private Map<String, Long> myTimestampCache = Maps.newHashMap();
-  private boolean myRetina;
+  @VisibleForTesting
+  GutterIconCache(@Nullable GutterIconThumbnailStore thumbnailStore, @NotNull Disposable parentDisposable) {
+    myThumbnailStore = thumbnailStore;
 
-  public GutterIconCache() {
+    Application application = ApplicationManager.getApplication();
+    application.getMessageBus().connect(parentDisposable).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          invalidate(event.getPath());
+        }
+      }
+    });
+    EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener() {
+      @Override
+      public void documentChanged(DocumentEvent event) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(event.getDocument());
+        if (file != null) {
+          invalidate(file.getPath());
+        }
+      }
+    }, parentDisposable);
   }
 
   @NotNull
-  public static GutterIconCache getInstance() {
+  public static synchronized GutterIconCache getInstance() {
+    if (ourInstance == null) {
+      File thumbnailDir = new File(AndroidUtils.getAndroidSystemDirectoryOsPath(), "gutter_icons");
+      ourInstance = new GutterIconCache(new GutterIconThumbnailStore(thumbnailDir), ApplicationManager.getApplication());
+    }
     return ourInstance;
   }
 
   @VisibleForTesting
   boolean isIconUpToDate(@NotNull String path) {
-    if (myTimestampCache.containsKey(path)) {
-      // Entry is valid if image resource has not been modified since the entry was cached
-      VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
-      if (file != null) {
-        return myTimestampCache.get(path) == file.getTimeStamp()
-               && !FileDocumentManager.getInstance().isFileModified(file);
-      }
+    // Entries are removed as soon as the image resource is modified, so any cached entry is valid
+    return myThumbnailCache.getIfPresent(path) != null;
+  }
+
+  /**
+   * Returns the thumbnail of the image resource at the given path, or null if it can not be rendered.
+   */
+  @Nullable
+  public Icon getIcon(@NotNull String path, @Nullable ResourceResolver resolver) {
+    Icon myIcon = getCachedIcon(path);
+    if (myIcon == null) {
+      myIcon = renderIcon(path, resolver);
+      myThumbnailCache.put(path, myIcon);
     }
 
-    return false;
+    return myIcon != NONE ? myIcon : null;
   }
 
+  /**
+   * Like {@link #getIcon}, but when called on the event dispatch thread for an image that is not cached yet, returns a placeholder
+   * and renders the thumbnail in the background. Editor gutters are repainted once it is ready, so this is meant for gutter icons.
+   */
   @Nullable
-  public Icon getIcon(@NotNull String path, @Nullable ResourceResolver resolver) {
+  public Icon getIconAsync(@NotNull String path, @Nullable ResourceResolver resolver) {
+    Application application = ApplicationManager.getApplication();
+    // Tests check the rendered icons right away; they drive the background rendering through renderInBackground instead
+    if (getCachedIcon(path) == null && application.isDispatchThread() && !application.isUnitTestMode()) {
+      renderInBackground(path, resolver, PooledThreadExecutor.INSTANCE);
+      return RENDERING;
+    }
+    return getIcon(path, resolver);
+  }
+
+  @Nullable
+  private Icon getCachedIcon(@NotNull String path) {
     boolean isRetina = UIUtil.isRetina();
     if (myRetina != isRetina) {
       myRetina = isRetina;
-      myThumbnailCache.clear();
+      // Thumbnails being rendered for the previous scale must not be cached either
+      myInvalidationCount.incrementAndGet();
+      myThumbnailCache.invalidateAll();
     }
-    Icon myIcon = myThumbnailCache.get(path);
-    if (myIcon == null || !isIconUpToDate(path)) {
-      myIcon = GutterIconFactory.createIcon(path, resolver, MAX_WIDTH, MAX_HEIGHT);
+    return myThumbnailCache.getIfPresent(path);
+  }
 
-      if (myIcon == null) {
-        myIcon = NONE;
+  /**
+   * Renders the thumbnail of the given image on the given executor, caching it unless the image is invalidated in the meantime,
+   * and then schedules a repaint of the editor gutters. Does nothing if the thumbnail is already being rendered.
+   */
+  @VisibleForTesting
+  void renderInBackground(@NotNull String path, @Nullable ResourceResolver resolver, @NotNull Executor executor) {
+    long invalidationCount = myInvalidationCount.get();
+    if (myPendingRenders.putIfAbsent(path, invalidationCount) != null) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        Icon icon = renderIcon(path, resolver);
+        if (myInvalidationCount.get() == invalidationCount) {
+          myThumbnailCache.put(path, icon);
+        }
+      }
+      finally {
+        myPendingRenders.remove(path);
+        scheduleRepaint();
       }
+    });
+  }
 
-      myThumbnailCache.put(path, myIcon);
+  @NotNull
+  private Icon renderIcon(@NotNull String path, @Nullable ResourceResolver resolver) {
+    Icon icon;
+    if (path.endsWith(DOT_XML)) {
+      // XML drawables are read from their document and their resource references are resolved from PSI
+      icon = ReadAction.compute(() -> GutterIconFactory.createIcon(path, resolver, MAX_WIDTH, MAX_HEIGHT));
+    }
+    else {
+      icon = GutterIconFactory.createBitmapIcon(getBitmapThumbnail(path), MAX_WIDTH, MAX_HEIGHT);
+    }
+    return icon != null ? icon : NONE;
+  }
 
-      // Record timestamp of image resource at the time of caching
-      VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
-      if (file != null) {
-        myTimestampCache.put(path, file.getTimeStamp());
+  @Nullable
+  private BufferedImage getBitmapThumbnail(@NotNull String path) {
+    File file = new File(path);
+    if (myThumbnailStore != null) {
+      BufferedImage thumbnail = myThumbnailStore.load(file, MAX_WIDTH, MAX_HEIGHT);
+      if (thumbnail != null) {
+        return thumbnail;
       }
     }
+    BufferedImage image = GutterIconFactory.readBitmap(path);
+    if (image == null) {
+      return null;
+    }
+    BufferedImage thumbnail = GutterIconFactory.createBitmapThumbnail(image, MAX_WIDTH, MAX_HEIGHT);
+    // Images that didn't need to be scaled down are read as fast as a stored thumbnail would be
+    if (thumbnail != image && myThumbnailStore != null) {
+      myThumbnailStore.store(file, MAX_WIDTH, MAX_HEIGHT, thumbnail);
+    }
+    return thumbnail;
+  }
 
-    return myIcon != NONE ? myIcon : null;
+  @VisibleForTesting
+  void invalidate(@NotNull String path) {
+    if (myPendingRenders.containsKey(path)) {
+      myInvalidationCount.incrementAndGet();
+    }
+    myThumbnailCache.invalidate(path);
   }
 
+  @VisibleForTesting
+  boolean isRepaintScheduled() {
+    return myRepaintScheduled.get();
+  }
+
+  private void scheduleRepaint() {
+    if (!myRepaintScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    ApplicationManager.getApplication().invokeLater(() -> {
+      myRepaintScheduled.set(false);
+      for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+        if (editor instanceof EditorEx && !editor.isDisposed()) {
+          ((EditorEx)editor).getGutterComponentEx().repaint();
+        }
+      }
+    }, ModalityState.any());
+  }
+
+  private static int getIconWeight(@NotNull String path, @NotNull Icon icon) {
+    // Retina thumbnails have four times as many pixels as their logical size
+    int scale = UIUtil.isRetina() ? 4 : 1;
+    return icon.getIconWidth() * icon.getIconHeight() * 4 * scale + path.length() * 2;
+  }
 }
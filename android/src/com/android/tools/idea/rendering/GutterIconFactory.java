@@ -185,9 +185,17 @@ public class GutterIconFactory {
 
   @Nullable
   private static Icon createBitmapIcon(@NotNull String path, int maxWidth, int maxHeight) {
+    BufferedImage image = readBitmap(path);
+    return image != null ? createBitmapIcon(image, maxWidth, maxHeight) : null;
+  }
+
+  /**
+   * Reads the bitmap at the given path, or returns null if it can not be read.
+   */
+  @Nullable
+  static BufferedImage readBitmap(@NotNull String path) {
     try {
-      Icon icon = createBitmapIcon(ImageIO.read(new File(path)), maxWidth, maxHeight);
-      if (icon != null) return icon;
+      return ImageIO.read(new File(path));
     }
     catch (Throwable e) {
       // Not just IOExceptions here; for example, we've seen
@@ -198,8 +206,26 @@ public class GutterIconFactory {
     return null;
   }
 
+  /**
+   * Scales the given bitmap down so that it still has enough pixels for an icon of at most {@code maxWidth} x {@code maxHeight}
+   * on a Retina display. The result can be turned into an icon with {@link #createBitmapIcon(BufferedImage, int, int)}, and is
+   * small enough to be kept around as a thumbnail. Returns the given image itself if it is already small enough.
+   */
+  @NotNull
+  static BufferedImage createBitmapThumbnail(@NotNull BufferedImage image, int maxWidth, int maxHeight) {
+    int imageWidth = image.getWidth();
+    int imageHeight = image.getHeight();
+    int thumbnailWidth = ImageUtils.RETINA_SCALE * maxWidth;
+    int thumbnailHeight = ImageUtils.RETINA_SCALE * maxHeight;
+    if (imageWidth > thumbnailWidth || imageHeight > thumbnailHeight) {
+      double scale = Math.min(thumbnailWidth / (double)imageWidth, thumbnailHeight / (double)imageHeight);
+      return ImageUtils.scale(toArgbIfIndexed(image), scale, scale);
+    }
+    return image;
+  }
+
   @Nullable
-  private static Icon createBitmapIcon(BufferedImage image, int maxWidth, int maxHeight) {
+  static Icon createBitmapIcon(BufferedImage image, int maxWidth, int maxHeight) {
     if (image != null) {
       int imageWidth = image.getWidth();
       int imageHeight = image.getHeight();
@@ -215,20 +241,7 @@ public class GutterIconFactory {
       if (imageWidth > maxWidth || imageHeight > maxHeight) {
         double scale = Math.min(maxWidth / (double)imageWidth, maxHeight / (double)imageHeight);
 
-        if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
-          // Indexed images look terrible if they are scaled directly; instead, paint into an ARGB blank image
-          BufferedImage bg = UIUtil.createImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
-          Graphics g = bg.getGraphics();
-          //noinspection UseJBColor
-          g.setColor(Gray.TRANSPARENT);
-          g.fillRect(0, 0, bg.getWidth(), bg.getHeight());
-          //noinspection ConstantConditions
-          UIUtil.drawImage(g, image, 0, 0, null);
-          g.dispose();
-          image = bg;
-        }
-
-        image = ImageUtils.scale(image, scale, scale);
+        image = ImageUtils.scale(toArgbIfIndexed(image), scale, scale);
       }
 
       return new ImageIcon(image);
@@ -236,6 +249,23 @@ public class GutterIconFactory {
     return null;
   }
 
+  @NotNull
+  private static BufferedImage toArgbIfIndexed(@NotNull BufferedImage image) {
+    if (image.getType() != BufferedImage.TYPE_BYTE_INDEXED) {
+      return image;
+    }
+    // Indexed images look terrible if they are scaled directly; instead, paint into an ARGB blank image
+    BufferedImage bg = UIUtil.createImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    Graphics g = bg.getGraphics();
+    //noinspection UseJBColor
+    g.setColor(Gray.TRANSPARENT);
+    g.fillRect(0, 0, bg.getWidth(), bg.getHeight());
+    //noinspection ConstantConditions
+    UIUtil.drawImage(g, image, 0, 0, null);
+    g.dispose();
+    return bg;
+  }
+
   /**
    * Returns a {@link RetinaImageIcon} for the given {@link BufferedImage}, if possible. Returns null otherwise.
    */
@@ -56,7 +56,7 @@ public class GutterIconRenderer extends com.intellij.openapi.editor.markup.Gutte
   @NotNull
   @Override
   public Icon getIcon() {
-    Icon icon = GutterIconCache.getInstance().getIcon(myFile.getPath(), myResourceResolver);
+    Icon icon = GutterIconCache.getInstance().getIconAsync(myFile.getPath(), myResourceResolver);
 
     if (icon != null) {
       return icon;
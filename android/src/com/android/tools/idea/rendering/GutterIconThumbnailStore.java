@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Disk store for the downscaled bitmaps shown as gutter icons, so that large images don't have to be decoded again after a restart.
+ * <p>
+ * Each source image has its own directory, named after the hash of its path. The thumbnail inside it is named after the hash of the
+ * source size, modification time and requested icon size, and replaces any thumbnail of an older version of the same image. The
+ * first time a thumbnail is stored in a session, thumbnails that haven't been used for a while are deleted, as well as the least
+ * recently used ones if the store grew too large.
+ */
+class GutterIconThumbnailStore {
+  private static final Logger LOG = Logger.getInstance(GutterIconThumbnailStore.class);
+
+  /** Increment when the thumbnail format or the way thumbnails are scaled changes. */
+  private static final int VERSION = 1;
+
+  private static final long MAX_STORE_SIZE = 16 * 1024 * 1024;
+  private static final long MAX_UNUSED_TIME = TimeUnit.DAYS.toMillis(30);
+
+  @NotNull private final File myRootDir;
+  private final AtomicBoolean myPruned = new AtomicBoolean();
+
+  GutterIconThumbnailStore(@NotNull File rootDir) {
+    myRootDir = rootDir;
+  }
+
+  /**
+   * Returns the thumbnail stored for the current version of the given image, or null if there is none.
+   */
+  @Nullable
+  BufferedImage load(@NotNull File source, int maxWidth, int maxHeight) {
+    File thumbnail = getThumbnailFile(source, maxWidth, maxHeight);
+    if (thumbnail == null || !thumbnail.isFile()) {
+      return null;
+    }
+    try {
+      BufferedImage image = ImageIO.read(thumbnail);
+      // The modification time of a thumbnail is the last time it was used, see prune
+      //noinspection ResultOfMethodCallIgnored
+      thumbnail.setLastModified(System.currentTimeMillis());
+      return image;
+    }
+    catch (IOException e) {
+      LOG.debug("Could not read gutter icon thumbnail " + thumbnail, e);
+      FileUtil.delete(thumbnail);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the thumbnail of the current version of the given image, removing thumbnails of its older versions.
+   */
+  void store(@NotNull File source, int maxWidth, int maxHeight, @NotNull BufferedImage image) {
+    File thumbnail = getThumbnailFile(source, maxWidth, maxHeight);
+    if (thumbnail == null) {
+      return;
+    }
+    if (myPruned.compareAndSet(false, true)) {
+      prune(MAX_STORE_SIZE, MAX_UNUSED_TIME);
+    }
+    File dir = thumbnail.getParentFile();
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        FileUtil.delete(child);
+      }
+    }
+    // Write to a temporary file first so that a concurrent reader never sees a partially written thumbnail
+    File temp = new File(dir, thumbnail.getName() + ".tmp");
+    try {
+      FileUtil.createDirectory(dir);
+      if (!ImageIO.write(image, "PNG", temp) || !temp.renameTo(thumbnail)) {
+        FileUtil.delete(temp);
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Could not write gutter icon thumbnail " + thumbnail, e);
+      FileUtil.delete(temp);
+    }
+  }
+
+  /**
+   * Deletes the thumbnails that haven't been used for more than {@code maxUnusedTime} milliseconds, and then the least recently used
+   * ones until the thumbnails take at most {@code maxSize} bytes.
+   */
+  @VisibleForTesting
+  void prune(long maxSize, long maxUnusedTime) {
+    File[] dirs = myRootDir.listFiles();
+    if (dirs == null) {
+      return;
+    }
+    List<File> thumbnails = new ArrayList<>();
+    long size = 0;
+    for (File dir : dirs) {
+      File[] children = dir.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          thumbnails.add(child);
+          size += child.length();
+        }
+      }
+    }
+    thumbnails.sort(Comparator.comparingLong(File::lastModified));
+
+    long oldest = System.currentTimeMillis() - maxUnusedTime;
+    for (File thumbnail : thumbnails) {
+      if (size <= maxSize && thumbnail.lastModified() >= oldest) {
+        break;
+      }
+      size -= thumbnail.length();
+      FileUtil.delete(thumbnail);
+      File dir = thumbnail.getParentFile();
+      String[] remaining = dir.list();
+      if (remaining != null && remaining.length == 0) {
+        FileUtil.delete(dir);
+      }
+    }
+  }
+
+  @Nullable
+  private File getThumbnailFile(@NotNull File source, int maxWidth, int maxHeight) {
+    long length = source.length();
+    long lastModified = source.lastModified();
+    if (length == 0 || lastModified == 0) {
+      // The file does not exist (anymore)
+      return null;
+    }
+    String dirName = Hashing.sha1().hashString(source.getAbsolutePath(), Charsets.UTF_8).toString();
+    String stamp = VERSION + ":" + length + ":" + lastModified + ":" + maxWidth + "x" + maxHeight;
+    String fileName = Hashing.sha1().hashString(stamp, Charsets.UTF_8).toString() + ".png";
+    return new File(new File(myRootDir, dirName), fileName);
+  }
+}
@@ -50,6 +50,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import static com.android.SdkConstants.ANDROID_URI;
 import static com.android.SdkConstants.ATTR_ID;
@@ -158,6 +159,12 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
 
   private volatile long myGeneration;
 
+  /** The generation of the most recent change that may have affected resources of any type */
+  private volatile long myAllTypesGeneration;
+
+  /** The generations of the most recent changes known to only affect resources of a single type, indexed by type ordinal */
+  private final AtomicLongArray myTypeGenerations = new AtomicLongArray(ResourceType.values().length);
+
   private final Object RESOURCE_DIRS_LOCK = new Object();
   @Nullable private Set<VirtualFile> myResourceDirs;
 
@@ -284,6 +291,28 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
 
   protected void setModificationCount(long count) {
     myGeneration = count;
+    myAllTypesGeneration = count;
+  }
+
+  /**
+   * Like {@link #setModificationCount(long)}, but for changes that are known to only affect resources of the given types.
+   */
+  protected void setModificationCount(long count, @NotNull ResourceType... types) {
+    for (ResourceType type : types) {
+      myTypeGenerations.set(type.ordinal(), count);
+    }
+    myGeneration = count;
+  }
+
+  /**
+   * Returns the generation of the resources of the given type. It increases whenever resources of that type may have
+   * changed, and stays the same when only resources of other types are updated, which allows caches of configured
+   * resources to only recompute the affected types.
+   *
+   * @see #getModificationCount()
+   */
+  public long getModificationCount(@NotNull ResourceType type) {
+    return Math.max(myAllTypesGeneration, myTypeGenerations.get(type.ordinal()));
   }
 
   @Nullable
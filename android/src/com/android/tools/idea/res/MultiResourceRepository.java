@@ -129,13 +129,25 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
       }
 
       if (changed) {
-        setModificationCount(ourModificationCounter.incrementAndGet());
+        // The children know which resource types have changed, see getModificationCount(ResourceType)
+        setModificationCount(ourModificationCounter.incrementAndGet(), new ResourceType[0]);
       }
 
       return super.getModificationCount();
     }
   }
 
+  @Override
+  public long getModificationCount(@NotNull ResourceType type) {
+    synchronized (ITEM_MAP_LOCK) {
+      long generation = super.getModificationCount(type);
+      for (int i = myChildren.size() - 1; i >= 0; i--) {
+        generation = Math.max(generation, myChildren.get(i).getModificationCount(type));
+      }
+      return generation;
+    }
+  }
+
   @Nullable
   @Override
   public DataBindingInfo getDataBindingInfoForLayout(String layoutName) {
@@ -342,7 +354,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
       }
 
       myFullTable = null;
-      setModificationCount(ourModificationCounter.incrementAndGet());
+      setModificationCount(ourModificationCounter.incrementAndGet(), types);
 
       invalidateParentCaches(namespace, types);
     }
@@ -1147,7 +1147,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
           }
 
           if (!idsBefore.equals(idsAfter)) {
-            setModificationCount(ourModificationCounter.incrementAndGet());
+            setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID);
           }
           scanDataBinding(resourceFile, getModificationCount());
           // Identities may have changed even if the ids are the same, so update maps
@@ -1302,7 +1302,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                       ResourceItem item = new PsiResourceItem(name, type, myNamespace, tag, psiFile);
                       map.put(name, item);
                       resourceFile.addItems(Collections.singletonList(item));
-                      setModificationCount(ourModificationCounter.incrementAndGet());
+                      setModificationCount(ourModificationCounter.incrementAndGet(), type);
                       invalidateParentCaches(myNamespace, type);
                       return;
                     }
@@ -1320,7 +1320,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                 ResourceItem parentItem = findValueResourceItem(parentTag, psiFile);
                 if (parentItem instanceof PsiResourceItem) {
                   if (((PsiResourceItem)parentItem).recomputeValue()) {
-                    setModificationCount(ourModificationCounter.incrementAndGet());
+                    setModificationCount(ourModificationCounter.incrementAndGet(), parentItem.getType());
                   }
                   return;
                 }
@@ -1365,7 +1365,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                     assert resFile instanceof PsiResourceFile;
                     PsiResourceFile resourceFile = (PsiResourceFile)resFile;
                     resourceFile.addItems(ids);
-                    setModificationCount(ourModificationCounter.incrementAndGet());
+                    setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID);
                     invalidateParentCaches(myNamespace, ResourceType.ID);
                   }
                 }
@@ -1466,7 +1466,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                   ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                   if (resourceItem instanceof PsiResourceItem) {
                     if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                      setModificationCount(ourModificationCounter.incrementAndGet());
+                      setModificationCount(ourModificationCounter.incrementAndGet(), resourceItem.getType());
                     }
 
                     if (resourceItem.getType() == ResourceType.ATTR) {
@@ -1475,7 +1475,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                         ResourceItem declareStyleable = findValueResourceItem(parentTag, psiFile);
                         if (declareStyleable instanceof PsiResourceItem) {
                           if (((PsiResourceItem)declareStyleable).recomputeValue()) {
-                            setModificationCount(ourModificationCounter.incrementAndGet());
+                            setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.DECLARE_STYLEABLE);
                           }
                         }
                       }
@@ -1513,7 +1513,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                         return;
                       }
                       if (removeItems(resourceFile, type, name, true)) {
-                        setModificationCount(ourModificationCounter.incrementAndGet());
+                        setModificationCount(ourModificationCounter.incrementAndGet(), type);
                         invalidateParentCaches(myNamespace, type);
                       }
                     }
@@ -1696,7 +1696,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                               map.put(newName, newItem);
                               resourceFile.addItem(newItem);
                             }
-                            setModificationCount(ourModificationCounter.incrementAndGet());
+                            setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID);
                             invalidateParentCaches(myNamespace, ResourceType.ID);
                             return;
                           }
@@ -1744,7 +1744,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                             map.put(newName, newItem);
                             resourceFile.addItem(newItem);
                           }
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID);
                           invalidateParentCaches(myNamespace, ResourceType.ID);
                           return;
                         }
@@ -1801,7 +1801,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                   ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                   if (resourceItem instanceof PsiResourceItem) {
                     if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                      setModificationCount(ourModificationCounter.incrementAndGet());
+                      setModificationCount(ourModificationCounter.incrementAndGet(), resourceItem.getType());
                     }
                     return;
                   }
@@ -1868,7 +1868,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                             assert false : item;
                           }
                         }
-                        setModificationCount(ourModificationCounter.incrementAndGet());
+                        setModificationCount(ourModificationCounter.incrementAndGet(), type);
                         invalidateParentCaches(myNamespace, type);
 
                         // Invalidate surrounding declare styleable if any
@@ -1877,7 +1877,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                           if (parentTag != null && parentTag.getName().equals(ResourceType.DECLARE_STYLEABLE.getName())) {
                             ResourceItem style = findValueResourceItem(parentTag, psiFile);
                             if (style instanceof PsiResourceItem) {
-                              ((PsiResourceItem)style).recomputeValue();
+                              if (((PsiResourceItem)style).recomputeValue()) {
+                                setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.DECLARE_STYLEABLE);
+                              }
                             }
                           }
                         }
@@ -1896,7 +1898,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                       ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                       if (resourceItem instanceof PsiResourceItem) {
                         if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCount(ourModificationCounter.incrementAndGet(), resourceItem.getType());
                         }
                         return;
                       }
@@ -1980,7 +1982,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
           if (item instanceof PsiResourceItem) {
             boolean cleared = ((PsiResourceItem)item).recomputeValue();
             if (cleared) { // Only bump revision if this is a value which has already been observed!
-              setModificationCount(ourModificationCounter.incrementAndGet());
+              setModificationCount(ourModificationCounter.incrementAndGet(), item.getType());
             }
           }
           return;
@@ -1999,7 +2001,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
             // Edited XML value
             boolean cleared = ((PsiResourceItem)item).recomputeValue();
             if (cleared) { // Only bump revision if this is a value which has already been observed!
-              setModificationCount(ourModificationCounter.incrementAndGet());
+              setModificationCount(ourModificationCounter.incrementAndGet(), item.getType());
             }
           }
           break;
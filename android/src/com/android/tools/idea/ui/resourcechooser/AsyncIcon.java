@@ -24,12 +24,13 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.CancellationException;
 
 /**
  * Icon that loads asynchronously from a given {@link ListenableFuture}
  */
 public class AsyncIcon implements Icon {
-  @NotNull private Icon myIcon;
+  @NotNull private volatile Icon myIcon;
   private final int myW;
   private final int myH;
 
@@ -62,6 +63,10 @@ public class AsyncIcon implements Icon {
 
       @Override
       public void onFailure(@NotNull Throwable e) {
+        if (e instanceof CancellationException) {
+          // The icon is not needed anymore, keep the placeholder
+          return;
+        }
         Logger.getInstance(AsyncIcon.class).warn("Unable to load AsyncIcon", e);
       }
     });
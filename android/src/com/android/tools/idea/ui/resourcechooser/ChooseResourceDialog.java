@@ -91,7 +91,6 @@ import org.jetbrains.android.util.AndroidUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.AbstractBorder;
 import javax.swing.border.Border;
@@ -104,8 +103,6 @@ import javax.swing.table.TableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
 import java.util.List;
 
@@ -1148,19 +1145,15 @@ public class ChooseResourceDialog extends DialogWrapper {
                                     @NotNull ResourceType type) {
     if (path != null && IconDetector.isDrawableFile(path)
         && !path.endsWith(DOT_XML)) {
-      // WebP images for unknown reasons don't load via ImageIcon(path)
-      if (path.endsWith(DOT_WEBP)) {
-        try {
-          BufferedImage image = ImageIO.read(new File(path));
-          if (image != null) {
-            return Futures.immediateFuture(new ResourceChooserImageIcon(size, image, checkerboardSize, interpolate));
-          }
-        }
-        catch (IOException ignore) {
+      // Decoding large bitmaps in the cell renderers makes scrolling stall, so they are decoded in the background
+      ListenableFuture<BufferedImage> thumbnail = ResourceChooserThumbnailCache.getInstance().getThumbnail(path, size, getDisposable());
+      return Futures.transform(thumbnail, (Function<BufferedImage, Icon>)image -> {
+        if (image != null) {
+          return new ResourceChooserImageIcon(size, image, checkerboardSize, interpolate);
         }
-      }
 
-      return Futures.immediateFuture(new ResourceChooserImageIcon(size, new ImageIcon(path).getImage(), checkerboardSize, interpolate));
+        return null;
+      });
     }
     else if (type == ResourceType.DRAWABLE || type == ResourceType.MIPMAP) {
       // TODO: Attempt to guess size for XML drawables since at least for vectors, we have attributes
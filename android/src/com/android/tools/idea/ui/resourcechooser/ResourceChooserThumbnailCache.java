@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.ui.resourcechooser;
+
+import com.android.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Application wide cache of the bitmaps shown by {@link ChooseResourceDialog}, downscaled to the size they are displayed at.
+ * <p>
+ * Bitmaps are decoded on background threads rather than in the cell renderers, and kept across openings of the dialog. Entries are
+ * keyed by the path, modification time and length of the file, so an edited image is decoded again. Pending requests are served
+ * most recent first, since those are for the cells that were painted last; requests for cells that were scrolled past wait until
+ * the visible ones are done, and are cancelled when the dialog is closed. The images are decoded on the application pool, by at
+ * most {@link #THREAD_COUNT} threads at a time so that opening the dialog doesn't take over the pool.
+ */
+final class ResourceChooserThumbnailCache {
+  /** Upper bound for the memory used by the cached thumbnails, in bytes. */
+  private static final long MAX_CACHE_WEIGHT = 16 * 1024 * 1024;
+  private static final int THREAD_COUNT = 2;
+
+  private static ResourceChooserThumbnailCache ourInstance;
+
+  private final Cache<String, BufferedImage> myThumbnails = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_CACHE_WEIGHT)
+    .weigher((String key, BufferedImage image) -> image.getWidth() * image.getHeight() * 4)
+    .build();
+
+  /** Requests not started yet, the most recent first. */
+  private final BlockingDeque<Runnable> myPendingTasks = new LinkedBlockingDeque<>();
+  private final Executor myExecutor;
+
+  @VisibleForTesting
+  ResourceChooserThumbnailCache(@NotNull Executor executor) {
+    myExecutor = executor;
+  }
+
+  @NotNull
+  static synchronized ResourceChooserThumbnailCache getInstance() {
+    if (ourInstance == null) {
+      ourInstance = new ResourceChooserThumbnailCache(new BoundedTaskExecutor(PooledThreadExecutor.INSTANCE, THREAD_COUNT));
+    }
+    return ourInstance;
+  }
+
+  /**
+   * Returns the image at the given path, scaled down so that it can be painted at the given size on a HiDPI screen. The future
+   * completes with null if the image can not be read, and is cancelled if it is still pending when {@code parentDisposable} is
+   * disposed.
+   */
+  @NotNull
+  ListenableFuture<BufferedImage> getThumbnail(@NotNull String path, int size, @NotNull Disposable parentDisposable) {
+    File file = new File(path);
+    String key = path + ':' + file.lastModified() + ':' + file.length() + ':' + size;
+    BufferedImage thumbnail = myThumbnails.getIfPresent(key);
+    if (thumbnail != null) {
+      return Futures.immediateFuture(thumbnail);
+    }
+
+    ListenableFutureTask<BufferedImage> task = ListenableFutureTask.create(() -> {
+      BufferedImage image = createThumbnail(file, 2 * size);
+      if (image != null) {
+        myThumbnails.put(key, image);
+      }
+      return image;
+    });
+    Disposable cancellation = () -> task.cancel(false);
+    Disposer.register(parentDisposable, cancellation);
+    task.addListener(() -> Disposer.dispose(cancellation), MoreExecutors.directExecutor());
+
+    // Each execution runs the most recent pending request, rather than the one it was submitted for
+    myPendingTasks.offerFirst(task);
+    myExecutor.execute(() -> {
+      Runnable next = myPendingTasks.pollFirst();
+      if (next != null) {
+        next.run();
+      }
+    });
+    return task;
+  }
+
+  @Nullable
+  private static BufferedImage createThumbnail(@NotNull File file, int maxSize) {
+    BufferedImage image = readImage(file);
+    if (image == null) {
+      return null;
+    }
+
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (width <= maxSize && height <= maxSize) {
+      return image;
+    }
+
+    double scale = Math.min(maxSize / (double)width, maxSize / (double)height);
+    BufferedImage thumbnail = new BufferedImage(Math.max(1, (int)(width * scale)), Math.max(1, (int)(height * scale)),
+                                                BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = thumbnail.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(image, 0, 0, thumbnail.getWidth(), thumbnail.getHeight(), null);
+    }
+    finally {
+      g.dispose();
+    }
+    return thumbnail;
+  }
+
+  @Nullable
+  private static BufferedImage readImage(@NotNull File file) {
+    try {
+      BufferedImage image = ImageIO.read(file);
+      if (image != null) {
+        return image;
+      }
+    }
+    catch (IOException ignore) {
+    }
+
+    // Fall back to the toolkit for the formats ImageIO can not read
+    Image image = new ImageIcon(file.getPath()).getImage();
+    int width = image.getWidth(null);
+    int height = image.getHeight(null);
+    if (width <= 0 || height <= 0) {
+      return null;
+    }
+
+    BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = bufferedImage.createGraphics();
+    try {
+      g.drawImage(image, 0, 0, null);
+    }
+    finally {
+      g.dispose();
+    }
+    return bufferedImage;
+  }
+}
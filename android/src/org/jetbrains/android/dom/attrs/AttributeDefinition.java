@@ -18,9 +18,13 @@ package org.jetbrains.android.dom.attrs;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.IOUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -181,4 +185,100 @@ public class AttributeDefinition implements Cloneable {
       throw new AssertionError();
     }
   }
+
+  /**
+   * Writes this definition in the format read by {@link #read(DataInput)}.
+   */
+  void write(@NotNull DataOutput out) throws IOException {
+    IOUtil.writeUTF(out, myName);
+    writeNullableString(out, myLibraryName);
+    out.writeInt(myParentStyleables.size());
+    for (String styleable : myParentStyleables) {
+      IOUtil.writeUTF(out, styleable);
+    }
+    out.writeInt(myFormats.size());
+    for (AttributeFormat format : myFormats) {
+      IOUtil.writeUTF(out, format.name());
+    }
+    String[] values = getValues();
+    out.writeInt(values.length);
+    for (String value : values) {
+      IOUtil.writeUTF(out, value);
+    }
+    writeStringMap(out, myStyleable2DocValue);
+    writeStringMap(out, myValueDoc);
+    out.writeInt(myValueMappings == null ? 0 : myValueMappings.size());
+    if (myValueMappings != null) {
+      for (Map.Entry<String, Integer> entry : myValueMappings.entrySet()) {
+        IOUtil.writeUTF(out, entry.getKey());
+        out.writeInt(entry.getValue());
+      }
+    }
+    writeNullableString(out, myGlobalDocValue);
+    writeNullableString(out, myAttrGroup);
+  }
+
+  @NotNull
+  static AttributeDefinition read(@NotNull DataInput in) throws IOException {
+    String name = IOUtil.readUTF(in);
+    String libraryName = readNullableString(in);
+    AttributeDefinition definition = new AttributeDefinition(name, libraryName, null, Collections.emptySet());
+    for (int i = in.readInt(); i > 0; i--) {
+      definition.myParentStyleables.add(IOUtil.readUTF(in));
+    }
+    for (int i = in.readInt(); i > 0; i--) {
+      try {
+        definition.myFormats.add(AttributeFormat.valueOf(IOUtil.readUTF(in)));
+      }
+      catch (IllegalArgumentException e) {
+        throw new IOException(e);
+      }
+    }
+    for (int i = in.readInt(); i > 0; i--) {
+      definition.addValue(IOUtil.readUTF(in));
+    }
+    definition.myStyleable2DocValue.putAll(readStringMap(in));
+    Map<String, String> valueDoc = readStringMap(in);
+    if (!valueDoc.isEmpty()) {
+      definition.myValueDoc = new HashMap<>(valueDoc);
+    }
+    for (int i = in.readInt(); i > 0; i--) {
+      definition.addValueMapping(IOUtil.readUTF(in), in.readInt());
+    }
+    definition.myGlobalDocValue = readNullableString(in);
+    definition.myAttrGroup = readNullableString(in);
+    return definition;
+  }
+
+  static void writeNullableString(@NotNull DataOutput out, @Nullable String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      IOUtil.writeUTF(out, value);
+    }
+  }
+
+  @Nullable
+  static String readNullableString(@NotNull DataInput in) throws IOException {
+    return in.readBoolean() ? IOUtil.readUTF(in) : null;
+  }
+
+  private static void writeStringMap(@NotNull DataOutput out, @Nullable Map<String, String> map) throws IOException {
+    out.writeInt(map == null ? 0 : map.size());
+    if (map != null) {
+      for (Map.Entry<String, String> entry : map.entrySet()) {
+        IOUtil.writeUTF(out, entry.getKey());
+        IOUtil.writeUTF(out, entry.getValue());
+      }
+    }
+  }
+
+  @NotNull
+  private static Map<String, String> readStringMap(@NotNull DataInput in) throws IOException {
+    int size = in.readInt();
+    Map<String, String> map = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      map.put(IOUtil.readUTF(in), IOUtil.readUTF(in));
+    }
+    return map;
+  }
 }
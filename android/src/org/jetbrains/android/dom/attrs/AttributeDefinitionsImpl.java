@@ -24,11 +24,15 @@ import com.intellij.psi.xml.XmlDocument;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.containers.HashMap;
+import com.intellij.util.io.IOUtil;
 import com.intellij.xml.util.XmlUtil;
 import com.intellij.xml.util.documentation.XmlDocumentationProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 import static com.android.SdkConstants.*;
@@ -45,6 +49,10 @@ public class AttributeDefinitionsImpl implements AttributeDefinitions {
   private final Map<String, Map<String, Integer>> myEnumMap = new HashMap<>();
   private final AttributeDefinitions mySystemAttributeDefinitions;
 
+  private AttributeDefinitionsImpl() {
+    mySystemAttributeDefinitions = null;
+  }
+
   public AttributeDefinitionsImpl(@NotNull XmlFile... files) {
     mySystemAttributeDefinitions = null;
     for (XmlFile file : files) {
@@ -339,4 +347,98 @@ public class AttributeDefinitionsImpl implements AttributeDefinitions {
   public Map<String, Map<String, Integer>> getEnumMap() {
     return myEnumMap;
   }
+
+  /**
+   * Writes these definitions in the format read by {@link #read(DataInput)}, so that they can be loaded without parsing the
+   * attribute files again. Only definitions that do not refer to system attribute definitions, like the framework ones, can be
+   * written.
+   */
+  public void write(@NotNull DataOutput out) throws IOException {
+    if (mySystemAttributeDefinitions != null) {
+      throw new IllegalStateException("Definitions referring to system attribute definitions can not be written");
+    }
+
+    out.writeInt(myAttrs.size());
+    for (AttributeDefinition definition : myAttrs.values()) {
+      definition.write(out);
+    }
+
+    out.writeInt(myStyleables.size());
+    for (StyleableDefinitionImpl styleable : myStyleables.values()) {
+      IOUtil.writeUTF(out, styleable.getName());
+      List<AttributeDefinition> attributes = styleable.getAttributes();
+      out.writeInt(attributes.size());
+      for (AttributeDefinition attribute : attributes) {
+        IOUtil.writeUTF(out, attribute.getName());
+      }
+      List<StyleableDefinition> parents = styleable.getParents();
+      out.writeInt(parents.size());
+      for (StyleableDefinition parent : parents) {
+        IOUtil.writeUTF(out, parent.getName());
+      }
+    }
+
+    out.writeInt(myEnumMap.size());
+    for (Map.Entry<String, Map<String, Integer>> entry : myEnumMap.entrySet()) {
+      IOUtil.writeUTF(out, entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (Map.Entry<String, Integer> value : entry.getValue().entrySet()) {
+        IOUtil.writeUTF(out, value.getKey());
+        out.writeInt(value.getValue());
+      }
+    }
+  }
+
+  /**
+   * Reads definitions written by {@link #write(DataOutput)}.
+   */
+  @NotNull
+  public static AttributeDefinitionsImpl read(@NotNull DataInput in) throws IOException {
+    AttributeDefinitionsImpl definitions = new AttributeDefinitionsImpl();
+
+    for (int i = in.readInt(); i > 0; i--) {
+      AttributeDefinition definition = AttributeDefinition.read(in);
+      definitions.myAttrs.put(definition.getName(), definition);
+    }
+
+    Map<StyleableDefinitionImpl, List<String>> parentMap = new HashMap<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      StyleableDefinitionImpl styleable = new StyleableDefinitionImpl(IOUtil.readUTF(in));
+      for (int j = in.readInt(); j > 0; j--) {
+        AttributeDefinition attribute = definitions.myAttrs.get(IOUtil.readUTF(in));
+        if (attribute == null) {
+          throw new IOException("Unknown attribute in styleable " + styleable.getName());
+        }
+        styleable.addAttribute(attribute);
+      }
+      List<String> parentNames = new ArrayList<>();
+      for (int j = in.readInt(); j > 0; j--) {
+        parentNames.add(IOUtil.readUTF(in));
+      }
+      parentMap.put(styleable, parentNames);
+      definitions.myStyleables.put(styleable.getName(), styleable);
+    }
+    for (Map.Entry<StyleableDefinitionImpl, List<String>> entry : parentMap.entrySet()) {
+      for (String parentName : entry.getValue()) {
+        StyleableDefinitionImpl parent = definitions.getStyleableByName(parentName);
+        if (parent == null) {
+          throw new IOException("Unknown parent styleable " + parentName);
+        }
+        entry.getKey().addParent(parent);
+        parent.addChild(entry.getKey());
+      }
+    }
+
+    for (int i = in.readInt(); i > 0; i--) {
+      String name = IOUtil.readUTF(in);
+      int size = in.readInt();
+      Map<String, Integer> values = new HashMap<>();
+      for (int j = 0; j < size; j++) {
+        values.put(IOUtil.readUTF(in), in.readInt());
+      }
+      definitions.myEnumMap.put(name, values);
+    }
+
+    return definitions;
+  }
 }
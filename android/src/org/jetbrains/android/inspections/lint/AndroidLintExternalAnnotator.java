@@ -27,6 +27,7 @@ import com.intellij.lang.annotation.ExternalAnnotator;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.actionSystem.IdeActions;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypes;
@@ -38,14 +39,17 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Iconable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.ui.UIUtil;
 import com.intellij.xml.util.XmlStringUtil;
@@ -59,6 +63,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.groovy.GroovyFileType;
 
 import javax.swing.*;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
@@ -72,6 +77,9 @@ import static com.android.tools.lint.detector.api.TextFormat.RAW;
  * @author Eugene.Kudelevsky
  */
 public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State> {
+  private static final Logger LOG = Logger.getInstance(AndroidLintExternalAnnotator.class);
+  private static final Key<CachedProblems> CACHED_PROBLEMS = Key.create("android.lint.cached.problems");
+
   static final boolean INCLUDE_IDEA_SUPPRESS_ACTIONS = false;
 
   @Nullable
@@ -131,7 +139,9 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
     if (issues.isEmpty()) {
       return null;
     }
-    return new State(module, vFile, file.getText(), issues);
+    long modificationCount = PsiManager.getInstance(module.getProject()).getModificationTracker().getModificationCount() +
+                             ProjectRootManager.getInstance(module.getProject()).getModificationCount();
+    return new State(module, vFile, file.getText(), issues, modificationCount);
   }
 
   public static boolean isKotlin(FileType fileType) {
@@ -141,6 +151,12 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
 
   @Override
   public State doAnnotate(final State state) {
+    CachedProblems cachedProblems = state.getMainFile().getUserData(CACHED_PROBLEMS);
+    if (cachedProblems != null && cachedProblems.isUpToDate(state)) {
+      state.getProblems().addAll(cachedProblems.getProblems());
+      return state;
+    }
+
     final LintIdeClient client = LintIdeClient.forEditor(state);
     try {
       EnumSet<Scope> scope;
@@ -180,8 +196,16 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
                                                Collections.singletonList(state.getModule()), true /* incremental */);
       request.setScope(scope);
 
+      long start = System.currentTimeMillis();
       LintDriver lint = new LintDriver(new LintIdeIssueRegistry(), client, request);
       lint.analyze();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Lint analysis of " + mainFile.getPath() + " took " + (System.currentTimeMillis() - start) + " ms");
+      }
+
+      if (!state.isDirty()) {
+        mainFile.putUserData(CACHED_PROBLEMS, new CachedProblems(state));
+      }
     }
     finally {
       Disposer.dispose(client);
@@ -189,6 +213,39 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
     return state;
   }
 
+  /**
+   * The problems found by the last analysis of a file. The editor highlighting is restarted for many reasons other than edits
+   * (switching editors, profile changes, other annotators); lint is only run again if the file content, the enabled issues,
+   * the PSI of any file or the project roots changed since.
+   */
+  private static final class CachedProblems {
+    private final int myContentHash;
+    private final int myContentLength;
+    private final Set<Issue> myIssues;
+    private final long myModificationCount;
+    private final List<ProblemData> myProblems;
+
+    private CachedProblems(@NotNull State state) {
+      myContentHash = state.getMainFileContent().hashCode();
+      myContentLength = state.getMainFileContent().length();
+      myIssues = state.getIssues();
+      myModificationCount = state.getModificationCount();
+      myProblems = new ArrayList<>(state.getProblems());
+    }
+
+    private boolean isUpToDate(@NotNull State state) {
+      return myModificationCount == state.getModificationCount() &&
+             myContentLength == state.getMainFileContent().length() &&
+             myContentHash == state.getMainFileContent().hashCode() &&
+             myIssues.equals(state.getIssues());
+    }
+
+    @NotNull
+    private List<ProblemData> getProblems() {
+      return myProblems;
+    }
+  }
+
   @NotNull
   static Set<Issue> getIssuesFromInspections(@NotNull Project project, @Nullable PsiElement context) {
     final IssueRegistry fullRegistry = new LintIdeIssueRegistry();
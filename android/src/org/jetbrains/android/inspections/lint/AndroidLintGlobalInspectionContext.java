@@ -7,7 +7,9 @@ import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.lint.*;
 import com.android.tools.lint.client.api.LintBaseline;
 import com.android.tools.lint.client.api.LintDriver;
+import com.android.tools.lint.client.api.LintListener;
 import com.android.tools.lint.client.api.LintRequest;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Issue;
 import com.android.tools.lint.detector.api.LintUtils;
 import com.android.tools.lint.detector.api.Scope;
@@ -50,6 +52,8 @@ import java.util.*;
 import static org.jetbrains.android.inspections.lint.AndroidLintInspectionBase.LINT_INSPECTION_PREFIX;
 
 class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExtension<AndroidLintGlobalInspectionContext> {
+  private static final Logger LOG = Logger.getInstance(AndroidLintGlobalInspectionContext.class);
+
   static final Key<AndroidLintGlobalInspectionContext> ID = Key.create("AndroidLintGlobalInspectionContext");
   private Map<Issue, Map<File, List<ProblemData>>> myResults;
   private LintBaseline myBaseline;
@@ -203,7 +207,7 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       case AnalysisScope.INVALID:
         break;
       default:
-        Logger.getInstance(this.getClass()).warn("Unexpected inspection scope " + scope + ", " + scopeType);
+        LOG.warn("Unexpected inspection scope " + scope + ", " + scopeType);
     }
 
     if (modules.isEmpty()) {
@@ -271,7 +275,10 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
+    ProjectTimer timer = new ProjectTimer();
+    lint.addLintListener(timer);
     lint.analyze();
+    timer.log();
 
     List<Tools> tools = AndroidLintInspectionBase.getDynamicTools();
     AndroidLintInspectionBase.resetDynamicTools();
@@ -337,4 +344,57 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       myEnabledIssue = null;
     }
   }
+
+  /**
+   * Measures the time lint spends on each project (module or library) of a batch run, so that the modules making
+   * "Inspect Code" slow can be found in the log. A project can be scanned in several phases; the times are summed up.
+   */
+  private static class ProjectTimer implements LintListener {
+    private final Map<String, Long> myTimes = new LinkedHashMap<>();
+    private String myCurrentProject;
+    private long myStart;
+
+    @Override
+    public void update(@NotNull LintDriver driver,
+                       @NotNull EventType type,
+                       @Nullable com.android.tools.lint.detector.api.Project project,
+                       @Nullable Context context) {
+      switch (type) {
+        case SCANNING_PROJECT:
+        case SCANNING_LIBRARY_PROJECT:
+          stop();
+          if (context != null) {
+            myCurrentProject = context.getProject().getName();
+            myStart = System.currentTimeMillis();
+          }
+          break;
+        case COMPLETED:
+        case CANCELED:
+          stop();
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void stop() {
+      if (myCurrentProject != null) {
+        myTimes.merge(myCurrentProject, System.currentTimeMillis() - myStart, Long::sum);
+        myCurrentProject = null;
+      }
+    }
+
+    private void log() {
+      if (myTimes.isEmpty()) {
+        return;
+      }
+      List<Map.Entry<String, Long>> times = new ArrayList<>(myTimes.entrySet());
+      times.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+      StringBuilder message = new StringBuilder("Lint time per project:");
+      for (Map.Entry<String, Long> entry : times) {
+        message.append(' ').append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+      }
+      LOG.info(message.toString());
+    }
+  }
 }
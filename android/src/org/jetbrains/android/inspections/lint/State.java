@@ -19,17 +19,20 @@ public class State {
   private final String myMainFileContent;
   private final List<ProblemData> myProblems = new ArrayList<ProblemData>();
   private final Set<Issue> myIssues;
+  private final long myModificationCount;
 
   private volatile boolean myDirty;
 
   State(@NotNull Module module,
         @NotNull VirtualFile mainFile,
         @NotNull String mainFileContent,
-        @NotNull Set<Issue> issues) {
+        @NotNull Set<Issue> issues,
+        long modificationCount) {
     myModule = module;
     myMainFile = mainFile;
     myMainFileContent = mainFileContent;
     myIssues = issues;
+    myModificationCount = modificationCount;
   }
 
   @NotNull
@@ -64,4 +67,11 @@ public class State {
   public Set<Issue> getIssues() {
     return myIssues;
   }
+
+  /**
+   * Returns the modification count of the PSI and of the project roots at the time the main file content was collected.
+   */
+  public long getModificationCount() {
+    return myModificationCount;
+  }
 }
@@ -41,12 +41,14 @@ import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.android.dom.attrs.AttributeDefinitions;
 import org.jetbrains.android.dom.attrs.AttributeDefinitionsImpl;
 import org.jetbrains.android.resourceManagers.FilteredAttributeDefinitions;
+import org.jetbrains.android.util.AndroidUtils;
 import com.android.tools.idea.layoutlib.LayoutLibraryLoader;
 import com.android.tools.idea.layoutlib.RenderingException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.Map;
@@ -58,6 +60,8 @@ import java.util.Set;
 public class AndroidTargetData {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.android.sdk.AndroidTargetData");
 
+  private static FrameworkAttributeDefinitionsStore ourAttrDefsStore;
+
   private final AndroidSdkData mySdkData;
   private final IAndroidTarget myTarget;
 
@@ -93,22 +97,43 @@ public class AndroidTargetData {
   @Nullable
   public AttributeDefinitionsImpl getAllAttrDefs(@NotNull final Project project) {
     if (myAttrDefs == null) {
+      final String attrsPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.ATTRIBUTES));
+      final String attrsManifestPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.MANIFEST_ATTRIBUTES));
+      final File[] sources = {new File(attrsPath), new File(attrsManifestPath)};
+
+      // Reading the stored definitions is much faster than building the PSI of the attribute files
+      final AttributeDefinitionsImpl storedAttrDefs = getAttrDefsStore().load(sources);
+      if (storedAttrDefs != null) {
+        myAttrDefs = storedAttrDefs;
+        return myAttrDefs;
+      }
+
       ApplicationManager.getApplication().runReadAction(new Runnable() {
         @Override
         public void run() {
-          final String attrsPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.ATTRIBUTES));
-          final String attrsManifestPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.MANIFEST_ATTRIBUTES));
-
           final XmlFile[] files = findXmlFiles(project, attrsPath, attrsManifestPath);
           if (files != null) {
             myAttrDefs = new AttributeDefinitionsImpl(files);
           }
         }
       });
+
+      final AttributeDefinitionsImpl attrDefs = myAttrDefs;
+      if (attrDefs != null) {
+        getAttrDefsStore().store(attrDefs, sources);
+      }
     }
     return myAttrDefs;
   }
 
+  @NotNull
+  private static synchronized FrameworkAttributeDefinitionsStore getAttrDefsStore() {
+    if (ourAttrDefsStore == null) {
+      ourAttrDefsStore = new FrameworkAttributeDefinitionsStore(new File(AndroidUtils.getAndroidSystemDirectoryOsPath(), "framework_attrs"));
+    }
+    return ourAttrDefsStore;
+  }
+
   @Nullable
   private Map<String, Set<String>> getPublicResourceCache() {
     synchronized (myPublicResourceCacheLock) {
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.android.dom.attrs.AttributeDefinitionsImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+
+/**
+ * Disk store for the framework attribute definitions of the platforms, so that attrs.xml and attrs_manifest.xml don't have to be
+ * parsed into PSI again in every IDE session before the first layout can be rendered or completed.
+ * <p>
+ * Each platform has its own file, named after the hash of the paths of its attribute files. The file starts with a stamp made of
+ * the format version and the size and modification time of the attribute files, and is ignored when the stamp doesn't match.
+ */
+class FrameworkAttributeDefinitionsStore {
+  private static final Logger LOG = Logger.getInstance(FrameworkAttributeDefinitionsStore.class);
+
+  /** Increment when the format written by {@link AttributeDefinitionsImpl#write} or the way attributes are parsed changes. */
+  private static final int VERSION = 1;
+
+  @NotNull private final File myRootDir;
+
+  FrameworkAttributeDefinitionsStore(@NotNull File rootDir) {
+    myRootDir = rootDir;
+  }
+
+  /**
+   * Returns the definitions stored for the current version of the given attribute files, or null if there are none.
+   */
+  @Nullable
+  AttributeDefinitionsImpl load(@NotNull File... sources) {
+    String stamp = getStamp(sources);
+    File file = getFile(sources);
+    if (stamp == null || !file.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (!stamp.equals(IOUtil.readUTF(in))) {
+        return null;
+      }
+      return AttributeDefinitionsImpl.read(in);
+    }
+    catch (IOException e) {
+      LOG.debug("Could not read framework attribute definitions from " + file, e);
+      FileUtil.delete(file);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the definitions parsed from the current version of the given attribute files.
+   */
+  void store(@NotNull AttributeDefinitionsImpl definitions, @NotNull File... sources) {
+    String stamp = getStamp(sources);
+    if (stamp == null) {
+      return;
+    }
+    File file = getFile(sources);
+    // Write to a temporary file first so that a concurrent reader never sees a partially written file
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      FileUtil.createParentDirs(temp);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        IOUtil.writeUTF(out, stamp);
+        definitions.write(out);
+      }
+      if (!temp.renameTo(file)) {
+        // Renaming over an existing file fails on Windows
+        FileUtil.delete(file);
+        FileUtil.rename(temp, file);
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Could not write framework attribute definitions to " + file, e);
+      FileUtil.delete(temp);
+    }
+  }
+
+  @NotNull
+  private File getFile(@NotNull File... sources) {
+    StringBuilder paths = new StringBuilder();
+    for (File source : sources) {
+      paths.append(source.getAbsolutePath()).append('\n');
+    }
+    return new File(myRootDir, Hashing.sha1().hashString(paths, Charsets.UTF_8).toString());
+  }
+
+  @Nullable
+  private static String getStamp(@NotNull File... sources) {
+    StringBuilder stamp = new StringBuilder().append(VERSION);
+    for (File source : sources) {
+      long length = source.length();
+      long lastModified = source.lastModified();
+      if (length == 0 || lastModified == 0) {
+        // The file does not exist (anymore)
+        return null;
+      }
+      stamp.append(':').append(length).append(':').append(lastModified);
+    }
+    return stamp.toString();
+  }
+}
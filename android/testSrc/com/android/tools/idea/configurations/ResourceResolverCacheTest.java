@@ -17,6 +17,8 @@ package com.android.tools.idea.configurations;
 
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.ide.common.resources.ResourceResolver;
+import com.android.ide.common.resources.ResourceValueMap;
+import com.android.resources.ResourceType;
 import com.android.sdklib.devices.Device;
 import com.android.sdklib.devices.Screen;
 import com.android.tools.idea.res.LocalResourceRepository;
@@ -30,11 +32,16 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTagValue;
+import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.AndroidTestCase;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.sdk.FrameworkResourceLoader;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Ignore;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class ResourceResolverCacheTest extends AndroidTestCase {
 
   public void test() throws Exception {
@@ -174,4 +181,53 @@ public class ResourceResolverCacheTest extends AndroidTestCase {
     // We've only changed the theme so the resource maps won't change. They are indexed per device config.
     assertDoesntContain(cache.myResolverMap.keySet(), customResolverMapKey);
   }
+
+  public void testValueEditOnlyUpdatesChangedType() {
+    VirtualFile layout = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    VirtualFile strings = myFixture.copyFileToProject("javadoc/strings/strings.xml", "res/values/strings.xml");
+    PsiFile stringsPsi = PsiManager.getInstance(getProject()).findFile(strings);
+    assertNotNull(stringsPsi);
+    ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
+    Configuration configuration = configurationManager.getConfiguration(layout);
+    ResourceResolverCache cache = configurationManager.getResolverCache();
+    assertEquals("Cancel", configuration.getResourceResolver().findResValue("@string/cancel", false).getValue());
+
+    // The first edit converts the file to PSI and rescans it
+    setCancelText(stringsPsi, "FooBar");
+    assertEquals("FooBar", configuration.getResourceResolver().findResValue("@string/cancel", false).getValue());
+    String key = Iterables.getOnlyElement(cache.myAppResourceMap.keySet());
+    Map<ResourceType, ResourceValueMap> before = cache.myAppResourceMap.get(key).myResources;
+
+    // Subsequent edits are incremental and only affect strings
+    setCancelText(stringsPsi, "Baz");
+    assertEquals("Baz", configuration.getResourceResolver().findResValue("@string/cancel", false).getValue());
+    Map<ResourceType, ResourceValueMap> after = cache.myAppResourceMap.get(key).myResources;
+    assertNotSame(before, after);
+    assertNotSame(before.get(ResourceType.STRING), after.get(ResourceType.STRING));
+    assertSame(before.get(ResourceType.LAYOUT), after.get(ResourceType.LAYOUT));
+  }
+
+  public void testFrameworkResourcesAreBounded() {
+    ResourceResolverCache cache = ConfigurationManager.getOrCreateInstance(myModule).getResolverCache();
+    ResourceResolver resolver = ResourceResolver.create(Collections.emptyMap(), Collections.emptyMap(), null, false);
+    cache.putResolver("-config0", "@style/Theme-config0", resolver);
+    // A resolver of another configuration whose key happens to end with the evicted configuration is kept
+    cache.putResolver("-x-config0", "@style/Theme-x-config0", resolver);
+    for (int i = 0; i < ResourceResolverCache.MAX_CACHED_CONFIGURATIONS; i++) {
+      cache.myFrameworkResourceMap.put("-config" + i, Collections.emptyMap());
+    }
+    cache.myFrameworkResourceMap.put("-x-config0", Collections.emptyMap());
+    assertEquals(ResourceResolverCache.MAX_CACHED_CONFIGURATIONS, cache.myFrameworkResourceMap.size());
+    assertDoesntContain(cache.myFrameworkResourceMap.keySet(), "-config0");
+    assertEquals(Collections.singleton("@style/Theme-x-config0"), cache.myResolverMap.keySet());
+  }
+
+  private static void setCancelText(@NotNull PsiFile stringsFile, @NotNull String text) {
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      //noinspection ConstantConditions
+      XmlTagValue value = ((XmlFile)stringsFile).getRootTag().getSubTags()[1].getValue();
+      value.setText(text);
+    });
+    UIUtil.dispatchAllInvocationEvents();
+  }
 }
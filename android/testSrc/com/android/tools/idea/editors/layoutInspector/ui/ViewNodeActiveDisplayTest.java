@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.layoutInspector.ui;
+
+import com.android.layoutinspector.model.ViewNode;
+import com.android.tools.idea.editors.layoutInspector.LayoutFileData;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.android.tools.idea.editors.layoutInspector.ui.ViewNodeActiveDisplay.STROKE_MARGIN;
+
+public class ViewNodeActiveDisplayTest extends AndroidTestCase {
+  private ViewNode myRoot;
+  private RecordingDisplay myDisplay;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    File testData = Paths.get(getTestDataPath(), "editors/layoutInspector/LayoutCapture.li").toFile();
+    VirtualFile layoutFile = LocalFileSystem.getInstance().findFileByIoFile(testData);
+    LayoutFileData fileData = new LayoutFileData(layoutFile);
+    myRoot = fileData.myNode;
+    myDisplay = new RecordingDisplay(myRoot, fileData.myBufferedImage);
+    myDisplay.setSize(600, 1000);
+    paint(1);
+    myDisplay.myRepaintedAreas.clear();
+  }
+
+  public void testHoverRepaintsOnlyTheOldAndNewBoxes() {
+    // The area repainted for the root gives the offset of the preview in the component
+    myDisplay.setHoverNode(myRoot);
+    assertSize(1, myDisplay.myRepaintedAreas);
+    Rectangle rootArea = myDisplay.myRepaintedAreas.get(0);
+    int shiftX = rootArea.x + STROKE_MARGIN - myRoot.previewBox.x;
+    int shiftY = rootArea.y + STROKE_MARGIN - myRoot.previewBox.y;
+    assertEquals(getExpectedArea(myRoot, shiftX, shiftY), rootArea);
+
+    ViewNode child = myRoot.children.get(0);
+    myDisplay.myRepaintedAreas.clear();
+    myDisplay.setHoverNode(child);
+    assertSize(2, myDisplay.myRepaintedAreas);
+    assertEquals(rootArea, myDisplay.myRepaintedAreas.get(0));
+    assertEquals(getExpectedArea(child, shiftX, shiftY), myDisplay.myRepaintedAreas.get(1));
+
+    // Selecting the hovered node only repaints its box
+    myDisplay.myRepaintedAreas.clear();
+    myDisplay.setSelectedNode(child);
+    assertSize(1, myDisplay.myRepaintedAreas);
+    assertEquals(getExpectedArea(child, shiftX, shiftY), myDisplay.myRepaintedAreas.get(0));
+
+    // Nothing is repainted when the hovered node does not change
+    myDisplay.myRepaintedAreas.clear();
+    myDisplay.setHoverNode(child);
+    assertEmpty(myDisplay.myRepaintedAreas);
+  }
+
+  public void testScaledPreviewFollowsSizeAndDeviceScale() {
+    BufferedImage scaledPreview = myDisplay.getScaledPreview();
+    assertNotNull(scaledPreview);
+    assertEquals(myRoot.previewBox.width, scaledPreview.getWidth());
+    assertEquals(myRoot.previewBox.height, scaledPreview.getHeight());
+
+    // Painting again at the same size reuses the scaled preview
+    paint(1);
+    assertSame(scaledPreview, myDisplay.getScaledPreview());
+
+    myDisplay.setSize(300, 500);
+    paint(1);
+    BufferedImage resizedPreview = myDisplay.getScaledPreview();
+    assertNotNull(resizedPreview);
+    assertNotSame(scaledPreview, resizedPreview);
+    assertEquals(myRoot.previewBox.width, resizedPreview.getWidth());
+    assertEquals(myRoot.previewBox.height, resizedPreview.getHeight());
+
+    // On a HiDPI screen the preview is scaled to device pixels
+    paint(2);
+    BufferedImage hiDpiPreview = myDisplay.getScaledPreview();
+    assertNotNull(hiDpiPreview);
+    assertEquals(2 * myRoot.previewBox.width, hiDpiPreview.getWidth());
+    assertEquals(2 * myRoot.previewBox.height, hiDpiPreview.getHeight());
+  }
+
+  private void paint(int deviceScale) {
+    BufferedImage image = new BufferedImage(myDisplay.getWidth() * deviceScale, myDisplay.getHeight() * deviceScale,
+                                            BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.scale(deviceScale, deviceScale);
+      myDisplay.paint(g);
+    }
+    finally {
+      g.dispose();
+    }
+  }
+
+  @NotNull
+  private static Rectangle getExpectedArea(@NotNull ViewNode node, int shiftX, int shiftY) {
+    Rectangle box = node.previewBox;
+    return new Rectangle(shiftX + box.x - STROKE_MARGIN, shiftY + box.y - STROKE_MARGIN,
+                         box.width + 2 * STROKE_MARGIN + 1, box.height + 2 * STROKE_MARGIN + 1);
+  }
+
+  private static class RecordingDisplay extends ViewNodeActiveDisplay {
+    private final List<Rectangle> myRepaintedAreas = new ArrayList<>();
+
+    private RecordingDisplay(@NotNull ViewNode root, @Nullable Image preview) {
+      super(root, preview);
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+      myRepaintedAreas.add(new Rectangle(x, y, width, height));
+    }
+  }
+}
@@ -107,6 +107,18 @@ public class StringResourceDataTest extends AndroidTestCase {
     assertEquals("Key 2 hi", data.getStringResource(newStringResourceKey("key2")).getTranslationAsString(Locale.create("hi")));
   }
 
+  public void testGetStringResource() {
+    StringResourceKey key = newStringResourceKey("key1");
+    assertSame(data.getStringResource(key), data.getStringResource(key));
+
+    try {
+      data.getStringResource(newStringResourceKey("missing_key"));
+      fail();
+    }
+    catch (IllegalArgumentException expected) {
+    }
+  }
+
   public void testResourceToStringPsi() {
     Locale locale = Locale.create("fr");
 
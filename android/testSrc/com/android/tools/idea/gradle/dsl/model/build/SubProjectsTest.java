@@ -15,10 +15,15 @@
  */
 package com.android.tools.idea.gradle.dsl.model.build;
 
+import com.android.tools.idea.gradle.dsl.model.GradleBuildModel;
 import com.android.tools.idea.gradle.dsl.model.GradleFileModelTestCase;
 import com.android.tools.idea.gradle.dsl.model.java.JavaModel;
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.module.Module;
 import com.intellij.pom.java.LanguageLevel;
 
+import java.util.Map;
+
 /**
  * Tests subprojects section of the build.gradle file.
  */
@@ -96,4 +101,22 @@ public class SubProjectsTest extends GradleFileModelTestCase {
     assertEquals(LanguageLevel.JDK_1_6, subModuleJava.sourceCompatibility()); // 1_4 is overridden with 1_6
     assertEquals(LanguageLevel.JDK_1_7, subModuleJava.targetCompatibility()); // 1_5 is overridden with 1_7
   }
+
+  public void testSubProjectsSectionWhenParsingAllModules() throws Exception {
+    String settingsText = "include ':" + SUB_MODULE_NAME + "'";
+
+    String mainModuleText = "sourceCompatibility = 1.4 \n" +
+                            "subprojects { \n" +
+                            "  sourceCompatibility = 1.5\n" +
+                            "}";
+
+    writeToSettingsFile(settingsText);
+    writeToBuildFile(mainModuleText);
+    writeToSubModuleBuildFile("");
+
+    Map<Module, GradleBuildModel> buildModels = GradleBuildModel.get(myProject, ImmutableList.of(myModule, mySubModule));
+    assertSize(2, buildModels.keySet());
+    assertEquals(LanguageLevel.JDK_1_4, buildModels.get(myModule).java().sourceCompatibility());
+    assertEquals(LanguageLevel.JDK_1_5, buildModels.get(mySubModule).java().sourceCompatibility());
+  }
 }
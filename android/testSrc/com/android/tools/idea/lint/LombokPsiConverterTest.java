@@ -816,6 +816,28 @@ public class LombokPsiConverterTest extends AndroidTestCase {
                  actual);
   }
 
+  public void testCompilationUnitIsReusedUntilModified() {
+    VirtualFile file = myFixture.copyFileToProject("intentions/R.java", "src/p1/p2/R.java");
+    PsiJavaFile psiFile = (PsiJavaFile)PsiManager.getInstance(getProject()).findFile(file);
+    assertNotNull(psiFile);
+
+    CompilationUnit compilationUnit = LombokPsiConverter.getCompilationUnit(psiFile);
+    assertNotNull(compilationUnit);
+    assertSame(compilationUnit, LombokPsiConverter.getCompilationUnit(psiFile));
+
+    PsiDocumentManager manager = PsiDocumentManager.getInstance(getProject());
+    Document document = manager.getDocument(psiFile);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.insertString(0, "// Comment\n");
+      manager.commitDocument(document);
+    });
+
+    CompilationUnit updated = LombokPsiConverter.getCompilationUnit(psiFile);
+    assertNotNull(updated);
+    assertNotSame(compilationUnit, updated);
+  }
+
   private void check(VirtualFile file) {
     assertNotNull(file);
     assertTrue(file.exists());
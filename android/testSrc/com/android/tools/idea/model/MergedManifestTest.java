@@ -23,8 +23,12 @@ import com.android.tools.idea.model.MergedManifest.ActivityAttributes;
 import com.android.tools.idea.res.ResourceHelper;
 import com.android.tools.lint.checks.PermissionHolder;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import org.jetbrains.android.AndroidTestCase;
 import org.jetbrains.annotations.NotNull;
 
@@ -191,6 +195,26 @@ public class MergedManifestTest extends AndroidTestCase {
     assertEquals("@string/app_name", info.getApplicationLabel());
   }
 
+  public void testManifestEditUpdatesSnapshot() throws Exception {
+    MergedManifest info = getMergedManifest("<manifest xmlns:android='http://schemas.android.com/apk/res/android'\n" +
+                                            "    package='com.android.unittest'>\n" +
+                                            "    <application android:label=\"@string/app_name\">\n" +
+                                            "    </application>\n" +
+                                            "</manifest>\n");
+    assertEquals("@string/app_name", info.getApplicationLabel());
+
+    // Edit the manifest without calling clear(); the change events must mark the snapshot as stale.
+    VirtualFile manifest = myFixture.findFileInTempDir("AndroidManifest.xml");
+    Document document = FileDocumentManager.getInstance().getDocument(manifest);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.setText(document.getText().replace("@string/app_name", "@string/other_name"));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+      FileDocumentManager.getInstance().saveDocument(document);
+    });
+    assertEquals("@string/other_name", info.getApplicationLabel());
+  }
+
   public void testGetApplicationNoLabelOrIcon() throws Exception {
     MergedManifest info = getMergedManifest("<manifest xmlns:android='http://schemas.android.com/apk/res/android'\n" +
                                             "    package='com.android.unittest'>\n" +
@@ -18,11 +18,17 @@ package com.android.tools.idea.npw.assetstudio;
 
 import com.android.annotations.NonNull;
 import com.android.tools.idea.npw.assetstudio.LauncherIconGenerator.LauncherOptions;
+import com.google.common.util.concurrent.Futures;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import static com.google.common.truth.Truth.assertThat;
+
 @RunWith(JUnit4.class)
 public class LauncherIconGeneratorTest {
 
@@ -52,4 +58,25 @@ public class LauncherIconGeneratorTest {
         checkGraphic("red_simple_circle", GraphicGenerator.Shape.CIRCLE,
                 GraphicGenerator.Style.SIMPLE, true, 0xFF0000, true);
     }
+
+    @Test
+    public void testLauncher_densitiesKeepOrderAndSize() throws Exception {
+        LauncherOptions options = new LauncherOptions();
+        options.shape = GraphicGenerator.Shape.NONE;
+        options.isTrimmed = true;
+        options.paddingPercent = 10;
+        options.sourceImageFuture = Futures.immediateFuture(GraphicGenerator.getClipartImage("android.png"));
+
+        Map<String, Map<String, BufferedImage>> categoryMap = new LinkedHashMap<>();
+        new LauncherIconGenerator().generate(null, categoryMap, new GraphicGeneratorContext(40), options, "ic_launcher");
+
+        assertThat(categoryMap.keySet()).containsExactly("mdpi", "hdpi", "xhdpi", "xxhdpi", "xxxhdpi").inOrder();
+        int[] expectedSizes = {48, 72, 96, 144, 192};
+        int i = 0;
+        for (Map.Entry<String, Map<String, BufferedImage>> entry : categoryMap.entrySet()) {
+            String path = "res/mipmap-" + entry.getKey() + "/ic_launcher.png";
+            assertThat(entry.getValue().keySet()).containsExactly(path);
+            assertThat(entry.getValue().get(path).getWidth()).isEqualTo(expectedSizes[i++]);
+        }
+    }
 }
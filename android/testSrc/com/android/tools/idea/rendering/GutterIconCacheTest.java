@@ -19,14 +19,27 @@ import com.android.tools.idea.io.TestFileUtils;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
 
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
+import static com.android.tools.idea.rendering.GutterIconCache.MAX_HEIGHT;
+import static com.android.tools.idea.rendering.GutterIconCache.MAX_WIDTH;
 import static com.google.common.truth.Truth.assertThat;
 
 public class GutterIconCacheTest extends AndroidTestCase {
@@ -46,7 +59,7 @@ public class GutterIconCacheTest extends AndroidTestCase {
 
   public void testIsIconUpToDate_entryInvalidNotCached() {
     // Use constructor instead of statically-loaded instance to ensure fresh cache
-    GutterIconCache cache = new GutterIconCache();
+    GutterIconCache cache = new GutterIconCache(null, getTestRootDisposable());
 
     // If we've never requested an Icon for the path, there should be no valid cache entry.
     assertThat(cache.isIconUpToDate(mySampleSvgPath.toString())).isFalse();
@@ -95,4 +108,124 @@ public class GutterIconCacheTest extends AndroidTestCase {
     // Modifying the image should have invalidated the cache entry.
     assertThat(GutterIconCache.getInstance().isIconUpToDate(mySampleSvgPath.toString())).isFalse();
   }
+
+  public void testBitmapThumbnailStoredOnDisk() throws Exception {
+    File thumbnailDir = FileUtil.createTempDirectory("gutter_icons", null);
+    File image = new File(myModule.getProject().getBasePath(), "app/src/main/res/drawable/GutterIconCacheTest_image.png");
+    FileUtil.copy(new File(getTestDataPath(), "render/imageutils/actual.png"), image);
+
+    Icon icon = createCache(thumbnailDir).getIcon(image.getPath(), null);
+    assertThat(icon).isNotNull();
+    assertThat(FileUtil.findFilesByMask(Pattern.compile(".*\\.png"), thumbnailDir)).hasSize(1);
+
+    // A new cache, e.g. after a restart, uses the stored thumbnail instead of decoding the image again. Replace the image with
+    // garbage of the same size and timestamp to check that.
+    long lastModified = image.lastModified();
+    FileUtil.writeToFile(image, new byte[(int)image.length()]);
+    assertThat(image.setLastModified(lastModified)).isTrue();
+    Icon storedIcon = createCache(thumbnailDir).getIcon(image.getPath(), null);
+    assertThat(storedIcon).isNotNull();
+    assertThat(storedIcon.getIconWidth()).isEqualTo(icon.getIconWidth());
+
+    // Once the image is modified, the stored thumbnail is not used anymore
+    assertThat(image.setLastModified(lastModified + 2000)).isTrue();
+    assertThat(createCache(thumbnailDir).getIcon(image.getPath(), null)).isNull();
+  }
+
+  public void testSmallBitmapNotStoredOnDisk() throws Exception {
+    File thumbnailDir = FileUtil.createTempDirectory("gutter_icons", null);
+    File image = new File(myModule.getProject().getBasePath(), "app/src/main/res/drawable/GutterIconCacheTest_small.png");
+    FileUtil.createParentDirs(image);
+    assertThat(ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB), "PNG", image)).isTrue();
+
+    assertThat(createCache(thumbnailDir).getIcon(image.getPath(), null)).isNotNull();
+    assertThat(FileUtil.findFilesByMask(Pattern.compile(".*\\.png"), thumbnailDir)).isEmpty();
+  }
+
+  public void testPruneThumbnailStore() throws Exception {
+    File thumbnailDir = FileUtil.createTempDirectory("gutter_icons", null);
+    GutterIconThumbnailStore store = new GutterIconThumbnailStore(thumbnailDir);
+    BufferedImage thumbnail = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+    long now = System.currentTimeMillis();
+    File[] images = new File[3];
+    for (int i = 0; i < images.length; i++) {
+      images[i] = FileUtil.createTempFile("image" + i, ".png");
+      FileUtil.writeToFile(images[i], "image" + i);
+      store.store(images[i], MAX_WIDTH, MAX_HEIGHT, thumbnail);
+    }
+    List<File> stored = FileUtil.findFilesByMask(Pattern.compile(".*\\.png"), thumbnailDir);
+    assertThat(stored).hasSize(3);
+
+    // Loading a thumbnail marks it as used
+    for (File file : stored) {
+      assertThat(file.setLastModified(now - TimeUnit.DAYS.toMillis(10))).isTrue();
+    }
+    assertThat(store.load(images[2], MAX_WIDTH, MAX_HEIGHT)).isNotNull();
+
+    // Thumbnails not used for too long are deleted
+    store.prune(Long.MAX_VALUE, TimeUnit.DAYS.toMillis(5));
+    assertThat(store.load(images[0], MAX_WIDTH, MAX_HEIGHT)).isNull();
+    assertThat(store.load(images[1], MAX_WIDTH, MAX_HEIGHT)).isNull();
+    assertThat(store.load(images[2], MAX_WIDTH, MAX_HEIGHT)).isNotNull();
+    assertThat(thumbnailDir.list()).hasLength(1);
+
+    // The least recently used thumbnails are deleted until the store is small enough
+    store.store(images[0], MAX_WIDTH, MAX_HEIGHT, thumbnail);
+    stored = FileUtil.findFilesByMask(Pattern.compile(".*\\.png"), thumbnailDir);
+    assertThat(stored).hasSize(2);
+    for (File file : stored) {
+      assertThat(file.setLastModified(now - TimeUnit.DAYS.toMillis(1))).isTrue();
+    }
+    assertThat(store.load(images[0], MAX_WIDTH, MAX_HEIGHT)).isNotNull();
+    store.prune(stored.get(0).length(), Long.MAX_VALUE);
+    assertThat(store.load(images[0], MAX_WIDTH, MAX_HEIGHT)).isNotNull();
+    assertThat(store.load(images[2], MAX_WIDTH, MAX_HEIGHT)).isNull();
+  }
+
+  public void testRenderInBackground() {
+    GutterIconCache cache = new GutterIconCache(null, getTestRootDisposable());
+    String path = mySampleSvgPath.toString();
+    List<Runnable> tasks = new ArrayList<>();
+
+    cache.renderInBackground(path, null, tasks::add);
+    // The thumbnail is only rendered once even if it is requested again while being rendered
+    cache.renderInBackground(path, null, tasks::add);
+    assertThat(tasks).hasSize(1);
+    assertThat(cache.isIconUpToDate(path)).isFalse();
+
+    tasks.get(0).run();
+    assertThat(cache.isIconUpToDate(path)).isTrue();
+    assertThat(cache.isRepaintScheduled()).isTrue();
+
+    UIUtil.dispatchAllInvocationEvents();
+    assertThat(cache.isRepaintScheduled()).isFalse();
+  }
+
+  public void testRenderInBackground_invalidatedWhileRendering() {
+    GutterIconCache cache = new GutterIconCache(null, getTestRootDisposable());
+    String path = mySampleSvgPath.toString();
+    List<Runnable> tasks = new ArrayList<>();
+
+    cache.renderInBackground(path, null, tasks::add);
+    cache.invalidate(path);
+    tasks.get(0).run();
+
+    // The thumbnail may have been rendered from the previous version of the image, so it is not cached, but the gutters are still
+    // repainted so that the thumbnail is requested again
+    assertThat(cache.isIconUpToDate(path)).isFalse();
+    assertThat(cache.isRepaintScheduled()).isTrue();
+    UIUtil.dispatchAllInvocationEvents();
+
+    cache.renderInBackground(path, null, tasks::add);
+    tasks.get(1).run();
+    assertThat(cache.isIconUpToDate(path)).isTrue();
+  }
+
+  /**
+   * Creates a cache storing bitmap thumbnails in the given directory, e.g. for a new IDE session.
+   */
+  @NotNull
+  private GutterIconCache createCache(@NotNull File thumbnailDir) {
+    return new GutterIconCache(new GutterIconThumbnailStore(thumbnailDir), getTestRootDisposable());
+  }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.ui.resourcechooser;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResourceChooserThumbnailCacheTest {
+  @Rule
+  public TemporaryFolder myFolder = new TemporaryFolder();
+
+  private final List<Runnable> myTasks = new ArrayList<>();
+  private final ResourceChooserThumbnailCache myCache = new ResourceChooserThumbnailCache(myTasks::add);
+  private Disposable myDisposable;
+
+  @Before
+  public void setUp() {
+    myDisposable = Disposer.newDisposable();
+  }
+
+  @After
+  public void tearDown() {
+    Disposer.dispose(myDisposable);
+  }
+
+  @Test
+  public void thumbnailIsCached() throws Exception {
+    File file = createImage("image.png", 20, 10);
+
+    ListenableFuture<BufferedImage> first = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    assertFalse(first.isDone());
+    runTasks();
+    assertTrue(first.isDone());
+    BufferedImage image = first.get();
+    assertNotNull(image);
+
+    ListenableFuture<BufferedImage> second = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    assertTrue(second.isDone());
+    assertSame(image, second.get());
+    assertTrue(myTasks.isEmpty());
+  }
+
+  @Test
+  public void modifiedImageIsDecodedAgain() throws Exception {
+    File file = createImage("image.png", 20, 10);
+    myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    runTasks();
+
+    // Same size, different time stamp
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+    ListenableFuture<BufferedImage> touched = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    assertFalse(touched.isDone());
+    runTasks();
+    assertEquals(20, touched.get().getWidth());
+
+    // Same time stamp, different size
+    long lastModified = file.lastModified();
+    long length = file.length();
+    createImage("image.png", 40, 30);
+    assertTrue(file.setLastModified(lastModified));
+    assertNotEquals(length, file.length());
+    ListenableFuture<BufferedImage> changed = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    assertFalse(changed.isDone());
+    runTasks();
+    assertEquals(40, changed.get().getWidth());
+    assertEquals(30, changed.get().getHeight());
+  }
+
+  @Test
+  public void largeImageIsScaledToTwiceTheDisplaySize() throws Exception {
+    File file = createImage("large.png", 400, 200);
+    ListenableFuture<BufferedImage> thumbnail = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    runTasks();
+    assertEquals(100, thumbnail.get().getWidth());
+    assertEquals(50, thumbnail.get().getHeight());
+
+    // Images that are small enough are kept as they are
+    file = createImage("small.png", 80, 60);
+    thumbnail = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    runTasks();
+    assertEquals(80, thumbnail.get().getWidth());
+    assertEquals(60, thumbnail.get().getHeight());
+  }
+
+  @Test
+  public void unreadableImageGivesNull() throws Exception {
+    File file = myFolder.newFile("broken.png");
+    ListenableFuture<BufferedImage> thumbnail = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    runTasks();
+    assertTrue(thumbnail.isDone());
+    assertNull(thumbnail.get());
+
+    thumbnail = myCache.getThumbnail(new File(myFolder.getRoot(), "missing.png").getPath(), 50, myDisposable);
+    runTasks();
+    assertNull(thumbnail.get());
+  }
+
+  @Test
+  public void mostRecentRequestIsDecodedFirst() throws Exception {
+    File first = createImage("first.png", 20, 10);
+    File second = createImage("second.png", 20, 10);
+    ListenableFuture<BufferedImage> firstThumbnail = myCache.getThumbnail(first.getPath(), 50, myDisposable);
+    ListenableFuture<BufferedImage> secondThumbnail = myCache.getThumbnail(second.getPath(), 50, myDisposable);
+
+    myTasks.remove(0).run();
+    assertFalse(firstThumbnail.isDone());
+    assertTrue(secondThumbnail.isDone());
+    runTasks();
+    assertTrue(firstThumbnail.isDone());
+  }
+
+  @Test
+  public void pendingRequestsAreCancelledOnDispose() throws Exception {
+    File file = createImage("image.png", 20, 10);
+    Disposable dialog = Disposer.newDisposable();
+    Disposer.register(myDisposable, dialog);
+    ListenableFuture<BufferedImage> thumbnail = myCache.getThumbnail(file.getPath(), 50, dialog);
+
+    Disposer.dispose(dialog);
+    assertTrue(thumbnail.isCancelled());
+
+    // The cancelled request isn't decoded, so asking again after the dialog is closed starts a new one
+    runTasks();
+    ListenableFuture<BufferedImage> again = myCache.getThumbnail(file.getPath(), 50, myDisposable);
+    assertFalse(again.isDone());
+    runTasks();
+    assertNotNull(again.get());
+  }
+
+  @Test
+  public void completedRequestsAreNotCancelledOnDispose() throws Exception {
+    File file = createImage("image.png", 20, 10);
+    Disposable dialog = Disposer.newDisposable();
+    Disposer.register(myDisposable, dialog);
+    ListenableFuture<BufferedImage> thumbnail = myCache.getThumbnail(file.getPath(), 50, dialog);
+    runTasks();
+
+    Disposer.dispose(dialog);
+    assertFalse(thumbnail.isCancelled());
+    assertNotNull(thumbnail.get());
+  }
+
+  private void runTasks() {
+    while (!myTasks.isEmpty()) {
+      myTasks.remove(0).run();
+    }
+  }
+
+  private File createImage(String name, int width, int height) throws IOException {
+    File file = new File(myFolder.getRoot(), name);
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    image.setRGB(0, 0, 0xFFFF0000);
+    assertTrue(ImageIO.write(image, "png", file));
+    return file;
+  }
+}
@@ -17,10 +17,16 @@ package org.jetbrains.android.dom.attrs;
 
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.android.sdk.AndroidPlatform;
 import org.jetbrains.android.resourceManagers.LocalResourceManager;
 import org.jetbrains.android.resourceManagers.ModuleResourceManagers;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
 
@@ -80,6 +86,32 @@ public class AttributeDefinitionsImplTest extends AndroidTestCase {
     assertTrue(systemAttr("bufferType").getParentStyleables().contains("TextView"));
   }
 
+  public void testWriteAndRead() throws Exception {
+    AndroidPlatform platform = AndroidPlatform.getInstance(myModule);
+    assertNotNull(platform);
+    AttributeDefinitionsImpl defs = platform.getSdkData().getTargetData(platform.getTarget()).getAllAttrDefs(getProject());
+    assertNotNull(defs);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    defs.write(new DataOutputStream(bytes));
+    AttributeDefinitionsImpl readDefs = AttributeDefinitionsImpl.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(defs.getAttributeNames(), readDefs.getAttributeNames());
+    assertEquals(defs.getEnumMap(), readDefs.getEnumMap());
+
+    AttributeDefinition orientation = attr(readDefs, "orientation");
+    assertEquals(attr(defs, "orientation").getFormats(), orientation.getFormats());
+    assertEquals(Arrays.asList(attr(defs, "orientation").getValues()), Arrays.asList(orientation.getValues()));
+    assertEquals(attr(defs, "orientation").getDocValue(null), orientation.getDocValue(null));
+    assertEquals(Integer.valueOf(1), orientation.getValueMapping("vertical"));
+    assertEquals(attr(defs, "textColor").getAttrGroup(), attr(readDefs, "textColor").getAttrGroup());
+
+    StyleableDefinitionImpl textView = readDefs.getStyleableByName("TextView");
+    assertNotNull(textView);
+    assertEquals(defs.getStyleableByName("TextView").getAttributes().size(), textView.getAttributes().size());
+    assertTrue(textView.getAttributes().contains(attr(readDefs, "bufferType")));
+    assertEquals(defs.getStyleableByName("TextView").getParents().size(), textView.getParents().size());
+  }
+
   @NotNull
   private AttributeDefinition localAttr(@NotNull String attrName) {
     return attr(myDefs, attrName);
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.idea.lint.AndroidLintHardcodedTextInspection;
+import com.android.tools.lint.checks.HardcodedValuesDetector;
+import com.android.tools.lint.detector.api.Issue;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.android.AndroidTestCase;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class AndroidLintExternalAnnotatorTest extends AndroidTestCase {
+  private static final String LAYOUT = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                       "    android:layout_width=\"match_parent\"\n" +
+                                       "    android:layout_height=\"match_parent\">\n" +
+                                       "  <Button\n" +
+                                       "      android:layout_width=\"wrap_content\"\n" +
+                                       "      android:layout_height=\"wrap_content\"\n" +
+                                       "      android:text=\"Hello\"/>\n" +
+                                       "</LinearLayout>\n";
+
+  private final AndroidLintExternalAnnotator myAnnotator = new AndroidLintExternalAnnotator();
+  private PsiFile myFile;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    AndroidLintInspectionBase.invalidateInspectionShortName2IssueMap();
+    myFixture.allowTreeAccessForAllFiles();
+    myFixture.enableInspections(new AndroidLintHardcodedTextInspection());
+    myFile = myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+  }
+
+  public void testUnchangedFileReusesProblems() {
+    List<ProblemData> problems = annotate(myAnnotator.collectInformation(myFile));
+    assertEquals(1, problems.size());
+
+    // A new highlighting pass of the same content, with the same issues, only copies the problems found before
+    List<ProblemData> again = annotate(myAnnotator.collectInformation(myFile));
+    assertEquals(1, again.size());
+    assertSame(problems.get(0), again.get(0));
+  }
+
+  public void testEditInvalidatesProblems() {
+    List<ProblemData> problems = annotate(myAnnotator.collectInformation(myFile));
+    assertEquals(1, problems.size());
+
+    Document document = PsiDocumentManager.getInstance(getProject()).getDocument(myFile);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      int offset = document.getText().indexOf("Hello");
+      document.replaceString(offset, offset + "Hello".length(), "Goodbye");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+
+    List<ProblemData> edited = annotate(myAnnotator.collectInformation(myFile));
+    assertEquals(1, edited.size());
+    assertNotSame(problems.get(0), edited.get(0));
+    assertTrue(edited.get(0).getMessage(), edited.get(0).getMessage().contains("Goodbye"));
+  }
+
+  public void testChangedIssuesInvalidateProblems() {
+    State state = myAnnotator.collectInformation(myFile);
+    assertNotNull(state);
+    assertEquals(1, annotate(state).size());
+
+    // Same content and modification count, but the hardcoded text inspection was turned off
+    Set<Issue> issues = new HashSet<>(state.getIssues());
+    assertTrue(issues.remove(HardcodedValuesDetector.ISSUE));
+    State withoutIssue = new State(state.getModule(), state.getMainFile(), state.getMainFileContent(), issues,
+                                   state.getModificationCount());
+    assertEmpty(annotate(withoutIssue));
+
+    // Turning it back on analyzes the file again rather than reusing the empty result
+    State withIssue = new State(state.getModule(), state.getMainFile(), state.getMainFileContent(), state.getIssues(),
+                                state.getModificationCount());
+    assertEquals(1, annotate(withIssue).size());
+  }
+
+  /** Runs the annotator and returns the hardcoded text problems it reports; other issues may be enabled in the test profile */
+  private List<ProblemData> annotate(State state) {
+    assertNotNull(state);
+    return myAnnotator.doAnnotate(state).getProblems().stream()
+      .filter(problem -> problem.getIssue() == HardcodedValuesDetector.ISSUE)
+      .collect(Collectors.toList());
+  }
+}
@@ -122,6 +122,27 @@ public class AndroidApkBuilder {
                                                                       @NotNull IAndroidTarget target,
                                                                       @Nullable String customKeystorePath,
                                                                       @NotNull Condition<File> resourceFilter) throws IOException {
+    return execute(resPackagePath, dexPath, resourceRoots, externalJars, nativeLibsFolders, additionalNativeLibs, finalApk, unsigned,
+                   sdkPath, target, customKeystorePath, resourceFilter, null);
+  }
+
+  /**
+   * @param incrementalStateFile if not null, the APK is packaged by {@link IncrementalApkPackager} which keeps its state in this file
+   *                             and reuses the compressed entries and signature digests of the previous build
+   */
+  public static Map<AndroidCompilerMessageKind, List<String>> execute(@NotNull String resPackagePath,
+                                                                      @NotNull String dexPath,
+                                                                      @NotNull String[] resourceRoots,
+                                                                      @NotNull String[] externalJars,
+                                                                      @NotNull String[] nativeLibsFolders,
+                                                                      @NotNull Collection<AndroidNativeLibData> additionalNativeLibs,
+                                                                      @NotNull String finalApk,
+                                                                      boolean unsigned,
+                                                                      @NotNull String sdkPath,
+                                                                      @NotNull IAndroidTarget target,
+                                                                      @Nullable String customKeystorePath,
+                                                                      @NotNull Condition<File> resourceFilter,
+                                                                      @Nullable File incrementalStateFile) throws IOException {
     final AndroidBuildTestingManager testingManager = AndroidBuildTestingManager.getTestingManager();
 
     if (testingManager != null) {
@@ -161,7 +182,7 @@ public class AndroidApkBuilder {
       if (unsigned) {
         return filterUsingKeystoreMessages(
           finalPackage(dexPath, resourceRoots, externalJars, nativeLibsFolders, finalApk, resPackagePath, customKeystorePath, false,
-                       resourceFilter));
+                       resourceFilter, incrementalStateFile));
       }
       final String zipAlignPath = AndroidCommonUtils.getZipAlign(sdkPath, target);
       boolean withAlignment = new File(zipAlignPath).exists();
@@ -169,7 +190,7 @@ public class AndroidApkBuilder {
 
       Map<AndroidCompilerMessageKind, List<String>> map2 = filterUsingKeystoreMessages(
         finalPackage(dexPath, resourceRoots, externalJars, nativeLibsFolders, withAlignment ? unalignedApk : finalApk, resPackagePath,
-                     customKeystorePath, true, resourceFilter));
+                     customKeystorePath, true, resourceFilter, incrementalStateFile));
       map.putAll(map2);
 
       if (withAlignment && map.get(ERROR).isEmpty()) {
@@ -220,7 +241,8 @@ public class AndroidApkBuilder {
                                                                             @NotNull String apkPath,
                                                                             @Nullable String customKeystorePath,
                                                                             boolean signed,
-                                                                            @NotNull Condition<File> resourceFilter) {
+                                                                            @NotNull Condition<File> resourceFilter,
+                                                                            @Nullable File incrementalStateFile) {
     final Map<AndroidCompilerMessageKind, List<String>> result = new HashMap<AndroidCompilerMessageKind, List<String>>();
     result.put(ERROR, new ArrayList<String>());
     result.put(INFORMATION, new ArrayList<String>());
@@ -283,60 +305,15 @@ public class AndroidApkBuilder {
         return result;
       }
 
+      if (incrementalStateFile != null &&
+          packageIncrementally(dexEntryFile, javaResourceRoots, externalJars, nativeLibsFolders, outputApk, apkPath, signed ? key : null,
+                               certificate, signed, resourceFilter, incrementalStateFile, result)) {
+        return result;
+      }
       fos = new FileOutputStream(outputApk);
       builder = new SafeSignedJarBuilder(fos, key, certificate, outputApk);
-
-      FileInputStream fis = new FileInputStream(apkPath);
-      try {
-        builder.writeZip(fis, null);
-      }
-      finally {
-        fis.close();
-      }
-
-      builder.writeFile(dexEntryFile, AndroidCommonUtils.CLASSES_FILE_NAME);
-
-      final HashSet<String> added = new HashSet<String>();
-      for (String resourceRootPath : javaResourceRoots) {
-        final HashSet<File> javaResources = new HashSet<File>();
-        final File resourceRoot = new File(resourceRootPath);
-        collectStandardJavaResources(resourceRoot, javaResources, resourceFilter);
-        writeStandardJavaResources(javaResources, resourceRoot, builder, added);
-      }
-
-      Set<String> duplicates = new HashSet<String>();
-      Set<String> entries = new HashSet<String>();
-      for (String externalJar : externalJars) {
-        collectDuplicateEntries(externalJar, entries, duplicates);
-      }
-
-      for (String duplicate : duplicates) {
-        result.get(WARNING).add("Duplicate entry " + duplicate + ". The file won't be added");
-      }
-
-      MyResourceFilter filter = new MyResourceFilter(duplicates);
-
-      for (String externalJar : externalJars) {
-        fis = new FileInputStream(externalJar);
-        try {
-          builder.writeZip(fis, filter);
-        }
-        finally {
-          fis.close();
-        }
-      }
-
-      final HashSet<String> nativeLibs = new HashSet<String>();
-      for (String nativeLibsFolderPath : nativeLibsFolders) {
-        final File nativeLibsFolder = new File(nativeLibsFolderPath);
-        final File[] children = nativeLibsFolder.listFiles();
-
-        if (children != null) {
-          for (File child : children) {
-            writeNativeLibraries(builder, nativeLibsFolder, child, signed, nativeLibs);
-          }
-        }
-      }
+      writeApkContent(new SignedJarApkWriter(builder), dexEntryFile, javaResourceRoots, externalJars, nativeLibsFolders, apkPath, signed,
+                      resourceFilter, result);
     }
     catch (IOException e) {
       return addExceptionMessage(e, result);
@@ -386,6 +363,96 @@ public class AndroidApkBuilder {
     return result;
   }
 
+  /**
+   * Packages the APK with {@link IncrementalApkPackager}. Returns false if the inputs cannot be packaged incrementally (e.g. a zip64
+   * archive), in which case the state is dropped and the caller should fall back to the full packaging.
+   */
+  private static boolean packageIncrementally(@NotNull File dexEntryFile,
+                                              @NotNull String[] javaResourceRoots,
+                                              @NotNull String[] externalJars,
+                                              @NotNull String[] nativeLibsFolders,
+                                              @NotNull String outputApk,
+                                              @NotNull String apkPath,
+                                              @Nullable PrivateKey key,
+                                              @Nullable X509Certificate certificate,
+                                              boolean signed,
+                                              @NotNull Condition<File> resourceFilter,
+                                              @NotNull File incrementalStateFile,
+                                              @NotNull Map<AndroidCompilerMessageKind, List<String>> result)
+    throws GeneralSecurityException {
+    final long start = System.currentTimeMillis();
+    IncrementalApkPackager packager = null;
+    try {
+      packager = new IncrementalApkPackager(new File(outputApk), incrementalStateFile, key, certificate);
+      writeApkContent(new IncrementalApkWriter(packager), dexEntryFile, javaResourceRoots, externalJars, nativeLibsFolders, apkPath,
+                      signed, resourceFilter, result);
+      packager.finish();
+      LOG.info("APK " + outputApk + " packaged incrementally in " + (System.currentTimeMillis() - start) + " ms: " +
+               packager.getCopiedEntryCount() + " entries copied, " + packager.getCompressedEntryCount() + " entries compressed");
+      return true;
+    }
+    catch (IOException e) {
+      LOG.info("Cannot package " + outputApk + " incrementally, falling back to full packaging", e);
+      FileUtil.delete(incrementalStateFile);
+      result.get(WARNING).clear();
+      return false;
+    }
+    finally {
+      if (packager != null) {
+        packager.close();
+      }
+    }
+  }
+
+  private static void writeApkContent(@NotNull ApkWriter writer,
+                                      @NotNull File dexEntryFile,
+                                      @NotNull String[] javaResourceRoots,
+                                      @NotNull String[] externalJars,
+                                      @NotNull String[] nativeLibsFolders,
+                                      @NotNull String apkPath,
+                                      boolean signed,
+                                      @NotNull Condition<File> resourceFilter,
+                                      @NotNull Map<AndroidCompilerMessageKind, List<String>> result) throws IOException {
+    writer.writeZip(new File(apkPath), null);
+    writer.writeFile(dexEntryFile, AndroidCommonUtils.CLASSES_FILE_NAME);
+
+    final HashSet<String> added = new HashSet<String>();
+    for (String resourceRootPath : javaResourceRoots) {
+      final HashSet<File> javaResources = new HashSet<File>();
+      final File resourceRoot = new File(resourceRootPath);
+      collectStandardJavaResources(resourceRoot, javaResources, resourceFilter);
+      writeStandardJavaResources(javaResources, resourceRoot, writer, added);
+    }
+
+    Set<String> duplicates = new HashSet<String>();
+    Set<String> entries = new HashSet<String>();
+    for (String externalJar : externalJars) {
+      collectDuplicateEntries(externalJar, entries, duplicates);
+    }
+
+    for (String duplicate : duplicates) {
+      result.get(WARNING).add("Duplicate entry " + duplicate + ". The file won't be added");
+    }
+
+    MyResourceFilter filter = new MyResourceFilter(duplicates);
+
+    for (String externalJar : externalJars) {
+      writer.writeZip(new File(externalJar), filter);
+    }
+
+    final HashSet<String> nativeLibs = new HashSet<String>();
+    for (String nativeLibsFolderPath : nativeLibsFolders) {
+      final File nativeLibsFolder = new File(nativeLibsFolderPath);
+      final File[] children = nativeLibsFolder.listFiles();
+
+      if (children != null) {
+        for (File child : children) {
+          writeNativeLibraries(writer, nativeLibsFolder, child, signed, nativeLibs);
+        }
+      }
+    }
+  }
+
   private static DebugKeyProvider createDebugKeyProvider(final Map<AndroidCompilerMessageKind, List<String>> result, String path) throws
                                                                                                                                KeyStoreException,
                                                                                                                                NoSuchAlgorithmException,
@@ -408,7 +475,7 @@ public class AndroidApkBuilder {
     });
   }
 
-  private static void writeNativeLibraries(SignedJarBuilder builder,
+  private static void writeNativeLibraries(ApkWriter builder,
                                            File nativeLibsFolder,
                                            File child,
                                            boolean debugBuild,
@@ -482,7 +549,7 @@ public class AndroidApkBuilder {
 
   private static void writeStandardJavaResources(Collection<File> resources,
                                                  File sourceRoot,
-                                                 SignedJarBuilder jarBuilder,
+                                                 ApkWriter jarBuilder,
                                                  Set<String> added) throws IOException {
     for (File child : resources) {
       final String relativePath = FileUtil.getRelativePath(sourceRoot, child);
@@ -521,4 +588,52 @@ public class AndroidApkBuilder {
       return super.checkEntry(name);
     }
   }
+
+  private interface ApkWriter {
+    void writeFile(@NotNull File file, @NotNull String jarPath) throws IOException;
+
+    void writeZip(@NotNull File zipFile, @Nullable SignedJarBuilder.IZipEntryFilter filter) throws IOException;
+  }
+
+  private static class SignedJarApkWriter implements ApkWriter {
+    private final SignedJarBuilder myBuilder;
+
+    public SignedJarApkWriter(@NotNull SignedJarBuilder builder) {
+      myBuilder = builder;
+    }
+
+    @Override
+    public void writeFile(@NotNull File file, @NotNull String jarPath) throws IOException {
+      myBuilder.writeFile(file, jarPath);
+    }
+
+    @Override
+    public void writeZip(@NotNull File zipFile, @Nullable SignedJarBuilder.IZipEntryFilter filter) throws IOException {
+      FileInputStream fis = new FileInputStream(zipFile);
+      try {
+        myBuilder.writeZip(fis, filter);
+      }
+      finally {
+        fis.close();
+      }
+    }
+  }
+
+  private static class IncrementalApkWriter implements ApkWriter {
+    private final IncrementalApkPackager myPackager;
+
+    public IncrementalApkWriter(@NotNull IncrementalApkPackager packager) {
+      myPackager = packager;
+    }
+
+    @Override
+    public void writeFile(@NotNull File file, @NotNull String jarPath) throws IOException {
+      myPackager.writeFile(file, jarPath);
+    }
+
+    @Override
+    public void writeZip(@NotNull File zipFile, @Nullable SignedJarBuilder.IZipEntryFilter filter) throws IOException {
+      myPackager.writeZip(zipFile, filter);
+    }
+  }
 }
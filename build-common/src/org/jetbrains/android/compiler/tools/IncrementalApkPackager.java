@@ -0,0 +1,850 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.compiler.tools;
+
+import com.android.jarutils.SignedJarBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Writes an APK reusing as much of the previously built APK as possible.
+ * <p>
+ * For every entry the packager remembers (in a state file next to the build data) a fingerprint of the entry source,
+ * the location of its compressed data in the previous APK and its signature digest. On the next build:
+ * <ul>
+ *   <li>entries of loose files whose fingerprint didn't change are copied from the previous APK as raw compressed bytes;</li>
+ *   <li>entries of zip inputs (resource package, external jars) are always copied raw from the input zip, never recompressed;</li>
+ *   <li>only changed loose files are deflated again;</li>
+ *   <li>the v1 (jar) signature is recomputed from the cached per-entry digests, so only changed entries are hashed.</li>
+ * </ul>
+ * The APK is written into a temporary file and replaces the previous one when {@link #finish()} succeeds. If the state
+ * doesn't match the previous APK (e.g. it has been modified outside of the build) everything is rewritten from scratch.
+ */
+public class IncrementalApkPackager implements Closeable {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.android.compiler.tools.IncrementalApkPackager");
+
+  @NonNls private static final String META_INF = "META-INF/";
+  @NonNls private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+  @NonNls private static final String SIGNATURE_FILE_NAME = "META-INF/CERT.SF";
+  @NonNls private static final String DIGEST_ALGORITHM = "SHA1";
+  @NonNls private static final String DIGEST_ATTR = "SHA1-Digest";
+  @NonNls private static final String DIGEST_MANIFEST_ATTR = "SHA1-Digest-Manifest";
+  @NonNls private static final String CREATED_BY = "1.0 (Android)";
+  @NonNls private static final String FILE_FINGERPRINT_PREFIX = "file:";
+  @NonNls private static final String ZIP_FINGERPRINT_PREFIX = "zip:";
+  @NonNls private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final int STATE_VERSION = 1;
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int MAX_ZIP_COMMENT_SIZE = 0xFFFF;
+  private static final int ZIP_VERSION = 20;
+  private static final int UTF8_FLAG = 0x800;
+  private static final int MAX_MANIFEST_LINE_LENGTH = 72;
+
+  private final File myOutputApk;
+  private final File myTempApk;
+  private final File myStateFile;
+  @Nullable private final PrivateKey myKey;
+  @Nullable private final X509Certificate myCertificate;
+
+  private final Map<String, EntryRecord> myPreviousEntries;
+  @Nullable private final FileChannel myPreviousApk;
+
+  private final RandomAccessFile myOutput;
+  private final FileChannel myOutputChannel;
+  private final Map<String, EntryRecord> myEntries = new LinkedHashMap<>();
+  private final MessageDigest myMessageDigest;
+  private final Deflater myDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final byte[] myBuffer = new byte[64 * 1024];
+
+  private int myCopiedEntryCount;
+  private int myCompressedEntryCount;
+  private boolean myReleased;
+  private boolean myFinished;
+
+  /**
+   * @param outputApk the APK to produce; if it was produced by a previous run with the same {@code stateFile}, it is reused
+   * @param stateFile the file keeping entry fingerprints, offsets and digests between runs
+   * @param key       the signing key or {@code null} to produce an unsigned APK
+   */
+  public IncrementalApkPackager(@NotNull File outputApk,
+                                @NotNull File stateFile,
+                                @Nullable PrivateKey key,
+                                @Nullable X509Certificate certificate) throws IOException, NoSuchAlgorithmException {
+    myOutputApk = outputApk;
+    myTempApk = new File(outputApk.getPath() + TEMP_SUFFIX);
+    myStateFile = stateFile;
+    myKey = key;
+    myCertificate = certificate;
+    myMessageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+
+    myPreviousEntries = readState(stateFile, outputApk);
+    myPreviousApk = myPreviousEntries.isEmpty() ? null : new RandomAccessFile(outputApk, "r").getChannel();
+
+    boolean success = false;
+    try {
+      myOutput = new RandomAccessFile(myTempApk, "rw");
+      myOutput.setLength(0);
+      myOutputChannel = myOutput.getChannel();
+      success = true;
+    }
+    finally {
+      if (!success && myPreviousApk != null) {
+        myPreviousApk.close();
+      }
+    }
+  }
+
+  /**
+   * Adds a loose file as a deflated entry. If the file didn't change since the previous build, the compressed data is
+   * copied from the previous APK.
+   */
+  public void writeFile(@NotNull File inputFile, @NotNull String jarPath) throws IOException {
+    if (FileUtil.pathsEqual(inputFile.getPath(), myOutputApk.getPath())) {
+      throw new IOException("Cannot pack file " + myOutputApk.getPath() + " into itself");
+    }
+    checkDuplicate(jarPath);
+    final String fingerprint = FILE_FINGERPRINT_PREFIX + inputFile.length() + ":" + inputFile.lastModified();
+    final EntryRecord previous = myPreviousEntries.get(jarPath);
+
+    if (previous != null && myPreviousApk != null && fingerprint.equals(previous.myFingerprint)) {
+      final EntryRecord record = previous.copy();
+      if (myKey != null && record.myDigest == null) {
+        // the previous APK was unsigned
+        record.myDigest = computeDigest(inputFile);
+      }
+      copyRawEntry(record, myPreviousApk, previous.myDataOffset);
+      myCopiedEntryCount++;
+      return;
+    }
+    final EntryRecord record = new EntryRecord(jarPath, fingerprint);
+    record.myMethod = ZipEntry.DEFLATED;
+    record.myDosTime = javaToDosTime(inputFile.lastModified());
+    writeDeflatedEntry(record, new FileInputStream(inputFile));
+    myCompressedEntryCount++;
+  }
+
+  /**
+   * Adds the entries of a zip file, skipping directories and {@code META-INF} like {@link SignedJarBuilder#writeZip} does.
+   * The compressed data is always copied as is; it is only inflated to compute the signature digest of a changed entry.
+   */
+  public void writeZip(@NotNull File zipFile, @Nullable SignedJarBuilder.IZipEntryFilter filter) throws IOException {
+    final FileChannel channel = new RandomAccessFile(zipFile, "r").getChannel();
+    try {
+      for (ZipEntryInfo info : readCentralDirectory(channel, zipFile)) {
+        final String name = info.myName;
+
+        if (name.endsWith("/") || name.startsWith(META_INF) || (filter != null && !filter.checkEntry(name))) {
+          continue;
+        }
+        if (info.myMethod != ZipEntry.STORED && info.myMethod != ZipEntry.DEFLATED) {
+          throw new IOException("Unsupported compression method " + info.myMethod + " of entry " + name + " in " + zipFile.getPath());
+        }
+        checkDuplicate(name);
+        final String fingerprint = ZIP_FINGERPRINT_PREFIX + info.myMethod + ":" + info.myCrc + ":" + info.myCompressedSize + ":" + info.mySize;
+        final EntryRecord previous = myPreviousEntries.get(name);
+
+        final EntryRecord record = new EntryRecord(name, fingerprint);
+        record.myMethod = info.myMethod;
+        record.myCrc = info.myCrc;
+        record.myCompressedSize = info.myCompressedSize;
+        record.mySize = info.mySize;
+        record.myDosTime = info.myDosTime;
+
+        final long dataOffset = getDataOffset(channel, info.myLocalHeaderOffset, zipFile);
+
+        if (previous != null && fingerprint.equals(previous.myFingerprint)) {
+          record.myDigest = previous.myDigest;
+        }
+        if (myKey != null && record.myDigest == null) {
+          record.myDigest = computeDigest(channel, dataOffset, info);
+        }
+        copyRawEntry(record, channel, dataOffset);
+        myCopiedEntryCount++;
+      }
+    }
+    finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Returns the number of entries whose compressed data was copied without recompression.
+   */
+  public int getCopiedEntryCount() {
+    return myCopiedEntryCount;
+  }
+
+  /**
+   * Returns the number of entries that had to be compressed.
+   */
+  public int getCompressedEntryCount() {
+    return myCompressedEntryCount;
+  }
+
+  /**
+   * Writes the signature (if a key has been provided) and the central directory, replaces the output APK and saves the
+   * state for the next run. If the output cannot be replaced, the state is discarded so the next run packages everything
+   * from scratch.
+   */
+  public void finish() throws IOException, GeneralSecurityException {
+    if (myKey != null && myCertificate != null) {
+      writeSignature(myKey, myCertificate);
+    }
+    writeCentralDirectory();
+    myOutputChannel.force(false);
+    releaseFiles();
+
+    if (!replaceOutput()) {
+      FileUtil.delete(myStateFile);
+      throw new IOException("Cannot replace " + myOutputApk.getPath());
+    }
+    myFinished = true;
+    saveState();
+  }
+
+  /**
+   * Releases the files. If {@link #finish()} hasn't been called, the partially written APK is discarded and the previous
+   * output is left untouched.
+   */
+  @Override
+  public void close() {
+    if (!myFinished) {
+      releaseFiles();
+      FileUtil.delete(myTempApk);
+    }
+  }
+
+  private void releaseFiles() {
+    if (myReleased) {
+      return;
+    }
+    myReleased = true;
+    closeQuietly(myOutput);
+    if (myPreviousApk != null) {
+      closeQuietly(myPreviousApk);
+    }
+    myDeflater.end();
+  }
+
+  private boolean replaceOutput() {
+    if (myOutputApk.exists() && !FileUtil.delete(myOutputApk)) {
+      LOG.info("Cannot delete " + myOutputApk.getPath());
+      return false;
+    }
+    if (!myTempApk.renameTo(myOutputApk)) {
+      LOG.info("Cannot rename " + myTempApk.getPath() + " to " + myOutputApk.getPath());
+      return false;
+    }
+    return true;
+  }
+
+  private void checkDuplicate(@NotNull String name) throws ZipException {
+    if (myEntries.containsKey(name)) {
+      throw new ZipException("duplicate entry: " + name);
+    }
+  }
+
+  private void copyRawEntry(@NotNull EntryRecord record, @NotNull FileChannel source, long dataOffset) throws IOException {
+    writeLocalHeader(record);
+    long position = dataOffset;
+    long remaining = record.myCompressedSize;
+
+    while (remaining > 0) {
+      final long transferred = source.transferTo(position, remaining, myOutputChannel);
+      if (transferred <= 0) {
+        throw new EOFException("Unexpected end of " + record.myName + " data");
+      }
+      position += transferred;
+      remaining -= transferred;
+    }
+    myOutputChannel.position(record.myDataOffset + record.myCompressedSize);
+    myEntries.put(record.myName, record);
+  }
+
+  private void writeDeflatedEntry(@NotNull EntryRecord record, @NotNull InputStream input) throws IOException {
+    // sizes and CRC are unknown until the data is compressed, so the local header is patched afterwards
+    final long headerOffset = myOutputChannel.position();
+    writeLocalHeader(record);
+
+    final CRC32 crc = new CRC32();
+    final byte[] compressed = new byte[myBuffer.length];
+    final MessageDigest digest = myKey != null ? myMessageDigest : null;
+    long size = 0;
+    long compressedSize = 0;
+    myDeflater.reset();
+
+    try {
+      int count;
+      while ((count = input.read(myBuffer)) > 0) {
+        crc.update(myBuffer, 0, count);
+        if (digest != null) {
+          digest.update(myBuffer, 0, count);
+        }
+        size += count;
+        myDeflater.setInput(myBuffer, 0, count);
+
+        while (!myDeflater.needsInput()) {
+          compressedSize += writeFully(compressed, myDeflater.deflate(compressed));
+        }
+      }
+      myDeflater.finish();
+
+      while (!myDeflater.finished()) {
+        compressedSize += writeFully(compressed, myDeflater.deflate(compressed));
+      }
+    }
+    finally {
+      input.close();
+    }
+    record.myCrc = crc.getValue();
+    record.mySize = size;
+    record.myCompressedSize = compressedSize;
+
+    if (digest != null) {
+      record.myDigest = Base64.getEncoder().encodeToString(digest.digest());
+    }
+    final long end = myOutputChannel.position();
+    final ByteBuffer sizes = newBuffer(12);
+    sizes.putInt((int)record.myCrc).putInt((int)compressedSize).putInt((int)size).flip();
+    myOutputChannel.write(sizes, headerOffset + 14);
+    myOutputChannel.position(end);
+    myEntries.put(record.myName, record);
+  }
+
+  private void writeBytesEntry(@NotNull String name, @NotNull byte[] data) throws IOException {
+    checkDuplicate(name);
+    final EntryRecord record = new EntryRecord(name, "");
+    record.myMethod = ZipEntry.DEFLATED;
+    record.myDosTime = javaToDosTime(System.currentTimeMillis());
+    writeDeflatedEntry(record, new ByteArrayInputStream(data));
+  }
+
+  private int writeFully(@NotNull byte[] data, int length) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+    while (buffer.hasRemaining()) {
+      myOutputChannel.write(buffer);
+    }
+    return length;
+  }
+
+  private void writeLocalHeader(@NotNull EntryRecord record) throws IOException {
+    checkZip32(record.myCompressedSize);
+    checkZip32(record.mySize);
+    final long offset = myOutputChannel.position();
+    checkZip32(offset);
+
+    final byte[] name = record.myName.getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer buffer = newBuffer(LOCAL_HEADER_SIZE + name.length);
+    buffer.putInt(LOCAL_HEADER_SIGNATURE)
+      .putShort((short)ZIP_VERSION)
+      .putShort((short)UTF8_FLAG)
+      .putShort((short)record.myMethod)
+      .putInt((int)record.myDosTime)
+      .putInt((int)record.myCrc)
+      .putInt((int)record.myCompressedSize)
+      .putInt((int)record.mySize)
+      .putShort((short)name.length)
+      .putShort((short)0)
+      .put(name)
+      .flip();
+    writeFully(buffer);
+    record.myHeaderOffset = offset;
+    record.myDataOffset = offset + LOCAL_HEADER_SIZE + name.length;
+  }
+
+  private void writeCentralDirectory() throws IOException {
+    if (myEntries.size() > 0xFFFF) {
+      throw new IOException("Too many entries for a zip32 archive: " + myEntries.size());
+    }
+    final long centralDirectoryOffset = myOutputChannel.position();
+    checkZip32(centralDirectoryOffset);
+
+    for (EntryRecord record : myEntries.values()) {
+      final byte[] name = record.myName.getBytes(StandardCharsets.UTF_8);
+      final ByteBuffer buffer = newBuffer(CENTRAL_HEADER_SIZE + name.length);
+      buffer.putInt(CENTRAL_HEADER_SIGNATURE)
+        .putShort((short)ZIP_VERSION)
+        .putShort((short)ZIP_VERSION)
+        .putShort((short)UTF8_FLAG)
+        .putShort((short)record.myMethod)
+        .putInt((int)record.myDosTime)
+        .putInt((int)record.myCrc)
+        .putInt((int)record.myCompressedSize)
+        .putInt((int)record.mySize)
+        .putShort((short)name.length)
+        .putShort((short)0)
+        .putShort((short)0)
+        .putShort((short)0)
+        .putShort((short)0)
+        .putInt(0)
+        .putInt((int)record.myHeaderOffset)
+        .put(name)
+        .flip();
+      writeFully(buffer);
+    }
+    final long centralDirectorySize = myOutputChannel.position() - centralDirectoryOffset;
+    final ByteBuffer buffer = newBuffer(END_OF_CENTRAL_DIRECTORY_SIZE);
+    buffer.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+      .putShort((short)0)
+      .putShort((short)0)
+      .putShort((short)myEntries.size())
+      .putShort((short)myEntries.size())
+      .putInt((int)centralDirectorySize)
+      .putInt((int)centralDirectoryOffset)
+      .putShort((short)0)
+      .flip();
+    writeFully(buffer);
+  }
+
+  private void writeFully(@NotNull ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      myOutputChannel.write(buffer);
+    }
+  }
+
+  private void writeSignature(@NotNull PrivateKey key, @NotNull X509Certificate certificate) throws IOException, GeneralSecurityException {
+    final Base64.Encoder encoder = Base64.getEncoder();
+    final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+    final ByteArrayOutputStream signatureFile = new ByteArrayOutputStream();
+
+    writeManifestSection(manifest, "Manifest-Version", "1.0", "Created-By", CREATED_BY);
+    final List<byte[]> sections = new ArrayList<>();
+    final List<String> names = new ArrayList<>();
+
+    for (EntryRecord record : myEntries.values()) {
+      if (record.myDigest == null) {
+        throw new IOException("Signature digest is not computed for " + record.myName);
+      }
+      final ByteArrayOutputStream section = new ByteArrayOutputStream();
+      writeManifestSection(section, "Name", record.myName, DIGEST_ATTR, record.myDigest);
+      sections.add(section.toByteArray());
+      names.add(record.myName);
+      section.writeTo(manifest);
+    }
+    final byte[] manifestBytes = manifest.toByteArray();
+
+    writeManifestSection(signatureFile, "Signature-Version", "1.0", "Created-By", CREATED_BY,
+                         DIGEST_MANIFEST_ATTR, encoder.encodeToString(myMessageDigest.digest(manifestBytes)));
+    for (int i = 0; i < sections.size(); i++) {
+      writeManifestSection(signatureFile, "Name", names.get(i), DIGEST_ATTR, encoder.encodeToString(myMessageDigest.digest(sections.get(i))));
+    }
+    final byte[] signatureFileBytes = signatureFile.toByteArray();
+
+    final byte[] signatureBlock = SignatureBlock.create(signatureFileBytes, key, certificate);
+
+    writeBytesEntry(MANIFEST_NAME, manifestBytes);
+    writeBytesEntry(SIGNATURE_FILE_NAME, signatureFileBytes);
+    writeBytesEntry(SignatureBlock.getEntryName(key), signatureBlock);
+  }
+
+  /**
+   * Writes a manifest section made of the given attribute name/value pairs, wrapping lines at 72 bytes the way
+   * {@link java.util.jar.Manifest} does.
+   */
+  private static void writeManifestSection(@NotNull OutputStream out, @NotNull String... attributes) throws IOException {
+    for (int i = 0; i + 1 < attributes.length; i += 2) {
+      final byte[] line = (attributes[i] + ": " + attributes[i + 1]).getBytes(StandardCharsets.UTF_8);
+      int start = 0;
+      int limit = MAX_MANIFEST_LINE_LENGTH;
+
+      while (line.length - start > limit) {
+        int end = start + limit;
+        // don't split multi-byte UTF-8 sequences
+        while ((line[end] & 0xC0) == 0x80) {
+          end--;
+        }
+        out.write(line, start, end - start);
+        out.write('\r');
+        out.write('\n');
+        out.write(' ');
+        start = end;
+        limit = MAX_MANIFEST_LINE_LENGTH - 1;
+      }
+      out.write(line, start, line.length - start);
+      out.write('\r');
+      out.write('\n');
+    }
+    out.write('\r');
+    out.write('\n');
+  }
+
+  @NotNull
+  private String computeDigest(@NotNull File file) throws IOException {
+    final InputStream input = new FileInputStream(file);
+    try {
+      int count;
+      while ((count = input.read(myBuffer)) > 0) {
+        myMessageDigest.update(myBuffer, 0, count);
+      }
+    }
+    finally {
+      input.close();
+    }
+    return Base64.getEncoder().encodeToString(myMessageDigest.digest());
+  }
+
+  @NotNull
+  private String computeDigest(@NotNull FileChannel channel, long dataOffset, @NotNull ZipEntryInfo info) throws IOException {
+    final InputStream input = new ChannelInputStream(channel, dataOffset, info.myCompressedSize);
+
+    if (info.myMethod == ZipEntry.STORED) {
+      int count;
+      while ((count = input.read(myBuffer)) > 0) {
+        myMessageDigest.update(myBuffer, 0, count);
+      }
+    }
+    else {
+      final Inflater inflater = new Inflater(true);
+      final byte[] compressed = new byte[myBuffer.length];
+      boolean dummyByteSupplied = false;
+      try {
+        while (!inflater.finished()) {
+          if (inflater.needsInput()) {
+            final int count = input.read(compressed);
+            if (count > 0) {
+              inflater.setInput(compressed, 0, count);
+            }
+            else if (!dummyByteSupplied) {
+              // raw inflater may need an extra dummy byte to finish, see java.util.zip.ZipFile
+              dummyByteSupplied = true;
+              compressed[0] = 0;
+              inflater.setInput(compressed, 0, 1);
+            }
+            else {
+              throw new ZipException("Unexpected end of entry " + info.myName);
+            }
+          }
+          final int count = inflater.inflate(myBuffer);
+          if (count == 0 && inflater.needsDictionary()) {
+            throw new ZipException("Unsupported preset dictionary in entry " + info.myName);
+          }
+          myMessageDigest.update(myBuffer, 0, count);
+        }
+      }
+      catch (DataFormatException e) {
+        throw new ZipException("Corrupted data of entry " + info.myName + ": " + e.getMessage());
+      }
+      finally {
+        inflater.end();
+      }
+    }
+    return Base64.getEncoder().encodeToString(myMessageDigest.digest());
+  }
+
+  private void saveState() {
+    final DataOutputStream out;
+    try {
+      FileUtil.createParentDirs(myStateFile);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myStateFile)));
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return;
+    }
+    try {
+      out.writeInt(STATE_VERSION);
+      out.writeUTF(FileUtil.toSystemIndependentName(myOutputApk.getAbsolutePath()));
+      out.writeLong(myOutputApk.length());
+      out.writeLong(myOutputApk.lastModified());
+      out.writeInt(myEntries.size());
+
+      for (EntryRecord record : myEntries.values()) {
+        record.save(out);
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      closeQuietly(out);
+      FileUtil.delete(myStateFile);
+      return;
+    }
+    closeQuietly(out);
+  }
+
+  /**
+   * Reads the entries recorded by the previous run. Returns an empty map if there is no state or if the previous APK
+   * doesn't match it.
+   */
+  @NotNull
+  private static Map<String, EntryRecord> readState(@NotNull File stateFile, @NotNull File outputApk) {
+    if (!stateFile.isFile() || !outputApk.isFile()) {
+      return Collections.emptyMap();
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+
+      if (in.readInt() != STATE_VERSION ||
+          !FileUtil.toSystemIndependentName(outputApk.getAbsolutePath()).equals(in.readUTF()) ||
+          in.readLong() != outputApk.length() ||
+          in.readLong() != outputApk.lastModified()) {
+        return Collections.emptyMap();
+      }
+      final int count = in.readInt();
+      final Map<String, EntryRecord> result = new HashMap<>();
+
+      for (int i = 0; i < count; i++) {
+        final EntryRecord record = EntryRecord.read(in);
+        result.put(record.myName, record);
+      }
+      return result;
+    }
+    catch (IOException e) {
+      LOG.info("Cannot read incremental packaging state " + stateFile.getPath(), e);
+      return Collections.emptyMap();
+    }
+    finally {
+      if (in != null) {
+        closeQuietly(in);
+      }
+    }
+  }
+
+  @NotNull
+  private static List<ZipEntryInfo> readCentralDirectory(@NotNull FileChannel channel, @NotNull File file) throws IOException {
+    final long fileSize = channel.size();
+    final int tailSize = (int)Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_ZIP_COMMENT_SIZE);
+    final ByteBuffer tail = readFully(channel, fileSize - tailSize, tailSize, file);
+
+    int eocd = -1;
+    for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        eocd = i;
+        break;
+      }
+    }
+    if (eocd < 0) {
+      throw new ZipException("End of central directory not found in " + file.getPath());
+    }
+    final int count = tail.getShort(eocd + 10) & 0xFFFF;
+    final long size = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+    final long offset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+    if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+      throw new ZipException("Zip64 archives are not supported: " + file.getPath());
+    }
+    final ByteBuffer directory = readFully(channel, offset, (int)size, file);
+    final List<ZipEntryInfo> result = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      final int start = directory.position();
+      if (directory.getInt() != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Malformed central directory in " + file.getPath());
+      }
+      final ZipEntryInfo info = new ZipEntryInfo();
+      info.myMethod = directory.getShort(start + 10) & 0xFFFF;
+      info.myDosTime = directory.getInt(start + 12) & 0xFFFFFFFFL;
+      info.myCrc = directory.getInt(start + 16) & 0xFFFFFFFFL;
+      info.myCompressedSize = directory.getInt(start + 20) & 0xFFFFFFFFL;
+      info.mySize = directory.getInt(start + 24) & 0xFFFFFFFFL;
+      final int nameLength = directory.getShort(start + 28) & 0xFFFF;
+      final int extraLength = directory.getShort(start + 30) & 0xFFFF;
+      final int commentLength = directory.getShort(start + 32) & 0xFFFF;
+      info.myLocalHeaderOffset = directory.getInt(start + 42) & 0xFFFFFFFFL;
+
+      final byte[] name = new byte[nameLength];
+      directory.position(start + CENTRAL_HEADER_SIZE);
+      directory.get(name);
+      info.myName = new String(name, StandardCharsets.UTF_8);
+      directory.position(start + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength);
+      result.add(info);
+    }
+    return result;
+  }
+
+  private static long getDataOffset(@NotNull FileChannel channel, long localHeaderOffset, @NotNull File file) throws IOException {
+    final ByteBuffer header = readFully(channel, localHeaderOffset, LOCAL_HEADER_SIZE, file);
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Malformed local header at " + localHeaderOffset + " in " + file.getPath());
+    }
+    final int nameLength = header.getShort(26) & 0xFFFF;
+    final int extraLength = header.getShort(28) & 0xFFFF;
+    return localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+  }
+
+  @NotNull
+  private static ByteBuffer readFully(@NotNull FileChannel channel, long position, int size, @NotNull File file) throws IOException {
+    final ByteBuffer buffer = newBuffer(size);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of " + file.getPath());
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @NotNull
+  private static ByteBuffer newBuffer(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void checkZip32(long value) throws IOException {
+    if (value >= 0xFFFFFFFFL) {
+      throw new IOException("APK is too large for a zip32 archive");
+    }
+  }
+
+  private static long javaToDosTime(long time) {
+    final Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    final int year = calendar.get(Calendar.YEAR);
+
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (year - 1980) << 25 |
+           (calendar.get(Calendar.MONTH) + 1) << 21 |
+           calendar.get(Calendar.DAY_OF_MONTH) << 16 |
+           calendar.get(Calendar.HOUR_OF_DAY) << 11 |
+           calendar.get(Calendar.MINUTE) << 5 |
+           calendar.get(Calendar.SECOND) >> 1;
+  }
+
+  private static void closeQuietly(@NotNull Closeable closeable) {
+    try {
+      closeable.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  private static class ZipEntryInfo {
+    String myName;
+    int myMethod;
+    long myDosTime;
+    long myCrc;
+    long myCompressedSize;
+    long mySize;
+    long myLocalHeaderOffset;
+  }
+
+  private static class EntryRecord {
+    final String myName;
+    final String myFingerprint;
+    int myMethod;
+    long myDosTime;
+    long myCrc;
+    long myCompressedSize;
+    long mySize;
+    long myHeaderOffset;
+    long myDataOffset;
+    @Nullable String myDigest;
+
+    EntryRecord(@NotNull String name, @NotNull String fingerprint) {
+      myName = name;
+      myFingerprint = fingerprint;
+    }
+
+    @NotNull
+    EntryRecord copy() {
+      final EntryRecord record = new EntryRecord(myName, myFingerprint);
+      record.myMethod = myMethod;
+      record.myDosTime = myDosTime;
+      record.myCrc = myCrc;
+      record.myCompressedSize = myCompressedSize;
+      record.mySize = mySize;
+      record.myDigest = myDigest;
+      return record;
+    }
+
+    void save(@NotNull DataOutput out) throws IOException {
+      out.writeUTF(myName);
+      out.writeUTF(myFingerprint);
+      out.writeInt(myMethod);
+      out.writeLong(myDosTime);
+      out.writeLong(myCrc);
+      out.writeLong(myCompressedSize);
+      out.writeLong(mySize);
+      out.writeLong(myDataOffset);
+      out.writeUTF(myDigest != null ? myDigest : "");
+    }
+
+    @NotNull
+    static EntryRecord read(@NotNull DataInput in) throws IOException {
+      final EntryRecord record = new EntryRecord(in.readUTF(), in.readUTF());
+      record.myMethod = in.readInt();
+      record.myDosTime = in.readLong();
+      record.myCrc = in.readLong();
+      record.myCompressedSize = in.readLong();
+      record.mySize = in.readLong();
+      record.myDataOffset = in.readLong();
+      final String digest = in.readUTF();
+      record.myDigest = digest.isEmpty() ? null : digest;
+      return record;
+    }
+  }
+
+  /**
+   * Reads a region of a file channel without changing the channel position.
+   */
+  private static class ChannelInputStream extends InputStream {
+    private final FileChannel myChannel;
+    private long myPosition;
+    private long myRemaining;
+
+    ChannelInputStream(@NotNull FileChannel channel, long position, long length) {
+      myChannel = channel;
+      myPosition = position;
+      myRemaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@NotNull byte[] b, int off, int len) throws IOException {
+      if (myRemaining <= 0) {
+        return -1;
+      }
+      final ByteBuffer buffer = ByteBuffer.wrap(b, off, (int)Math.min(len, myRemaining));
+      final int count = myChannel.read(buffer, myPosition);
+      if (count <= 0) {
+        return -1;
+      }
+      myPosition += count;
+      myRemaining -= count;
+      return count;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.compiler.tools;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+
+/**
+ * Writes the signature block of a v1 (jar) signed APK, i.e. the {@code META-INF/CERT.<key algorithm>} entry.
+ * <p>
+ * The block is a DER encoded PKCS#7 SignedData structure holding the SHA1 signature of the signature file ({@code CERT.SF}) and
+ * the signing certificate, the same structure {@link com.android.jarutils.SignedJarBuilder} writes. It is encoded here rather than
+ * through the internal {@code sun.security.pkcs} classes, which are not available on all JDKs.
+ */
+final class SignatureBlock {
+  @NonNls private static final String DIGEST_ALGORITHM = "SHA1";
+
+  private static final int INTEGER = 0x02;
+  private static final int OCTET_STRING = 0x04;
+  private static final int NULL = 0x05;
+  private static final int OBJECT_IDENTIFIER = 0x06;
+  private static final int SEQUENCE = 0x30;
+  private static final int SET = 0x31;
+  private static final int CONTEXT_SPECIFIC_0 = 0xA0;
+
+  private static final int[] SIGNED_DATA_OID = {1, 2, 840, 113549, 1, 7, 2};
+  private static final int[] DATA_OID = {1, 2, 840, 113549, 1, 7, 1};
+  private static final int[] SHA1_OID = {1, 3, 14, 3, 2, 26};
+  private static final int[] RSA_OID = {1, 2, 840, 113549, 1, 1, 1};
+  private static final int[] DSA_OID = {1, 2, 840, 10040, 4, 1};
+  private static final int[] EC_OID = {1, 2, 840, 10045, 2, 1};
+
+  private SignatureBlock() {
+  }
+
+  @NotNull
+  static String getEntryName(@NotNull PrivateKey key) {
+    return "META-INF/CERT." + key.getAlgorithm();
+  }
+
+  /**
+   * Signs the given signature file with the given key and returns the content of the signature block entry.
+   */
+  @NotNull
+  static byte[] create(@NotNull byte[] signatureFile, @NotNull PrivateKey key, @NotNull X509Certificate certificate)
+    throws GeneralSecurityException {
+    final String keyAlgorithm = key.getAlgorithm();
+    final Signature signature = Signature.getInstance(DIGEST_ALGORITHM + "with" + ("EC".equals(keyAlgorithm) ? "ECDSA" : keyAlgorithm));
+    signature.initSign(key);
+    signature.update(signatureFile);
+
+    final byte[] digestAlgorithm = encode(SEQUENCE, encodeOid(SHA1_OID), encode(NULL));
+    final byte[] signerInfo = encode(SEQUENCE,
+                                     encodeInteger(1),
+                                     encode(SEQUENCE,
+                                            certificate.getIssuerX500Principal().getEncoded(),
+                                            encode(INTEGER, certificate.getSerialNumber().toByteArray())),
+                                     digestAlgorithm,
+                                     encodeKeyAlgorithm(key),
+                                     encode(OCTET_STRING, signature.sign()));
+    final byte[] signedData = encode(SEQUENCE,
+                                     encodeInteger(1),
+                                     encode(SET, digestAlgorithm),
+                                     encode(SEQUENCE, encodeOid(DATA_OID)),
+                                     encode(CONTEXT_SPECIFIC_0, certificate.getEncoded()),
+                                     encode(SET, signerInfo));
+    return encode(SEQUENCE, encodeOid(SIGNED_DATA_OID), encode(CONTEXT_SPECIFIC_0, signedData));
+  }
+
+  @NotNull
+  private static byte[] encodeKeyAlgorithm(@NotNull PrivateKey key) throws NoSuchAlgorithmException {
+    final String algorithm = key.getAlgorithm();
+    if ("RSA".equals(algorithm)) {
+      return encode(SEQUENCE, encodeOid(RSA_OID), encode(NULL));
+    }
+    if ("DSA".equals(algorithm)) {
+      return encode(SEQUENCE, encodeOid(DSA_OID));
+    }
+    if ("EC".equals(algorithm)) {
+      return encode(SEQUENCE, encodeOid(EC_OID));
+    }
+    throw new NoSuchAlgorithmException("Unsupported signing key algorithm " + algorithm);
+  }
+
+  @NotNull
+  private static byte[] encodeInteger(int value) {
+    return encode(INTEGER, new byte[]{(byte)value});
+  }
+
+  @NotNull
+  private static byte[] encodeOid(@NotNull int[] components) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(components[0] * 40 + components[1]);
+    for (int i = 2; i < components.length; i++) {
+      final int component = components[i];
+      // base 128, most significant group first, with the high bit set on all groups but the last
+      for (int shift = 28; shift > 0; shift -= 7) {
+        if (component >>> shift != 0) {
+          out.write(0x80 | (component >>> shift) & 0x7F);
+        }
+      }
+      out.write(component & 0x7F);
+    }
+    return encode(OBJECT_IDENTIFIER, out.toByteArray());
+  }
+
+  /**
+   * Returns the DER encoding of a value with the given tag, whose content is the concatenation of the given byte arrays.
+   */
+  @NotNull
+  private static byte[] encode(int tag, @NotNull byte[]... contents) {
+    int length = 0;
+    for (byte[] content : contents) {
+      length += content.length;
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(length + 6);
+    out.write(tag);
+    if (length < 0x80) {
+      out.write(length);
+    }
+    else {
+      int lengthSize = 1;
+      while (lengthSize < 4 && length >>> (8 * lengthSize) != 0) {
+        lengthSize++;
+      }
+      out.write(0x80 | lengthSize);
+      for (int i = lengthSize - 1; i >= 0; i--) {
+        out.write(length >>> (8 * i));
+      }
+    }
+    for (byte[] content : contents) {
+      out.write(content, 0, content.length);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.compiler.tools;
+
+import com.android.jarutils.DebugKeyProvider;
+import com.android.jarutils.SignedJarBuilder;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link IncrementalApkPackager}.
+ */
+public class IncrementalApkPackagerTest {
+  private static final String DISABLED_JAR_ALGORITHMS = "jdk.jar.disabledAlgorithms";
+
+  private File myTempDir;
+  private File myApk;
+  private File myStateFile;
+
+  @Before
+  public void setUp() throws Exception {
+    myTempDir = FileUtil.createTempDirectory("incremental_apk", null);
+    myApk = new File(myTempDir, "out/app.apk");
+    myStateFile = new File(myTempDir, "state/incremental_apk");
+    FileUtil.createParentDirs(myApk);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtil.delete(myTempDir);
+  }
+
+  @Test
+  public void packageFilesAndZips() throws Exception {
+    File dex = createFile("classes.dex", "dex content");
+    File resources = createZip("resources.ap_", "AndroidManifest.xml", "<manifest/>", "res/drawable/icon.png", "png");
+    File jar = createZip("lib.jar", "META-INF/MANIFEST.MF", "Manifest-Version: 1.0", "org/lib/", "", "org/lib/res.txt", "text");
+
+    IncrementalApkPackager packager = packageApk(null, null, resources, dex, jar);
+    assertEquals(3, packager.getCopiedEntryCount());
+    assertEquals(1, packager.getCompressedEntryCount());
+
+    Map<String, String> expected = new LinkedHashMap<>();
+    expected.put("AndroidManifest.xml", "<manifest/>");
+    expected.put("res/drawable/icon.png", "png");
+    expected.put("classes.dex", "dex content");
+    expected.put("org/lib/res.txt", "text");
+    assertEquals(expected, readApk(myApk));
+    assertTrue(myStateFile.isFile());
+  }
+
+  @Test
+  public void reuseUnchangedEntries() throws Exception {
+    File dex = createFile("classes.dex", "dex content");
+    File javaResource = createFile("res.properties", "a=b");
+    File resources = createZip("resources.ap_", "AndroidManifest.xml", "<manifest/>");
+
+    packageApk(null, null, resources, dex, javaResource);
+
+    updateFile(dex, "changed dex content");
+    IncrementalApkPackager packager = packageApk(null, null, resources, dex, javaResource);
+    assertEquals(2, packager.getCopiedEntryCount());
+    assertEquals(1, packager.getCompressedEntryCount());
+
+    Map<String, String> apk = readApk(myApk);
+    assertEquals("changed dex content", apk.get("classes.dex"));
+    assertEquals("a=b", apk.get("res.properties"));
+    assertEquals("<manifest/>", apk.get("AndroidManifest.xml"));
+  }
+
+  @Test
+  public void modifiedApkIsRebuiltFromScratch() throws Exception {
+    File dex = createFile("classes.dex", "dex content");
+    File resources = createZip("resources.ap_", "AndroidManifest.xml", "<manifest/>");
+    packageApk(null, null, resources, dex);
+
+    FileUtil.writeToFile(myApk, "corrupted");
+    IncrementalApkPackager packager = packageApk(null, null, resources, dex);
+    assertEquals(1, packager.getCompressedEntryCount());
+    assertEquals("dex content", readApk(myApk).get("classes.dex"));
+  }
+
+  @Test
+  public void unfinishedPackagingKeepsPreviousApk() throws Exception {
+    File dex = createFile("classes.dex", "dex content");
+    File resources = createZip("resources.ap_", "AndroidManifest.xml", "<manifest/>");
+    packageApk(null, null, resources, dex);
+    long length = myApk.length();
+
+    IncrementalApkPackager packager = new IncrementalApkPackager(myApk, myStateFile, null, null);
+    try {
+      packager.writeFile(dex, "classes.dex");
+      packager.writeFile(dex, "classes.dex");
+      fail("Duplicate entries must be rejected");
+    }
+    catch (IOException expected) {
+    }
+    finally {
+      packager.close();
+    }
+    assertEquals(length, myApk.length());
+    assertFalse(new File(myApk.getPath() + ".tmp").exists());
+    assertEquals("dex content", readApk(myApk).get("classes.dex"));
+  }
+
+  @Test
+  public void signedApkIsVerifiable() throws Exception {
+    DebugKeyProvider provider = new DebugKeyProvider(new File(myTempDir, "debug.keystore").getPath(), null, null);
+    PrivateKey key = provider.getDebugKey();
+    X509Certificate certificate = (X509Certificate)provider.getCertificate();
+
+    File dex = createFile("classes.dex", "dex content");
+    File longName = createFile("res.txt", "long name");
+    File resources = createZip("resources.ap_", "AndroidManifest.xml", "<manifest/>");
+    String longPath = "assets/" + repeat("very_long_directory_name/", 5) + "res.txt";
+
+    // debug keys sign with SHA1 which recent JDKs treat as unsigned when verifying jars
+    String disabledAlgorithms = Security.getProperty(DISABLED_JAR_ALGORITHMS);
+    Security.setProperty(DISABLED_JAR_ALGORITHMS, "");
+    try {
+      packageSigned(key, certificate, resources, dex, longName, longPath);
+      assertSigned(myApk);
+
+      updateFile(dex, "changed dex content");
+      packageSigned(key, certificate, resources, dex, longName, longPath);
+      assertSigned(myApk);
+    }
+    finally {
+      // the property can't be removed, but an empty value is the same as an unset one
+      Security.setProperty(DISABLED_JAR_ALGORITHMS, disabledAlgorithms != null ? disabledAlgorithms : "");
+    }
+  }
+
+  /**
+   * Checks that after a single loose file has changed only that file is deflated again, while the other loose files and the
+   * entries of the zip inputs are copied.
+   */
+  @Test
+  public void incrementalPackagingCompressesOnlyChangedFiles() throws Exception {
+    Random random = new Random(0);
+    File resources = createZip("resources.ap_",
+                               "res/drawable/image1.png", randomText(random, 1024),
+                               "res/drawable/image2.png", randomText(random, 1024));
+    File dex = createFile("classes.dex", randomText(random, 4096));
+    File[] javaResources = new File[3];
+    for (int i = 0; i < javaResources.length; i++) {
+      javaResources[i] = createFile("res" + i + ".txt", randomText(random, 1024));
+    }
+    File[] inputs = new File[javaResources.length + 2];
+    inputs[0] = resources;
+    inputs[1] = dex;
+    System.arraycopy(javaResources, 0, inputs, 2, javaResources.length);
+
+    IncrementalApkPackager packager = packageApk(null, null, inputs);
+    assertEquals(javaResources.length + 1, packager.getCompressedEntryCount());
+
+    updateFile(javaResources[0], randomText(random, 1024));
+    packager = packageApk(null, null, inputs);
+    assertEquals(1, packager.getCompressedEntryCount());
+  }
+
+  @NotNull
+  private IncrementalApkPackager packageApk(PrivateKey key, X509Certificate certificate, @NotNull File... inputs) throws Exception {
+    IncrementalApkPackager packager = new IncrementalApkPackager(myApk, myStateFile, key, certificate);
+    try {
+      for (File input : inputs) {
+        if (input.getName().endsWith(".ap_") || input.getName().endsWith(".jar")) {
+          packager.writeZip(input, new SignedJarBuilder.IZipEntryFilter() {
+            @Override
+            public boolean checkEntry(String name) {
+              return true;
+            }
+          });
+        }
+        else {
+          packager.writeFile(input, input.getName());
+        }
+      }
+      packager.finish();
+    }
+    finally {
+      packager.close();
+    }
+    return packager;
+  }
+
+  private void packageSigned(@NotNull PrivateKey key,
+                             @NotNull X509Certificate certificate,
+                             @NotNull File resources,
+                             @NotNull File dex,
+                             @NotNull File file,
+                             @NotNull String path) throws Exception {
+    IncrementalApkPackager packager = new IncrementalApkPackager(myApk, myStateFile, key, certificate);
+    try {
+      packager.writeZip(resources, null);
+      packager.writeFile(dex, "classes.dex");
+      packager.writeFile(file, path);
+      packager.finish();
+    }
+    finally {
+      packager.close();
+    }
+  }
+
+  private static void assertSigned(@NotNull File apk) throws IOException {
+    JarFile jarFile = new JarFile(apk, true);
+    try {
+      int signedCount = 0;
+      for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+        JarEntry entry = entries.nextElement();
+        // reading the entry content verifies its digest
+        InputStream input = jarFile.getInputStream(entry);
+        try {
+          while (input.read() >= 0) ;
+        }
+        finally {
+          input.close();
+        }
+        if (!entry.getName().startsWith("META-INF/")) {
+          assertNotNull(entry.getName() + " is not signed", entry.getCodeSigners());
+          signedCount++;
+        }
+      }
+      assertEquals(3, signedCount);
+    }
+    finally {
+      jarFile.close();
+    }
+  }
+
+  @NotNull
+  private File createFile(@NotNull String name, @NotNull String content) throws IOException {
+    File file = new File(myTempDir, "input/" + name);
+    FileUtil.writeToFile(file, content);
+    return file;
+  }
+
+  private static void updateFile(@NotNull File file, @NotNull String content) throws IOException {
+    long lastModified = file.lastModified();
+    FileUtil.writeToFile(file, content);
+    // make sure the change is visible even on file systems with coarse timestamps
+    file.setLastModified(lastModified + 2000);
+  }
+
+  /**
+   * Creates a zip from name/content pairs. Entries with names ending with ".png" are stored, the others are deflated.
+   */
+  @NotNull
+  private File createZip(@NotNull String name, @NotNull String... entries) throws IOException {
+    File file = new File(myTempDir, "input/" + name);
+    FileUtil.createParentDirs(file);
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      for (int i = 0; i < entries.length; i += 2) {
+        byte[] content = entries[i + 1].getBytes(StandardCharsets.UTF_8);
+        ZipEntry entry = new ZipEntry(entries[i]);
+        if (entries[i].endsWith(".png")) {
+          CRC32 crc = new CRC32();
+          crc.update(content);
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(content.length);
+          entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+      }
+    }
+    finally {
+      out.close();
+    }
+    return file;
+  }
+
+  @NotNull
+  private static Map<String, String> readApk(@NotNull File apk) throws IOException {
+    Map<String, String> result = new LinkedHashMap<>();
+    ZipFile zipFile = new ZipFile(apk);
+    try {
+      for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+        ZipEntry entry = entries.nextElement();
+        InputStream input = zipFile.getInputStream(entry);
+        try {
+          result.put(entry.getName(), new String(FileUtil.loadBytes(input), StandardCharsets.UTF_8));
+        }
+        finally {
+          input.close();
+        }
+      }
+    }
+    finally {
+      zipFile.close();
+    }
+    return result;
+  }
+
+  @NotNull
+  private static String randomText(@NotNull Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append((char)('a' + random.nextInt(16)));
+    }
+    return builder.toString();
+  }
+
+  @NotNull
+  private static String repeat(@NotNull String s, int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(s);
+    }
+    return builder.toString();
+  }
+}
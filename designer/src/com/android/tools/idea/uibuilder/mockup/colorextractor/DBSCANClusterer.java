@@ -15,8 +15,13 @@
  */
 package com.android.tools.idea.uibuilder.mockup.colorextractor;
 
+import com.google.common.primitives.Ints;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A Cluster using the DBSCAN algorithm.
@@ -29,6 +34,8 @@ import java.util.List;
  * by:  Martin Ester, Hans-Peter Kriegel, Jörg Sander, Xiaowei Xu
  *
  * http://www2.cs.uh.edu/~ceick/7363/Papers/dbscan.pdf
+ *
+ * The neighbors of a point are looked up in a grid of cells of size eps rather than among all the points.
  */
 @SuppressWarnings("ForLoopReplaceableByForEach")
 public class DBSCANClusterer implements Clusterer{
@@ -47,6 +54,7 @@ public class DBSCANClusterer implements Clusterer{
   private List<List<double[]>> myClusters = new ArrayList<>();
 
   private PointType[] myPointTypes;
+  private Grid myGrid;
   ProgressListener listener;
 
   /**
@@ -76,6 +84,7 @@ public class DBSCANClusterer implements Clusterer{
   public List<List<double[]>> cluster(double[][] input) {
     List<double[]> cluster = new ArrayList<>();
     myPointTypes = new PointType[input.length];
+    myGrid = new Grid(input, myEps != 0 ? Math.abs(myEps) : 1);
 
     for (int i = 0; i < input.length; i++) {
       if (myPointTypes[i] == null) { // If point is unclassified
@@ -123,8 +132,8 @@ public class DBSCANClusterer implements Clusterer{
 
       // We now expand the search to all the neighbors,
       // if they have also have neighbors, they become core point
-      while (!seeds.isEmpty()) {
-        int currentP = seeds.get(0);
+      for (int seedIndex = 0; seedIndex < seeds.size(); seedIndex++) {
+        int currentP = seeds.get(seedIndex);
         List<Integer> result = regionQuery(input, currentP);
 
         if (result.size() >= myMinPts) {
@@ -142,7 +151,6 @@ public class DBSCANClusterer implements Clusterer{
             }
           }
         }
-        seeds.remove(0);
       }
       return true;
     }
@@ -165,12 +173,28 @@ public class DBSCANClusterer implements Clusterer{
   private List<Integer> regionQuery(double[][] input, int pointIndex) {
     List<Integer> seeds = new ArrayList<>();
     double[] current = input[pointIndex];
-    for (int i = 0; i < input.length; i++) {
-      float epsSquare = myEps * myEps;
-      if (input[i] != current && distance(input[i], current) <= epsSquare) {
-        seeds.add(i);
+    float epsSquare = myEps * myEps;
+    int cellX = myGrid.getCell(current, 0);
+    int cellY = myGrid.getCell(current, 1);
+    int cellZ = myGrid.getCell(current, 2);
+    for (int x = cellX - 1; x <= cellX + 1; x++) {
+      for (int y = cellY - 1; y <= cellY + 1; y++) {
+        for (int z = cellZ - 1; z <= cellZ + 1; z++) {
+          int[] cell = myGrid.getPoints(x, y, z);
+          if (cell == null) {
+            continue;
+          }
+          for (int i = 0; i < cell.length; i++) {
+            double[] neighbor = input[cell[i]];
+            if (neighbor != current && distance(neighbor, current) <= epsSquare) {
+              seeds.add(cell[i]);
+            }
+          }
+        }
       }
     }
+    // Keep the order of the points in the input, which decides the cluster of the border points
+    Collections.sort(seeds);
     return seeds;
   }
 
@@ -183,8 +207,49 @@ public class DBSCANClusterer implements Clusterer{
   private static double distance(double[] neighbor, double[] point) {
     double squares = 0;
     for (int i = 0; i < Math.min(neighbor.length, point.length); i++) {
-      squares += Math.pow(neighbor[i] - point[i], 2);
+      double difference = neighbor[i] - point[i];
+      squares += difference * difference;
     }
     return squares;
   }
+
+  /**
+   * Points grouped by the cell of the grid containing them, for the first three dimensions.
+   *
+   * Since the cells are at least eps wide, the neighbors of a point are all in its cell or in the cells directly around it.
+   */
+  private static final class Grid {
+    private final double myCellSize;
+    private final Map<Long, int[]> myCells = new HashMap<>();
+
+    Grid(double[][] points, double cellSize) {
+      myCellSize = cellSize;
+      Map<Long, List<Integer>> cells = new HashMap<>();
+      for (int i = 0; i < points.length; i++) {
+        long key = getKey(getCell(points[i], 0), getCell(points[i], 1), getCell(points[i], 2));
+        cells.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+      }
+      for (Map.Entry<Long, List<Integer>> entry : cells.entrySet()) {
+        myCells.put(entry.getKey(), Ints.toArray(entry.getValue()));
+      }
+    }
+
+    int getCell(double[] point, int dimension) {
+      return dimension < point.length ? (int)Math.floor(point[dimension] / myCellSize) : 0;
+    }
+
+    /**
+     * Returns the indexes of the points in the given cell, in ascending order, or null if it is empty.
+     */
+    int[] getPoints(int x, int y, int z) {
+      return myCells.get(getKey(x, y, z));
+    }
+
+    /**
+     * Packs the coordinates of a cell in a key. Cells far enough apart can share a key, which only adds points to check.
+     */
+    private static long getKey(int x, int y, int z) {
+      return (x & 0x1FFFFFL) << 42 | (y & 0x1FFFFFL) << 21 | (z & 0x1FFFFFL);
+    }
+  }
 }
@@ -116,12 +116,16 @@ public abstract class DoublesColorExtractor extends ColorExtractor {
       // Get RGB value of the pixel
       int rgb = pixels[i];
 
-      // Prepare input data
-      new Color(rgb).getColorComponents(Colors.getLabColorSpace(), tempLAB);
-      double[] LABDoubles = {tempLAB[0], tempLAB[1], tempLAB[2]};
-      labToRgb.put(Arrays.hashCode(LABDoubles), rgb);
-      rgbToLab.put(rgb, LABDoubles);
-      clusterInput.add(LABDoubles);
+      // Prepare input data. Mockups have few distinct colors, so each of them is only converted once.
+      double[] LABDoubles = rgbToLab.get(rgb);
+      if (LABDoubles == null) {
+        new Color(rgb).getColorComponents(Colors.getLabColorSpace(), tempLAB);
+        LABDoubles = new double[]{tempLAB[0], tempLAB[1], tempLAB[2]};
+        labToRgb.put(Arrays.hashCode(LABDoubles), rgb);
+        rgbToLab.put(rgb, LABDoubles);
+      }
+      // Each pixel needs its own point, the clusterers count the points of the same color separately
+      clusterInput.add(LABDoubles.clone());
     }
     return clusterInput;
   }
@@ -29,6 +29,8 @@ public final class KMeansClusterer implements Clusterer {
   private final int myK;
   private int myInputDataSize;
   private double[][] myData;
+  /** The L, a and b values of the points one after the other, to go through them without following a reference per point. */
+  private double[] myPackedData;
   private double[][] myOutputColors;
 
   public KMeansClusterer(int k) {
@@ -40,6 +42,10 @@ public final class KMeansClusterer implements Clusterer {
   public List<List<double[]>> cluster(double[][] points) {
     myData = points;
     myInputDataSize = points.length;
+    myPackedData = new double[myInputDataSize * 3];
+    for (int i = 0; i < myInputDataSize; i++) {
+      System.arraycopy(points[i], 0, myPackedData, i * 3, 3);
+    }
     getInitialColors();
     for (int i = 0; i < PASS_NUMBER; i++) {
       int dist = pass();
@@ -59,13 +65,25 @@ public final class KMeansClusterer implements Clusterer {
     double[][] centers = new double[myK][3];
     int[] count = new int[myK];
 
-    for (int pointIndex = 0; pointIndex < myInputDataSize; pointIndex++) {
+    int colorCount = myOutputColors.length;
+    double[] colors = new double[colorCount * 3];
+    for (int outputIndex = 0; outputIndex < colorCount; outputIndex++) {
+      System.arraycopy(myOutputColors[outputIndex], 0, colors, outputIndex * 3, 3);
+    }
+
+    for (int offset = 0; offset < myPackedData.length; offset += 3) {
+      double l = myPackedData[offset];
+      double a = myPackedData[offset + 1];
+      double b = myPackedData[offset + 2];
       double minDist = Double.MAX_VALUE;
       int closestColor = 0;
 
       // Foreach point in the input data, find the output color which is the closest
-      for (int outputIndex = 0; outputIndex < myOutputColors.length; outputIndex++) {
-        double distance = distance(myOutputColors[outputIndex], myData[pointIndex]);
+      for (int outputIndex = 0; outputIndex < colorCount; outputIndex++) {
+        double dl = colors[outputIndex * 3] - l;
+        double da = colors[outputIndex * 3 + 1] - a;
+        double db = colors[outputIndex * 3 + 2] - b;
+        double distance = dl * dl + da * da + db * db;
         if (distance < minDist) {
           minDist = distance;
           closestColor = outputIndex;
@@ -73,9 +91,9 @@ public final class KMeansClusterer implements Clusterer {
       }
 
       // Add the value to compute the new center (find the average)
-      centers[closestColor][0] += myData[pointIndex][0];
-      centers[closestColor][1] += myData[pointIndex][1];
-      centers[closestColor][2] += myData[pointIndex][2];
+      centers[closestColor][0] += l;
+      centers[closestColor][1] += a;
+      centers[closestColor][2] += b;
       count[closestColor]++;
     }
 
@@ -101,7 +119,8 @@ public final class KMeansClusterer implements Clusterer {
   private static double distance(double[] neighbor, double[] point) {
     double squares = 0;
     for (int i = 0; i < Math.min(neighbor.length, point.length); i++) {
-      squares += Math.pow(neighbor[i] - point[i], 2);
+      double difference = neighbor[i] - point[i];
+      squares += difference * difference;
     }
     return squares;
   }
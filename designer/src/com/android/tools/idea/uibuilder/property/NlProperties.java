@@ -30,9 +30,18 @@ import com.google.common.collect.Table;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xml.XmlName;
 import com.intellij.xml.NamespaceAwareXmlAttributeDescriptor;
 import com.intellij.xml.XmlAttributeDescriptor;
@@ -53,6 +62,9 @@ import static com.android.SdkConstants.*;
 public class NlProperties {
   public static final String STARRED_PROP = "ANDROID.STARRED_PROPERTIES";
 
+  private static final Key<CachedValue<Map<TagKey, Table<String, String, XmlName>>>> ATTRIBUTE_NAMES_KEY =
+    Key.create("NlProperties.attributeNames");
+
   private static NlProperties ourInstance = null;
   private final AndroidDomElementDescriptorProvider myDescriptorProvider = new AndroidDomElementDescriptorProvider();
 
@@ -96,48 +108,31 @@ public class NlProperties {
     AttributeDefinitions localAttrDefs = localResourceManager.getAttributeDefinitions();
     AttributeDefinitions systemAttrDefs = systemResourceManager.getAttributeDefinitions();
 
-    Table<String, String, NlPropertyItem> combinedProperties = null;
-
+    // Intersect the attribute names of the components first, so that property items are only created for the common attributes
+    Table<String, String, XmlName> commonNames = null;
     for (NlComponent component : components) {
-      XmlTag tag = component.getTag();
-      if (!tag.isValid()) {
-        return ImmutableTable.of();
-      }
-
-      XmlElementDescriptor elementDescriptor = myDescriptorProvider.getDescriptor(tag);
-      if (elementDescriptor == null) {
+      Table<String, String, XmlName> names = getAttributeNames(facet, component.getTag());
+      if (names == null) {
         return ImmutableTable.of();
       }
+      commonNames = commonNames == null ? HashBasedTable.create(names) : intersect(commonNames, names);
+    }
+    assert commonNames != null;
+
+    Table<String, String, NlPropertyItem> combinedProperties = HashBasedTable.create(3, commonNames.size());
+    for (Table.Cell<String, String, XmlName> cell : commonNames.cellSet()) {
+      XmlName name = cell.getValue();
+      AttributeDefinitions attrDefs = NS_RESOURCES.equals(name.getNamespaceKey()) ? systemAttrDefs : localAttrDefs;
+      AttributeDefinition attrDef = attrDefs == null ? null : attrDefs.getAttrDefByName(name.getLocalName());
+      combinedProperties.put(cell.getRowKey(), cell.getColumnKey(), NlPropertyItem.create(name, attrDef, components, propertiesManager));
+    }
 
-      XmlAttributeDescriptor[] descriptors = elementDescriptor.getAttributesDescriptors(tag);
-      Table<String, String, NlPropertyItem> properties = HashBasedTable.create(3, descriptors.length);
-
-      for (XmlAttributeDescriptor desc : descriptors) {
-        XmlName name = getXmlName(desc, tag);
-        AttributeDefinitions attrDefs = NS_RESOURCES.equals(name.getNamespaceKey()) ? systemAttrDefs : localAttrDefs;
-        AttributeDefinition attrDef = attrDefs == null ? null : attrDefs.getAttrDefByName(name.getLocalName());
-        NlPropertyItem property = NlPropertyItem.create(name, attrDef, components, propertiesManager);
-        properties.put(StringUtil.notNullize(name.getNamespaceKey()), property.getName(), property);
-      }
-
-      // Exceptions:
-      switch (tag.getName()) {
-        case AUTO_COMPLETE_TEXT_VIEW:
-          // An AutoCompleteTextView has a popup that is created at runtime.
-          // Properties for this popup can be added to the AutoCompleteTextView tag.
-          properties.put(ANDROID_URI, ATTR_POPUP_BACKGROUND, NlPropertyItem.create(
-            new XmlName(ATTR_POPUP_BACKGROUND, ANDROID_URI),
-            systemAttrDefs != null ? systemAttrDefs.getAttrDefByName(ATTR_POPUP_BACKGROUND) : null,
-            components,
-            propertiesManager));
-          break;
-      }
-
-      combinedProperties = combine(properties, combinedProperties);
+    if (components.size() > 1) {
+      // Never include the ID attribute when looking at multiple components:
+      combinedProperties.remove(ANDROID_URI, ATTR_ID);
     }
 
     // The following properties are deprecated in the support library and can be ignored by tools:
-    assert combinedProperties != null;
     combinedProperties.remove(AUTO_URI, ATTR_PADDING_START);
     combinedProperties.remove(AUTO_URI, ATTR_PADDING_END);
     combinedProperties.remove(AUTO_URI, ATTR_THEME);
@@ -147,10 +142,63 @@ public class NlProperties {
 
     initStarState(combinedProperties);
 
-    //noinspection ConstantConditions
     return combinedProperties;
   }
 
+  /**
+   * Returns the names of the attributes available on the given tag, keyed by namespace and local name, or null if the tag is no
+   * longer valid or is not known.
+   * <p>
+   * Looking up the attribute descriptors of a tag resolves its view class and the layout params of its parent, which is slow for
+   * custom views. The names are cached per module for tags with the same name, parent and attributes, until the next PSI change.
+   */
+  @Nullable
+  private Table<String, String, XmlName> getAttributeNames(@NotNull AndroidFacet facet, @NotNull XmlTag tag) {
+    if (!tag.isValid()) {
+      return null;
+    }
+    Map<TagKey, Table<String, String, XmlName>> cache = CachedValuesManager.getManager(facet.getModule().getProject()).getCachedValue(
+      facet, ATTRIBUTE_NAMES_KEY, () -> CachedValueProvider.Result.create(ContainerUtil.newConcurrentMap(),
+                                                                       PsiModificationTracker.MODIFICATION_COUNT,
+                                                                       ProjectRootManager.getInstance(facet.getModule().getProject())),
+      false);
+    TagKey key = new TagKey(tag);
+    Table<String, String, XmlName> names = cache.get(key);
+    if (names == null) {
+      names = computeAttributeNames(tag);
+      if (names == null) {
+        return null;
+      }
+      cache.put(key, names);
+    }
+    return names;
+  }
+
+  @Nullable
+  private Table<String, String, XmlName> computeAttributeNames(@NotNull XmlTag tag) {
+    XmlElementDescriptor elementDescriptor = myDescriptorProvider.getDescriptor(tag);
+    if (elementDescriptor == null) {
+      return null;
+    }
+
+    XmlAttributeDescriptor[] descriptors = elementDescriptor.getAttributesDescriptors(tag);
+    Table<String, String, XmlName> names = HashBasedTable.create(3, descriptors.length);
+    for (XmlAttributeDescriptor desc : descriptors) {
+      XmlName name = getXmlName(desc, tag);
+      names.put(StringUtil.notNullize(name.getNamespaceKey()), name.getLocalName(), name);
+    }
+
+    // Exceptions:
+    switch (tag.getName()) {
+      case AUTO_COMPLETE_TEXT_VIEW:
+        // An AutoCompleteTextView has a popup that is created at runtime.
+        // Properties for this popup can be added to the AutoCompleteTextView tag.
+        names.put(ANDROID_URI, ATTR_POPUP_BACKGROUND, new XmlName(ATTR_POPUP_BACKGROUND, ANDROID_URI));
+        break;
+    }
+    return ImmutableTable.copyOf(names);
+  }
+
   @Nullable
   private static AndroidFacet getFacet(@NotNull List<NlComponent> components) {
     if (components.isEmpty()) {
@@ -237,28 +285,11 @@ public class NlProperties {
     return new XmlName(descriptor.getName(), namespace);
   }
 
-  private static Table<String, String, NlPropertyItem> combine(@NotNull Table<String, String, NlPropertyItem> properties,
-                                                               @Nullable Table<String, String, NlPropertyItem> combinedProperties) {
-    if (combinedProperties == null) {
-      return properties;
-    }
-    List<String> namespaces = new ArrayList<>(combinedProperties.rowKeySet());
-    List<String> propertiesToRemove = new ArrayList<>();
-    for (String namespace : namespaces) {
-      propertiesToRemove.clear();
-      for (Map.Entry<String, NlPropertyItem> entry : combinedProperties.row(namespace).entrySet()) {
-        NlPropertyItem other = properties.get(namespace, entry.getKey());
-        if (!entry.getValue().sameDefinition(other)) {
-          propertiesToRemove.add(entry.getKey());
-        }
-      }
-      for (String propertyName : propertiesToRemove) {
-        combinedProperties.remove(namespace, propertyName);
-      }
-    }
-    // Never include the ID attribute when looking at multiple components:
-    combinedProperties.remove(ANDROID_URI, ATTR_ID);
-    return combinedProperties;
+  @NotNull
+  private static Table<String, String, XmlName> intersect(@NotNull Table<String, String, XmlName> commonNames,
+                                                          @NotNull Table<String, String, XmlName> names) {
+    commonNames.cellSet().removeIf(cell -> !names.contains(cell.getRowKey(), cell.getColumnKey()));
+    return commonNames;
   }
 
   private static void setUpDesignProperties(@NotNull Table<String, String, NlPropertyItem> properties) {
@@ -321,4 +352,47 @@ public class NlProperties {
     }
     return true;
   }
+
+  /**
+   * Identifies tags that have the same attribute descriptors: the descriptors depend on the view class of the tag, on the layout
+   * params of its parent and on the attributes already set on the tag.
+   */
+  private static final class TagKey {
+    @NotNull private final PsiFile myFile;
+    @NotNull private final String myTagName;
+    @Nullable private final String myParentTagName;
+    @NotNull private final List<String> myAttributeNames;
+
+    private TagKey(@NotNull XmlTag tag) {
+      myFile = tag.getContainingFile();
+      myTagName = tag.getName();
+      XmlTag parent = tag.getParentTag();
+      myParentTagName = parent != null ? parent.getName() : null;
+      XmlAttribute[] attributes = tag.getAttributes();
+      myAttributeNames = new ArrayList<>(attributes.length);
+      for (XmlAttribute attribute : attributes) {
+        myAttributeNames.add(attribute.getName());
+      }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof TagKey)) {
+        return false;
+      }
+      TagKey key = (TagKey)other;
+      return myFile.equals(key.myFile) &&
+             myTagName.equals(key.myTagName) &&
+             Objects.equals(myParentTagName, key.myParentTagName) &&
+             myAttributeNames.equals(key.myAttributeNames);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myFile, myTagName, myParentTagName, myAttributeNames);
+    }
+  }
 }
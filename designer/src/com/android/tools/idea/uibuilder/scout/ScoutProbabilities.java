@@ -16,6 +16,8 @@
 
 package com.android.tools.idea.uibuilder.scout;
 
+import com.intellij.openapi.progress.ProgressManager;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -73,15 +75,27 @@ public class ScoutProbabilities {
 
         mProbability = new float[len][][];
         mMargin = new float[len][][];
+        mBinaryProbability = new float[len][2][len * 2][len * 2];
+        mBinaryBias = new float[len][2][len * 2][len * 2];
 
-        // calculate probability for normal connections
-        float[] result = new float[2]; // estimation function return 2 values probability & margin
+        // estimation function return 2 values probability & margin
+        float[] result = new float[2];
+        // distance from the current widget to every widget, computed once per widget
+        // rather than per candidate since it needs to query the components for guidelines
+        float[] distance = new float[len];
+        Direction[] all = Direction.getAllDirections();
 
         for (int i = 1; i < len; i++) { // for all non root widgets
-            Direction[] all = Direction.getAllDirections();
+            ProgressManager.checkCanceled();
             if (list[i].isGuideline()) {
                 continue;
             }
+            for (int j = 0; j < len; j++) {
+                distance[j] = (i == j) ? 0 : ScoutWidget.distance(list[i], list[j]);
+            }
+            boolean baselineConnected = list[i].hasBaseline() && list[i].hasConnection(Direction.BASELINE);
+
+            // calculate probability for normal connections
             mProbability[i] = new float[all.length][];
             mMargin[i] = new float[all.length][];
             for (int dir = 0; dir < all.length; dir++) { // for all possible connections
@@ -100,42 +114,19 @@ public class ScoutProbabilities {
                     Direction connectTo = (opposite == 0) ? direction : direction.getOpposite();
 
                     estimateProbability(list[i], direction, list[widgetNumber],
-                            connectTo, list, result);
+                            connectTo, distance[widgetNumber], result);
                     mProbability[i][dir][candidate] = result[RESULT_PROBABILITY];
                     mMargin[i][dir][candidate] = result[RESULT_MARGIN];
                 }
             }
-        }
 
-        // calculate probability for "centered" connections
-        mBinaryProbability = new float[len][2][len * 2][len * 2];
-        mBinaryBias = new float[len][2][len * 2][len * 2];
-        Direction[][] directions =
-                { { Direction.TOP, Direction.BOTTOM}, { Direction.LEFT, Direction.RIGHT} };
-        for (int i = 1; i < len; i++) {
-            for (int horizontal = 0; horizontal < 2; horizontal++) { // vert=0 or horizantal=1
-                Direction[] sides = directions[horizontal];
-                for (int candidate1 = 0; candidate1 < len * 2; candidate1++) {
-                    for (int candidate2 = 0; candidate2 < len * 2; candidate2++) {
-
-                        // candidates are 2 per widget (left/right or above/below)
-                        int widget1Number = candidate1 / 2;
-                        int widget2Number = candidate2 / 2;
-
-                        // pick the sides to connect
-                        Direction widget1Side = sides[candidate1 & 0x1];
-                        Direction widget2Side = sides[candidate2 & 0x1];
-
-                        estimateBinaryProbability(list[i], horizontal,
-                                list[widget1Number], widget1Side,
-                                list[widget2Number], widget2Side,
-                                list, result);
-                        mBinaryProbability[i][horizontal][candidate1][candidate2] =
-                                result[RESULT_PROBABILITY];
-                        mBinaryBias[i][horizontal][candidate1][candidate2] =
-                                result[RESULT_MARGIN];
-                    }
-                }
+            // calculate probability for "centered" connections
+            if (baselineConnected) {
+                // no vertical centering once connected by baseline
+                estimateBinaryProbabilities(list, i, Direction.ORIENTATION_HORIZONTAL, distance);
+            } else {
+                estimateBinaryProbabilities(list, i, Direction.ORIENTATION_VERTICAL, distance);
+                estimateBinaryProbabilities(list, i, Direction.ORIENTATION_HORIZONTAL, distance);
             }
         }
         if (DEBUG) {
@@ -548,11 +539,12 @@ public class ScoutProbabilities {
      * @param fromDir direction on that widget
      * @param to      destination widget
      * @param toDir   destination side to connect
+     * @param fromToDistance distance between the two widgets
      * @param result  populates results with probability and offset
      */
     private static void estimateProbability(ScoutWidget from, Direction fromDir,
             ScoutWidget to, Direction toDir,
-            ScoutWidget[] list,
+            float fromToDistance,
             float[] result) {
         result[RESULT_PROBABILITY] = 0;
         result[RESULT_MARGIN] = 0;
@@ -592,7 +584,7 @@ public class ScoutProbabilities {
         float toLocation = to.getLocation(toDir);
         float positionDiff =
                 (fromDir.reverse()) ? fromLocation - toLocation : toLocation - fromLocation;
-        float distance = 2 * ScoutWidget.distance(from, to);
+        float distance = 2 * fromToDistance;
         if (to.isRoot()) {
             distance = Math.abs(distance - ROOT_MARGIN_DISCOUNT);
         }
@@ -612,59 +604,95 @@ public class ScoutProbabilities {
     }
 
     /**
-     * This defines the constraint between a widget and two widgets to the left and right of it.
-     * Currently only encourages probability between widget and root for center purposes.
+     * Fills the probabilities of centering a widget between any two sides of the widgets (root included)
+     * in one orientation. A widget can only be centered between a side before it and a side after it:
+     * once the first side is past the widget, the pairs are rejected without being estimated,
+     * except for the ones ending on the root which may overhang a bit.
      *
-     * @param from        source widget
+     * @param list        widgets (0 is root)
+     * @param i           index of the widget to center
      * @param orientation horizontal or vertical connections (1 is horizontal)
-     * @param to1         connect to on one side
-     * @param toDir1      direction on that widget
-     * @param to2         connect to on other side
-     * @param toDir2      direction on that widget
-     * @param result      populates results with probability and offset
+     * @param distance    distance between the widget and every widget of the list
      */
-    private static void estimateBinaryProbability(
-            ScoutWidget from, int orientation, // 0 = north/south 1 = east/west
-            ScoutWidget to1, Direction toDir1,
-            ScoutWidget to2, Direction toDir2,
-            ScoutWidget[] list,
-            float[] result) {
+    private void estimateBinaryProbabilities(ScoutWidget[] list, int i, int orientation, float[] distance) {
+        ScoutWidget from = list[i];
+        float[][] probability = mBinaryProbability[i][orientation];
+        float[][] bias = mBinaryBias[i][orientation];
+        Direction[] sides = Direction.getDirections(orientation);
 
-        result[RESULT_PROBABILITY] = 0;
-        result[RESULT_MARGIN] = 0;
-        if (from == to1 || from == to2) { // cannot center on yourself
-            return;
-        }
-        if (from.isGuideline()) {
-            return;
-        }
-        // if it already has a baseline do not connect to it
-        if ((orientation == Direction.ORIENTATION_VERTICAL) & from.hasBaseline()) {
-            if (from.hasConnection(Direction.BASELINE)) {
-                return;
-            }
-        }
         // distance normalizing scale factor
         float scale = 0.5f *
                 ((orientation == Direction.ORIENTATION_VERTICAL) ? from.getParent().getHeight() :
                         from.getParent().getWidth());
-        Direction fromLeft = Direction.getDirections(orientation)[0];
-        Direction fromRight = Direction.getDirections(orientation)[1];
+        float location1 = from.getLocation(sides[0]);
+        float location2 = from.getLocation(sides[1]);
+
+        // candidates are 2 per widget (left/right or above/below)
+        int candidates = len * 2;
+        float[] positionDiff1 = new float[candidates];
+        float[] positionDiff2 = new float[candidates];
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            float toLocation = list[candidate / 2].getLocation(sides[candidate & 0x1]);
+            positionDiff1[candidate] = location1 - toLocation;
+            positionDiff2[candidate] = toLocation - location2;
+        }
+
+        float[] result = new float[2];
+        for (int candidate1 = 0; candidate1 < candidates; candidate1++) {
+            int widget1Number = candidate1 / 2;
+            if (widget1Number == i) { // cannot center on yourself
+                continue;
+            }
+            boolean root1 = list[widget1Number].isRoot();
+            boolean pastFirstSide = positionDiff1[candidate1] < 0 && !root1;
+            for (int candidate2 = 0; candidate2 < candidates; candidate2++) {
+                int widget2Number = candidate2 / 2;
+                if (widget2Number == i) {
+                    continue;
+                }
+                boolean root2 = list[widget2Number].isRoot();
+                if (pastFirstSide && !root2) {
+                    probability[candidate1][candidate2] = NEGATIVE_GAP_FLAG;
+                    continue;
+                }
+                estimateBinaryProbability(positionDiff1[candidate1], root1, distance[widget1Number],
+                        positionDiff2[candidate2], root2, distance[widget2Number],
+                        scale, result);
+                probability[candidate1][candidate2] = result[RESULT_PROBABILITY];
+                bias[candidate1][candidate2] = result[RESULT_MARGIN];
+            }
+        }
+    }
+
+    /**
+     * This defines the constraint between a widget and two widgets to the left and right of it.
+     * Currently only encourages probability between widget and root for center purposes.
+     *
+     * @param positionDiff1 gap between the side on one side and the widget
+     * @param root1         true if the widget on one side is the root
+     * @param distance1     distance to the widget on one side
+     * @param positionDiff2 gap between the widget and the side on the other side
+     * @param root2         true if the widget on the other side is the root
+     * @param distance2     distance to the widget on the other side
+     * @param scale         distance normalizing scale factor
+     * @param result        populates results with probability and offset
+     */
+    private static void estimateBinaryProbability(
+            float positionDiff1, boolean root1, float distance1,
+            float positionDiff2, boolean root2, float distance2,
+            float scale,
+            float[] result) {
 
-        float location1 = from.getLocation(fromLeft);
-        float location2 = from.getLocation(fromRight);
-        float toLoc1 = to1.getLocation(toDir1);
-        float toLoc2 = to2.getLocation(toDir2);
-        float positionDiff1 = location1 - toLoc1;
-        float positionDiff2 = toLoc2 - location2;
+        result[RESULT_PROBABILITY] = 0;
+        result[RESULT_MARGIN] = 0;
 
         if (positionDiff1 < 0 || positionDiff2 < 0) { // do not center if not aligned
             boolean badCandidate = true;
-            if (positionDiff2 < 0 && to2.isRoot() && positionDiff2 > -MAX_ROOT_OVERHANG) {
+            if (positionDiff2 < 0 && root2 && positionDiff2 > -MAX_ROOT_OVERHANG) {
                 badCandidate = false;
                 positionDiff2 = 0;
             }
-            if (positionDiff1 < 0 && to1.isRoot() && positionDiff2 > -MAX_ROOT_OVERHANG) {
+            if (positionDiff1 < 0 && root1 && positionDiff2 > -MAX_ROOT_OVERHANG) {
                 badCandidate = false;
                 positionDiff2 = 0;
             }
@@ -674,14 +702,14 @@ public class ScoutProbabilities {
             }
         }
 
-        float distance1 = ScoutWidget.distance(from, to1) / scale;
-        float distance2 = ScoutWidget.distance(from, to2) / scale;
+        distance1 = distance1 / scale;
+        distance2 = distance2 / scale;
         float diff = Math.abs(positionDiff1 - positionDiff2);
         float probability = ((diff < SLOPE_CENTER_CONNECTION) ? 1 : 0); // favor close distance
         probability = probability / (1+ distance1 + distance2);
         probability += 1 / (1 + Math.abs(positionDiff1 - positionDiff2));
         probability *=
-                (to1.isRoot() && to2.isRoot()) ? 2 : ((SUPPORT_CENTER_TO_NON_ROOT) ? 1f : 0);
+                (root1 && root2) ? 2 : ((SUPPORT_CENTER_TO_NON_ROOT) ? 1f : 0);
 
         result[RESULT_PROBABILITY] = probability;
         result[RESULT_MARGIN] = Math.min(positionDiff1,positionDiff2);
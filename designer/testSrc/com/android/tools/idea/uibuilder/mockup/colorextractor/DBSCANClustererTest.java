@@ -65,4 +65,23 @@ public class DBSCANClustererTest {
     assertNotNull(cluster3);
     assertEquals(4, cluster3.size());
   }
+
+  @Test
+  public void testClusterAcrossCells() throws Exception {
+    // Neighbors on both sides of the boundaries between cells of size eps, in negative coordinates too
+    double[][] data = new double[][]{
+      new double[]{-0.5, -0.5, 0.5},
+      new double[]{0.4, -0.5, 0.5},
+      new double[]{1.3, -0.5, 0.5},
+      new double[]{1.3, 0.4, 0.5},
+      new double[]{3.5, 3.5, 3.5},
+      new double[]{3.5, 4.2, 3.5},
+      new double[]{6., 6., 6.}
+    };
+    List<List<double[]>> clusters = new DBSCANClusterer(1, 0).cluster(data);
+    assertEquals(3, clusters.size());
+    assertEquals(4, clusters.get(0).size());
+    assertEquals(2, clusters.get(1).size());
+    assertEquals(1, clusters.get(2).size());
+  }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
 package com.android.tools.idea.uibuilder.mockup.colorextractor;
 
 import com.android.tools.idea.uibuilder.LayoutTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
 import junit.framework.TestCase;
 
 import javax.imageio.ImageIO;
@@ -40,6 +41,20 @@ public class DBSCANColorExtractorTest extends TestCase {
     assertTrue(extractedColors.contains(new ExtractedColor(0xFFFF0000, 10, null)));
   }
 
+  public void testClusteringPerformance() throws Exception {
+    BufferedImage image = ImageUtils.createScaledImage(ImageIO.read(new File(LayoutTestCase.getTestDataPath(), "mockup/inbox.png")),
+                                                       DoublesColorExtractor.MAX_IMAGE_SIZE);
+    DBSCANColorExtractor dbscanColorExtractor = new DBSCANColorExtractor(image, DBSCANColorExtractor.DEFAULT_EPS,
+                                                                         DBSCANColorExtractor.getMinClusterSize(image));
+    PlatformTestUtil.startPerformanceTest("extract the colors of a mockup", 1000, () -> {
+      HashMap<Integer, Integer> labToRgb = new HashMap<>();
+      List<double[]> labPixels = DoublesColorExtractor.getLABPixels(image, labToRgb, new HashMap<>(), null);
+      assertFalse(dbscanColorExtractor.runClustering(labToRgb, labPixels, null).isEmpty());
+    })
+      .attempts(2)
+      .assertTiming();
+  }
+
   public void testGetMinClusterSize_over16() throws Exception {
     BufferedImage image = new BufferedImage(256, 200, BufferedImage.TYPE_INT_RGB);
     int minClusterSize = DBSCANColorExtractor.getMinClusterSize(image);
@@ -119,6 +119,36 @@ public class NlPropertiesTest extends PropertyTestCase {
     assertAbsent(tag, properties, ANDROID_URI, FRAME_LAYOUT_ATTRS);
   }
 
+  public void testCommonAttributesOfMultipleComponents() {
+    @Language("XML")
+    String source = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                    "<RelativeLayout>" +
+                    "  <TextView />" +
+                    "  <TextView />" +
+                    "  <ImageView />" +
+                    "</RelativeLayout>";
+    XmlFile xmlFile = (XmlFile)myFixture.addFileToProject("res/layout/layout.xml", source);
+
+    XmlTag rootTag = xmlFile.getRootTag();
+    assert rootTag != null;
+
+    XmlTag[] subTags = rootTag.getSubTags();
+    assertEquals(3, subTags.length);
+
+    Table<String, String, NlPropertyItem> textViewProperties = NlProperties.getInstance().getProperties(
+      myPropertiesManager, ImmutableList.of(MockNlComponent.create(subTags[0]), MockNlComponent.create(subTags[1])));
+    assertPresent("TextView", textViewProperties, ANDROID_URI, TEXT_VIEW_ATTRS);
+    assertPresent("TextView", textViewProperties, ANDROID_URI, RELATIVE_LAYOUT_ATTRS);
+    assertAbsent("TextView", textViewProperties, ANDROID_URI, ATTR_ID);
+
+    Table<String, String, NlPropertyItem> properties = NlProperties.getInstance().getProperties(
+      myPropertiesManager, ImmutableList.of(MockNlComponent.create(subTags[0]), MockNlComponent.create(subTags[2])));
+    assertPresent("View", properties, ANDROID_URI, "padding", "visibility");
+    assertPresent("View", properties, ANDROID_URI, RELATIVE_LAYOUT_ATTRS);
+    assertAbsent("View", properties, ANDROID_URI, TEXT_VIEW_ATTRS);
+    assertAbsent("View", properties, ANDROID_URI, ATTR_ID, ATTR_SRC);
+  }
+
   public void testCustomViewAttributes() {
     XmlFile xmlFile = setupCustomViewProject();
 
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import com.android.tools.idea.common.fixtures.ComponentDescriptor;
+import com.android.tools.idea.common.fixtures.ModelBuilder;
+import com.android.tools.idea.uibuilder.scout.Scout;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+
+import static com.android.SdkConstants.CONSTRAINT_LAYOUT;
+import static com.android.SdkConstants.TEXT_VIEW;
+
+/**
+ * Checks the time taken to infer the constraints of a large layout: a grid of 100 text views.
+ */
+public class ScoutPerformanceTest extends SceneTest {
+  private static final int ROWS = 10;
+  private static final int COLUMNS = 10;
+
+  @Override
+  @NotNull
+  public ModelBuilder createModel() {
+    ComponentDescriptor[] children = new ComponentDescriptor[ROWS * COLUMNS];
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        children[row * COLUMNS + column] = component(TEXT_VIEW)
+          .id("@+id/textview" + row + "_" + column)
+          .withBounds(40 + column * 190, 40 + row * 190, 150, 40)
+          .width("75dp")
+          .height("20dp");
+      }
+    }
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT)
+                   .id("@+id/content_main")
+                   .withBounds(0, 0, 2000, 2000)
+                   .width("1000dp")
+                   .height("1000dp")
+                   .children(children));
+  }
+
+  public void testInferConstraints() {
+    PlatformTestUtil.startPerformanceTest("infer constraints of 100 widgets", 2000,
+                                          () -> Scout.inferConstraintsAndCommit(myModel.getComponents()))
+      .attempts(2)
+      .assertTiming();
+  }
+}
@@ -64,6 +64,7 @@ public class AndroidJpsUtil {
 
   @NonNls public static final String ANDROID_STORAGE_DIR = "android";
   @NonNls private static final String RESOURCE_CACHE_STORAGE = "res_cache";
+  @NonNls private static final String PNG_CRUNCH_CACHE_STORAGE = "crunch_cache";
   @NonNls private static final String INTERMEDIATE_ARTIFACTS_STORAGE = "intermediate_artifacts";
 
   @NonNls public static final String GENERATED_RESOURCES_DIR_NAME = "generated_resources";
@@ -600,6 +601,12 @@ public class AndroidJpsUtil {
     return new File(new File(androidStorage, RESOURCE_CACHE_STORAGE), module.getName());
   }
 
+  @NotNull
+  public static File getPngCrunchCacheDir(@NotNull BuildDataPaths dataPaths) {
+    final File androidStorage = new File(dataPaths.getDataStorageRoot(), ANDROID_STORAGE_DIR);
+    return new File(androidStorage, PNG_CRUNCH_CACHE_STORAGE);
+  }
+
   @NotNull
   public static File[] getSourceRootsForModuleAndDependencies(@NotNull JpsModule rootModule) {
     final Set<File> result = new HashSet<File>();
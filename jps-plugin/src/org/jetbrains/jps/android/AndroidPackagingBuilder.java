@@ -43,6 +43,7 @@ import java.util.*;
 public class AndroidPackagingBuilder extends AndroidTargetBuilder<BuildRootDescriptor, AndroidPackagingBuildTarget> {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.android.AndroidPackagingBuilder");
   private static final String BUILDER_NAME = "Android Packager";
+  private static final String INCREMENTAL_PACKAGING_STORAGE = "incremental_apk";
 
 
   public AndroidPackagingBuilder() {
@@ -95,10 +96,12 @@ public class AndroidPackagingBuilder extends AndroidTargetBuilder<BuildRootDescr
 
     final AndroidPackagingStateStorage packagingStateStorage =
       dataManager.getStorage(target, AndroidPackagingStateStorage.Provider.INSTANCE);
+    final File incrementalStateFile =
+      AndroidJpsUtil.getStorageFile(dataManager.getDataPaths().getTargetDataRoot(target), INCREMENTAL_PACKAGING_STORAGE);
 
     try {
       if (!doPackagingForModule(context, module, apkBuilderConfigStateStorage, packagingStateStorage,
-                                release, hasDirtyFiles, outputConsumer)) {
+                                incrementalStateFile, release, hasDirtyFiles, outputConsumer)) {
         success = false;
       }
     }
@@ -113,6 +116,7 @@ public class AndroidPackagingBuilder extends AndroidTargetBuilder<BuildRootDescr
                                               @NotNull JpsModule module,
                                               @NotNull AndroidApkBuilderConfigStateStorage apkBuilderConfigStateStorage,
                                               @NotNull AndroidPackagingStateStorage packagingStateStorage,
+                                              @NotNull File incrementalStateFile,
                                               boolean release,
                                               boolean hasDirtyFiles,
                                               @NotNull BuildOutputConsumer outputConsumer) throws IOException {
@@ -183,7 +187,7 @@ public class AndroidPackagingBuilder extends AndroidTargetBuilder<BuildRootDescr
     final Map<AndroidCompilerMessageKind, List<String>> messages = AndroidApkBuilder
       .execute(resPackagePath, classesDexFilePath, resourceRoots, externalJars,
                nativeLibDirs, additionalNativeLibs, outputPath, release, sdkPath, platform.getTarget(),
-               customKeyStorePath, new MyExcludedSourcesFilter(context.getProjectDescriptor().getProject()));
+               customKeyStorePath, new MyExcludedSourcesFilter(context.getProjectDescriptor().getProject()), incrementalStateFile);
 
     if (messages.get(AndroidCompilerMessageKind.ERROR).isEmpty()) {
       final List<String> srcFiles = new ArrayList<String>();
@@ -0,0 +1,546 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.android;
+
+import com.android.sdklib.BuildToolInfo;
+import com.android.sdklib.IAndroidTarget;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.util.Processor;
+import org.jetbrains.android.compiler.tools.AndroidApt;
+import org.jetbrains.android.util.AndroidCommonUtils;
+import org.jetbrains.android.util.AndroidCompilerMessageKind;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.service.SharedThreadPool;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Content-addressed cache of crunched PNG files shared by all modules of the project.
+ * <p>
+ * Every input PNG is keyed by the SHA-1 of its content and of the aapt revision. Only the images whose keys aren't in the
+ * cache are crunched, split into batches processed by concurrent aapt invocations; the others are copied from the cache.
+ * Identical drawables referenced by several modules (e.g. from a shared library or AAR) are therefore crunched once.
+ * <p>
+ * Each module additionally keeps the keys of its inputs (with their timestamps and lengths) so unchanged images are neither
+ * rehashed nor copied again.
+ * <p>
+ * The cache is bounded: entries are touched when they are reused, and once new images make it exceed its maximal size the least
+ * recently used entries are deleted.
+ */
+public class AndroidPngCrunchCache {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.android.AndroidPngCrunchCache");
+
+  @NonNls private static final String DIGEST_ALGORITHM = "SHA-1";
+  @NonNls private static final String NINE_PATCH_SUFFIX = ".9.png";
+
+  private static final int STATE_VERSION = 1;
+
+  /**
+   * Minimal number of images per aapt invocation: below that the cost of starting aapt dominates.
+   */
+  private static final int MIN_BATCH_SIZE = 32;
+
+  /**
+   * Default upper bound for the total size of the cached images, in bytes.
+   */
+  private static final long MAX_CACHE_SIZE = 256L * 1024 * 1024;
+
+  private final File myCacheDir;
+  private final long myMaxCacheSize;
+
+  public AndroidPngCrunchCache(@NotNull File cacheDir) {
+    this(cacheDir, MAX_CACHE_SIZE);
+  }
+
+  AndroidPngCrunchCache(@NotNull File cacheDir, long maxCacheSize) {
+    myCacheDir = cacheDir;
+    myMaxCacheSize = maxCacheSize;
+  }
+
+  /**
+   * Crunches PNG files of {@code inputDirs} into {@code outputDir}. Like {@link AndroidApt#crunch}, if several input directories
+   * contain the same relative path, the first one wins.
+   *
+   * @param stateFile the file keeping the keys of the module inputs between builds
+   */
+  @NotNull
+  public Result crunch(@NotNull final IAndroidTarget target,
+                       @NotNull List<String> inputDirs,
+                       @NotNull File outputDir,
+                       @NotNull File stateFile) throws IOException {
+    final BuildToolInfo buildToolInfo = target.getBuildToolInfo();
+    final Cruncher cruncher = new Cruncher() {
+      @NotNull
+      @Override
+      public Map<AndroidCompilerMessageKind, List<String>> crunch(@NotNull List<String> resPaths, @NotNull String outputPath)
+        throws IOException {
+        return AndroidApt.crunch(target, resPaths, outputPath);
+      }
+    };
+
+    if (buildToolInfo == null) {
+      final Result result = new Result();
+      result.addMessages(cruncher.crunch(inputDirs, outputDir.getPath()));
+      return result;
+    }
+    return crunch(cruncher, buildToolInfo.getRevision().toString(), inputDirs, outputDir, stateFile);
+  }
+
+  /**
+   * @param toolId identifies the aapt version used by {@code cruncher}, images crunched by another version are not reused
+   */
+  @NotNull
+  Result crunch(@NotNull Cruncher cruncher,
+                @NotNull String toolId,
+                @NotNull List<String> inputDirs,
+                @NotNull File outputDir,
+                @NotNull File stateFile) throws IOException {
+    final Result result = new Result();
+    final Map<String, File> inputs = collectInputs(inputDirs);
+    final Map<String, InputState> previousStates = readState(stateFile, toolId);
+    final Map<String, InputState> states = new HashMap<String, InputState>();
+    final Map<String, File> misses = new LinkedHashMap<String, File>();
+
+    for (Map.Entry<String, File> entry : inputs.entrySet()) {
+      final String relativePath = entry.getKey();
+      final File input = entry.getValue();
+      final InputState previous = previousStates.get(relativePath);
+      final InputState state = previous != null && previous.matches(input) ? previous : new InputState(input, computeKey(input, toolId));
+      states.put(relativePath, state);
+      final File output = new File(outputDir, relativePath);
+
+      if (state == previous && output.isFile()) {
+        result.myUpToDateCount++;
+        continue;
+      }
+      final File cached = getCachedFile(state.myKey);
+
+      if (cached.isFile() && copyFromCache(cached, output)) {
+        result.myReusedCount++;
+      }
+      else {
+        misses.put(relativePath, input);
+      }
+    }
+    result.myCrunchedCount = misses.size();
+
+    if (result.myUpToDateCount + result.myReusedCount == 0 && misses.size() <= MIN_BATCH_SIZE) {
+      // nothing to reuse: crunch the resource directories as is
+      result.addMessages(cruncher.crunch(inputDirs, outputDir.getPath()));
+      result.myAaptRunCount = 1;
+      storeOutputs(misses, outputDir, states);
+    }
+    else if (!misses.isEmpty()) {
+      crunchInBatches(cruncher, misses, outputDir, states, result);
+    }
+
+    if (result.isSuccessful()) {
+      saveState(stateFile, toolId, states);
+    }
+    else {
+      FileUtil.delete(stateFile);
+    }
+    if (!misses.isEmpty()) {
+      prune();
+    }
+    return result;
+  }
+
+  /**
+   * Copies a cached image to the module output and marks it as recently used. Returns false if the entry was evicted meanwhile by
+   * a concurrently built module, in which case the image has to be crunched again.
+   */
+  private static boolean copyFromCache(@NotNull File cached, @NotNull File output) {
+    try {
+      FileUtil.copy(cached, output);
+    }
+    catch (FileNotFoundException e) {
+      return false;
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return false;
+    }
+    //noinspection ResultOfMethodCallIgnored
+    cached.setLastModified(System.currentTimeMillis());
+    return true;
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache is back to three quarters of its maximal size.
+   */
+  void prune() {
+    final List<File> entries = new ArrayList<File>();
+    final long[] totalSize = {0};
+
+    FileUtil.processFilesRecursively(myCacheDir, new Processor<File>() {
+      @Override
+      public boolean process(File file) {
+        if (file.isFile()) {
+          entries.add(file);
+          totalSize[0] += file.length();
+        }
+        return true;
+      }
+    });
+    if (totalSize[0] <= myMaxCacheSize) {
+      return;
+    }
+    final Map<File, Long> lastUsed = new HashMap<File, Long>(entries.size());
+    for (File entry : entries) {
+      lastUsed.put(entry, entry.lastModified());
+    }
+    Collections.sort(entries, new Comparator<File>() {
+      @Override
+      public int compare(File f1, File f2) {
+        return lastUsed.get(f1).compareTo(lastUsed.get(f2));
+      }
+    });
+    final long targetSize = myMaxCacheSize / 4 * 3;
+
+    for (File entry : entries) {
+      if (totalSize[0] <= targetSize) {
+        break;
+      }
+      final long length = entry.length();
+      if (FileUtil.delete(entry)) {
+        totalSize[0] -= length;
+      }
+    }
+  }
+
+  private void crunchInBatches(@NotNull final Cruncher cruncher,
+                               @NotNull Map<String, File> misses,
+                               @NotNull File outputDir,
+                               @NotNull Map<String, InputState> states,
+                               @NotNull Result result) throws IOException {
+    final int batchCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), misses.size() / MIN_BATCH_SIZE));
+    final List<Map<String, File>> batches = new ArrayList<Map<String, File>>(batchCount);
+
+    for (int i = 0; i < batchCount; i++) {
+      batches.add(new LinkedHashMap<String, File>());
+    }
+    int i = 0;
+    for (Map.Entry<String, File> entry : misses.entrySet()) {
+      batches.get(i++ % batchCount).put(entry.getKey(), entry.getValue());
+    }
+    final File tempDir = FileUtil.createTempDirectory("android_crunch", "tmp");
+    try {
+      final List<Future<Map<AndroidCompilerMessageKind, List<String>>>> futures =
+        new ArrayList<Future<Map<AndroidCompilerMessageKind, List<String>>>>(batchCount);
+
+      for (int j = 0; j < batchCount; j++) {
+        final Map<String, File> batch = batches.get(j);
+        final File inputDir = new File(tempDir, "in" + j);
+        final File batchOutputDir = new File(tempDir, "out" + j);
+
+        for (Map.Entry<String, File> entry : batch.entrySet()) {
+          FileUtil.copy(entry.getValue(), new File(inputDir, entry.getKey()));
+        }
+        futures.add(SharedThreadPool.getInstance().submit(new Callable<Map<AndroidCompilerMessageKind, List<String>>>() {
+          @Override
+          public Map<AndroidCompilerMessageKind, List<String>> call() throws Exception {
+            return cruncher.crunch(Collections.singletonList(inputDir.getPath()), batchOutputDir.getPath());
+          }
+        }));
+      }
+
+      for (int j = 0; j < batchCount; j++) {
+        result.addMessages(getResult(futures.get(j)));
+        result.myAaptRunCount++;
+        final File batchOutputDir = new File(tempDir, "out" + j);
+
+        for (String relativePath : batches.get(j).keySet()) {
+          final File batchOutput = new File(batchOutputDir, relativePath);
+
+          if (batchOutput.isFile()) {
+            FileUtil.copy(batchOutput, new File(outputDir, relativePath));
+          }
+        }
+        storeOutputs(batches.get(j), batchOutputDir, states);
+      }
+    }
+    finally {
+      FileUtil.delete(tempDir);
+    }
+  }
+
+  @NotNull
+  private static Map<AndroidCompilerMessageKind, List<String>> getResult(
+    @NotNull Future<Map<AndroidCompilerMessageKind, List<String>>> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Puts crunched images into the cache. The files are written under a temporary name and renamed so concurrently built
+   * modules never see partially written entries.
+   */
+  private void storeOutputs(@NotNull Map<String, File> inputs, @NotNull File outputDir, @NotNull Map<String, InputState> states) {
+    for (String relativePath : inputs.keySet()) {
+      final File output = new File(outputDir, relativePath);
+      final InputState state = states.get(relativePath);
+
+      if (state == null || !output.isFile()) {
+        continue;
+      }
+      final File cached = getCachedFile(state.myKey);
+      if (cached.isFile()) {
+        continue;
+      }
+      final File temp = new File(cached.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+      try {
+        FileUtil.copy(output, temp);
+        if (!temp.renameTo(cached) && !cached.isFile()) {
+          LOG.info("Cannot store crunched " + relativePath + " into " + cached.getPath());
+        }
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+      finally {
+        FileUtil.delete(temp);
+      }
+    }
+  }
+
+  @NotNull
+  private File getCachedFile(@NotNull String key) {
+    return new File(new File(myCacheDir, key.substring(0, 2)), key);
+  }
+
+  @NotNull
+  private static Map<String, File> collectInputs(@NotNull List<String> inputDirs) {
+    final Map<String, File> result = new LinkedHashMap<String, File>();
+
+    for (String inputDirPath : inputDirs) {
+      final File inputDir = new File(inputDirPath);
+
+      FileUtil.processFilesRecursively(inputDir, new Processor<File>() {
+        @Override
+        public boolean process(File file) {
+          if (file.isFile() && FileUtilRt.extensionEquals(file.getName(), AndroidCommonUtils.PNG_EXTENSION)) {
+            final String relativePath = FileUtil.getRelativePath(inputDir, file);
+
+            if (relativePath != null && !result.containsKey(relativePath)) {
+              result.put(relativePath, file);
+            }
+          }
+          return true;
+        }
+      });
+    }
+    return result;
+  }
+
+  @NotNull
+  private static String computeKey(@NotNull File file, @NotNull String toolId) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    digest.update(toolId.getBytes("UTF-8"));
+    digest.update((byte)0);
+    digest.update(FileUtil.loadFileBytes(file));
+
+    final StringBuilder builder = new StringBuilder();
+    for (byte b : digest.digest()) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    // aapt treats nine-patch images differently, so the name matters too
+    builder.append(file.getName().endsWith(NINE_PATCH_SUFFIX) ? NINE_PATCH_SUFFIX : "." + AndroidCommonUtils.PNG_EXTENSION);
+    return builder.toString();
+  }
+
+  @NotNull
+  private static Map<String, InputState> readState(@NotNull File stateFile, @NotNull String toolId) {
+    if (!stateFile.isFile()) {
+      return Collections.emptyMap();
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+
+      if (in.readInt() != STATE_VERSION || !toolId.equals(in.readUTF())) {
+        return Collections.emptyMap();
+      }
+      final int count = in.readInt();
+      final Map<String, InputState> result = new HashMap<String, InputState>(count);
+
+      for (int i = 0; i < count; i++) {
+        final String relativePath = in.readUTF();
+        result.put(relativePath, new InputState(in));
+      }
+      return result;
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return Collections.emptyMap();
+    }
+    finally {
+      if (in != null) {
+        try {
+          in.close();
+        }
+        catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  private static void saveState(@NotNull File stateFile, @NotNull String toolId, @NotNull Map<String, InputState> states) {
+    DataOutputStream out = null;
+    try {
+      FileUtil.createParentDirs(stateFile);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stateFile)));
+      out.writeInt(STATE_VERSION);
+      out.writeUTF(toolId);
+      out.writeInt(states.size());
+
+      for (Map.Entry<String, InputState> entry : states.entrySet()) {
+        out.writeUTF(entry.getKey());
+        entry.getValue().save(out);
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      FileUtil.delete(stateFile);
+    }
+    finally {
+      if (out != null) {
+        try {
+          out.close();
+        }
+        catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Crunches the PNG files of the given directories into the output directory, like {@link AndroidApt#crunch}.
+   */
+  interface Cruncher {
+    @NotNull
+    Map<AndroidCompilerMessageKind, List<String>> crunch(@NotNull List<String> resPaths, @NotNull String outputPath) throws IOException;
+  }
+
+  private static class InputState {
+    final long myLength;
+    final long myTimestamp;
+    final String myKey;
+
+    InputState(@NotNull File file, @NotNull String key) {
+      myLength = file.length();
+      myTimestamp = file.lastModified();
+      myKey = key;
+    }
+
+    InputState(@NotNull DataInput in) throws IOException {
+      myLength = in.readLong();
+      myTimestamp = in.readLong();
+      myKey = in.readUTF();
+    }
+
+    boolean matches(@NotNull File file) {
+      return file.length() == myLength && file.lastModified() == myTimestamp;
+    }
+
+    void save(@NotNull DataOutput out) throws IOException {
+      out.writeLong(myLength);
+      out.writeLong(myTimestamp);
+      out.writeUTF(myKey);
+    }
+  }
+
+  public static class Result {
+    private final Map<AndroidCompilerMessageKind, List<String>> myMessages = new HashMap<AndroidCompilerMessageKind, List<String>>();
+    private int myUpToDateCount;
+    private int myReusedCount;
+    private int myCrunchedCount;
+    private int myAaptRunCount;
+
+    Result() {
+      myMessages.put(AndroidCompilerMessageKind.ERROR, new ArrayList<String>());
+    }
+
+    private void addMessages(@NotNull Map<AndroidCompilerMessageKind, List<String>> messages) {
+      for (Map.Entry<AndroidCompilerMessageKind, List<String>> entry : messages.entrySet()) {
+        List<String> list = myMessages.get(entry.getKey());
+        if (list == null) {
+          list = new ArrayList<String>();
+          myMessages.put(entry.getKey(), list);
+        }
+        list.addAll(entry.getValue());
+      }
+    }
+
+    @NotNull
+    public Map<AndroidCompilerMessageKind, List<String>> getMessages() {
+      return myMessages;
+    }
+
+    public boolean isSuccessful() {
+      return myMessages.get(AndroidCompilerMessageKind.ERROR).isEmpty();
+    }
+
+    /**
+     * Number of images whose crunched version was already in the module output.
+     */
+    public int getUpToDateCount() {
+      return myUpToDateCount;
+    }
+
+    /**
+     * Number of images copied from the shared cache.
+     */
+    public int getReusedCount() {
+      return myReusedCount;
+    }
+
+    public int getCrunchedCount() {
+      return myCrunchedCount;
+    }
+
+    public int getAaptRunCount() {
+      return myAaptRunCount;
+    }
+  }
+}
@@ -2,11 +2,10 @@ package org.jetbrains.jps.android;
 
 import com.android.sdklib.IAndroidTarget;
 import com.android.tools.idea.jps.AndroidTargetBuilder;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.HashMap;
-import org.jetbrains.android.compiler.tools.AndroidApt;
-import org.jetbrains.android.util.AndroidCompilerMessageKind;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jps.android.builder.AndroidResourceCachingBuildTarget;
@@ -14,6 +13,7 @@ import org.jetbrains.jps.android.model.JpsAndroidModuleExtension;
 import org.jetbrains.jps.builders.BuildOutputConsumer;
 import org.jetbrains.jps.builders.BuildRootDescriptor;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
+import org.jetbrains.jps.builders.storage.BuildDataPaths;
 import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.incremental.ProjectBuildException;
 import org.jetbrains.jps.incremental.StopBuildException;
@@ -32,7 +32,10 @@ import java.util.Map;
  * @author Eugene.Kudelevsky
  */
 public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRootDescriptor, AndroidResourceCachingBuildTarget> {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.android.AndroidResourceCachingBuilder");
+
   @NonNls private static final String BUILDER_NAME = "Android Resource Caching";
+  @NonNls private static final String CRUNCH_STATE_STORAGE = "crunch_state";
 
   protected AndroidResourceCachingBuilder() {
     super(Collections.singletonList(AndroidResourceCachingBuildTarget.MyTargetType.INSTANCE));
@@ -101,10 +104,18 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
         inputDirs.add(f.getPath());
       }
     }
-    final Map<AndroidCompilerMessageKind, List<String>> messages =
-      AndroidApt.crunch(androidTarget, inputDirs,resCacheDir.getPath());
-    AndroidJpsUtil.addMessages(context, messages, BUILDER_NAME, module.getName());
-    final boolean success = messages.get(AndroidCompilerMessageKind.ERROR).isEmpty();
+    final BuildDataPaths dataPaths = context.getProjectDescriptor().dataManager.getDataPaths();
+    final File crunchStateFile = AndroidJpsUtil.getStorageFile(dataPaths.getTargetDataRoot(target), CRUNCH_STATE_STORAGE);
+    final AndroidPngCrunchCache crunchCache = new AndroidPngCrunchCache(AndroidJpsUtil.getPngCrunchCacheDir(dataPaths));
+    final AndroidPngCrunchCache.Result crunchResult = crunchCache.crunch(androidTarget, inputDirs, resCacheDir, crunchStateFile);
+
+    AndroidJpsUtil.addMessages(context, crunchResult.getMessages(), BUILDER_NAME, module.getName());
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("[" + module.getName() + "] PNG crunching: " + crunchResult.getCrunchedCount() + " image(s) crunched in " +
+                crunchResult.getAaptRunCount() + " aapt run(s), " + crunchResult.getReusedCount() + " reused from cache, " +
+                crunchResult.getUpToDateCount() + " up to date");
+    }
+    final boolean success = crunchResult.isSuccessful();
 
     if (success) {
       final Map<String, File> outputFiles = new HashMap<String, File>();
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.android.util.AndroidCompilerMessageKind;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+public class AndroidPngCrunchCacheTest extends TestCase {
+  private static final String TOOL_ID = "25.0.0";
+  private static final String CRUNCHED_PREFIX = "crunched ";
+
+  private File myTempDir;
+  private File myCacheDir;
+  private File myResDir;
+  private File myOutputDir;
+  private File myStateFile;
+  private FakeCruncher myCruncher;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myTempDir = FileUtil.createTempDirectory("png_crunch_cache", null);
+    myCacheDir = new File(myTempDir, "cache");
+    myResDir = new File(myTempDir, "res");
+    myOutputDir = new File(myTempDir, "out");
+    myStateFile = new File(myTempDir, "crunch_state");
+    myCruncher = new FakeCruncher();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myTempDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testOnlyChangedImagesAreCrunched() throws IOException {
+    final File first = createImage(myResDir, "drawable/first.png", "first");
+    final File second = createImage(myResDir, "drawable/second.png", "second");
+
+    AndroidPngCrunchCache.Result result = crunch();
+    assertCounts(result, 2, 1, 0, 0);
+    assertEquals(Arrays.asList("drawable/first.png", "drawable/second.png"), myCruncher.getCrunched());
+    assertOutput("drawable/first.png", "first");
+    assertOutput("drawable/second.png", "second");
+    assertTrue(myStateFile.isFile());
+
+    // Nothing changed: the state file tells that the outputs are up to date
+    result = crunch();
+    assertCounts(result, 0, 0, 0, 2);
+    assertTrue(myCruncher.getCrunched().isEmpty());
+
+    // Touched without changing the content: the image is hashed again and copied from the cache
+    assertTrue(first.setLastModified(first.lastModified() + 2000));
+    result = crunch();
+    assertCounts(result, 0, 0, 1, 1);
+    assertTrue(myCruncher.getCrunched().isEmpty());
+
+    // Changed content: only that image is crunched
+    FileUtil.writeToFile(second, "changed");
+    assertTrue(second.setLastModified(second.lastModified() + 4000));
+    result = crunch();
+    assertCounts(result, 1, 1, 0, 1);
+    assertEquals(Collections.singletonList("drawable/second.png"), myCruncher.getCrunched());
+    assertOutput("drawable/first.png", "first");
+    assertOutput("drawable/second.png", "changed");
+  }
+
+  public void testCacheIsSharedBetweenModules() throws IOException {
+    createImage(myResDir, "drawable/icon.png", "icon");
+    assertCounts(crunch(), 1, 1, 0, 0);
+
+    // Another module with the same image, e.g. from a shared library
+    final File otherResDir = new File(myTempDir, "other_res");
+    final File otherOutputDir = new File(myTempDir, "other_out");
+    createImage(otherResDir, "drawable-hdpi/icon.png", "icon");
+    final AndroidPngCrunchCache.Result result = new AndroidPngCrunchCache(myCacheDir).crunch(
+      myCruncher, TOOL_ID, Collections.singletonList(otherResDir.getPath()), otherOutputDir, new File(myTempDir, "other_state"));
+    assertCounts(result, 0, 0, 1, 0);
+    assertEquals(CRUNCHED_PREFIX + "icon", FileUtil.loadFile(new File(otherOutputDir, "drawable-hdpi/icon.png")));
+
+    // Images crunched by another aapt version are not reused
+    FileUtil.delete(otherOutputDir);
+    final AndroidPngCrunchCache.Result otherToolResult = new AndroidPngCrunchCache(myCacheDir).crunch(
+      myCruncher, "26.0.0", Collections.singletonList(otherResDir.getPath()), otherOutputDir, new File(myTempDir, "other_state"));
+    assertCounts(otherToolResult, 1, 1, 0, 0);
+  }
+
+  public void testLostStateReusesCachedImages() throws IOException {
+    createImage(myResDir, "drawable/first.png", "first");
+    createImage(myResDir, "drawable/second.png", "second");
+    assertCounts(crunch(), 2, 1, 0, 0);
+
+    FileUtil.delete(myStateFile);
+    FileUtil.delete(myOutputDir);
+    assertCounts(crunch(), 0, 0, 2, 0);
+    assertOutput("drawable/first.png", "first");
+    assertOutput("drawable/second.png", "second");
+  }
+
+  public void testMissesAreCrunchedInBatches() throws IOException {
+    createImage(myResDir, "drawable/first.png", "first");
+    assertCounts(crunch(), 1, 1, 0, 0);
+
+    final int count = 64;
+    for (int i = 0; i < count; i++) {
+      createImage(myResDir, "drawable/image" + i + ".png", "image" + i);
+    }
+    final AndroidPngCrunchCache.Result result = crunch();
+    final int batchCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 2));
+    assertCounts(result, count, batchCount, 0, 1);
+    assertTrue(result.isSuccessful());
+    assertEquals(count, myCruncher.getCrunched().size());
+    assertEquals(count, new HashSet<String>(myCruncher.getCrunched()).size());
+    for (int i = 0; i < count; i++) {
+      assertOutput("drawable/image" + i + ".png", "image" + i);
+    }
+  }
+
+  public void testErrorsOfBatchesAreReported() throws IOException {
+    createImage(myResDir, "drawable/first.png", "first");
+    assertCounts(crunch(), 1, 1, 0, 0);
+
+    createImage(myResDir, "drawable/second.png", "second");
+    createImage(myResDir, "drawable/broken.png", "broken");
+    myCruncher.myFailingPath = "drawable/broken.png";
+    final AndroidPngCrunchCache.Result result = crunch();
+    assertFalse(result.isSuccessful());
+    assertEquals(Collections.singletonList("Cannot crunch drawable/broken.png"),
+                 result.getMessages().get(AndroidCompilerMessageKind.ERROR));
+    // The state is dropped so that the next build checks all images again
+    assertFalse(myStateFile.exists());
+  }
+
+  public void testCruncherExceptionIsRethrown() throws IOException {
+    createImage(myResDir, "drawable/first.png", "first");
+    assertCounts(crunch(), 1, 1, 0, 0);
+
+    createImage(myResDir, "drawable/second.png", "second");
+    final IOException exception = new IOException("aapt not found");
+    try {
+      new AndroidPngCrunchCache(myCacheDir).crunch(new AndroidPngCrunchCache.Cruncher() {
+        @NotNull
+        @Override
+        public Map<AndroidCompilerMessageKind, List<String>> crunch(@NotNull List<String> resPaths, @NotNull String outputPath)
+          throws IOException {
+          throw exception;
+        }
+      }, TOOL_ID, Collections.singletonList(myResDir.getPath()), myOutputDir, myStateFile);
+      fail();
+    }
+    catch (IOException e) {
+      assertSame(exception, e);
+    }
+  }
+
+  public void testPruneDeletesLeastRecentlyUsedEntries() throws IOException {
+    final long now = System.currentTimeMillis();
+    final File oldest = createEntry("aa", now - 40000);
+    final File old = createEntry("bb", now - 30000);
+    final File recent = createEntry("cc", now - 20000);
+    final File newest = createEntry("dd", now - 10000);
+
+    // 4000 bytes cached for at most 3000: entries are deleted until 2250 bytes are left
+    new AndroidPngCrunchCache(myCacheDir, 3000).prune();
+    assertFalse(oldest.exists());
+    assertFalse(old.exists());
+    assertTrue(recent.exists());
+    assertTrue(newest.exists());
+  }
+
+  public void testPruneKeepsCacheWithinLimit() throws IOException {
+    final long now = System.currentTimeMillis();
+    final File first = createEntry("aa", now - 20000);
+    final File second = createEntry("bb", now - 10000);
+
+    new AndroidPngCrunchCache(myCacheDir, 2000).prune();
+    assertTrue(first.exists());
+    assertTrue(second.exists());
+  }
+
+  @NotNull
+  private AndroidPngCrunchCache.Result crunch() throws IOException {
+    myCruncher.getCrunched().clear();
+    return new AndroidPngCrunchCache(myCacheDir).crunch(myCruncher, TOOL_ID, Collections.singletonList(myResDir.getPath()),
+                                                        myOutputDir, myStateFile);
+  }
+
+  private static void assertCounts(@NotNull AndroidPngCrunchCache.Result result, int crunched, int aaptRuns, int reused, int upToDate) {
+    assertEquals(crunched, result.getCrunchedCount());
+    assertEquals(aaptRuns, result.getAaptRunCount());
+    assertEquals(reused, result.getReusedCount());
+    assertEquals(upToDate, result.getUpToDateCount());
+  }
+
+  private void assertOutput(@NotNull String relativePath, @NotNull String content) throws IOException {
+    assertEquals(CRUNCHED_PREFIX + content, FileUtil.loadFile(new File(myOutputDir, relativePath)));
+  }
+
+  @NotNull
+  private static File createImage(@NotNull File resDir, @NotNull String relativePath, @NotNull String content) throws IOException {
+    final File image = new File(resDir, relativePath);
+    FileUtil.writeToFile(image, content);
+    return image;
+  }
+
+  @NotNull
+  private File createEntry(@NotNull String key, long lastUsed) throws IOException {
+    final File entry = new File(new File(myCacheDir, key), key + ".png");
+    FileUtil.writeToFile(entry, new byte[1000]);
+    assertTrue(entry.setLastModified(lastUsed));
+    return entry;
+  }
+
+  /**
+   * Prefixes the content of the images instead of running aapt, and records which images it was asked to crunch.
+   */
+  private static class FakeCruncher implements AndroidPngCrunchCache.Cruncher {
+    private final List<String> myCrunched = Collections.synchronizedList(new ArrayList<String>());
+    private volatile String myFailingPath;
+
+    @NotNull
+    @Override
+    public Map<AndroidCompilerMessageKind, List<String>> crunch(@NotNull List<String> resPaths, @NotNull String outputPath)
+      throws IOException {
+      final Map<AndroidCompilerMessageKind, List<String>> messages = new HashMap<AndroidCompilerMessageKind, List<String>>();
+      final List<String> errors = new ArrayList<String>();
+      messages.put(AndroidCompilerMessageKind.ERROR, errors);
+
+      for (String resPath : resPaths) {
+        final File resDir = new File(resPath);
+        for (File image : FileUtil.findFilesByMask(Pattern.compile(".*\\.png"), resDir)) {
+          final String relativePath = FileUtil.toSystemIndependentName(FileUtil.getRelativePath(resDir, image));
+          if (relativePath.equals(myFailingPath)) {
+            errors.add("Cannot crunch " + relativePath);
+            continue;
+          }
+          myCrunched.add(relativePath);
+          FileUtil.writeToFile(new File(outputPath, relativePath), CRUNCHED_PREFIX + FileUtil.loadFile(image));
+        }
+      }
+      return messages;
+    }
+
+    /**
+     * Returns the images crunched since the list was last cleared, sorted by path.
+     */
+    @NotNull
+    List<String> getCrunched() {
+      synchronized (myCrunched) {
+        Collections.sort(myCrunched);
+      }
+      return myCrunched;
+    }
+  }
+}
@@ -73,6 +73,12 @@ public class IntellijProfilerServices implements IdeProfilerServices {
     return ApplicationManager.getApplication()::executeOnPooledThread;
   }
 
+  @NotNull
+  @Override
+  public Executor getDataFetchExecutor() {
+    return ApplicationManager.getApplication()::executeOnPooledThread;
+  }
+
   @Override
   public void saveFile(@NotNull File file, @NotNull Consumer<FileOutputStream> fileOutputStreamConsumer, @Nullable Runnable postRunnable) {
     File parentDir = file.getParentFile();
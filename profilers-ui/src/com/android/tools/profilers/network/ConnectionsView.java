@@ -185,6 +185,8 @@ final class ConnectionsView {
 
   private void customizeConnectionsTable() {
     myConnectionsTable.setAutoCreateRowSorter(true);
+    // Rows of open connections are updated in place while polling, and must move if they are sorted by a value that changed
+    ((DefaultRowSorter<?, ?>)myConnectionsTable.getRowSorter()).setSortsOnUpdates(true);
     myConnectionsTable.getColumnModel().getColumn(Column.NAME.ordinal()).setCellRenderer(new BorderlessTableCellRenderer());
     myConnectionsTable.getColumnModel().getColumn(Column.SIZE.ordinal()).setCellRenderer(new SizeRenderer());
     myConnectionsTable.getColumnModel().getColumn(Column.TYPE.ordinal()).setCellRenderer(new BorderlessTableCellRenderer());
@@ -255,10 +257,35 @@ final class ConnectionsView {
     @NotNull private List<HttpData> myDataList = new ArrayList<>();
 
     private ConnectionsTableModel(HttpDataFetcher httpDataFetcher) {
-      httpDataFetcher.addListener(httpDataList -> {
-        myDataList = httpDataList;
+      httpDataFetcher.addListener(this::httpDataChanged);
+    }
+
+    /**
+     * While connections are open, each poll returns the same connections plus possibly some new ones at the end, so only the rows
+     * whose data changed are updated and the new ones inserted. Any other change, e.g. after the range moved, updates all rows.
+     */
+    private void httpDataChanged(@NotNull List<HttpData> dataList) {
+      List<HttpData> oldList = myDataList;
+      myDataList = dataList;
+      if (oldList.isEmpty() || dataList.size() < oldList.size()) {
         fireTableDataChanged();
-      });
+        return;
+      }
+      for (int i = 0; i < oldList.size(); ++i) {
+        if (oldList.get(i).getId() != dataList.get(i).getId()) {
+          fireTableDataChanged();
+          return;
+        }
+      }
+
+      for (int i = 0; i < oldList.size(); ++i) {
+        if (oldList.get(i) != dataList.get(i)) {
+          fireTableRowsUpdated(i, i);
+        }
+      }
+      if (dataList.size() > oldList.size()) {
+        fireTableRowsInserted(oldList.size(), dataList.size() - 1);
+      }
     }
 
     @Override
@@ -370,13 +397,33 @@ final class ConnectionsView {
 
     @Override
     public void tableChanged(TableModelEvent e) {
-      myConnectionsCharts.clear();
       ConnectionsTableModel model = (ConnectionsTableModel)myTable.getModel();
-      for (int i = 0; i < model.getRowCount(); ++i) {
-        ConnectionsStateChart chart = new ConnectionsStateChart(model.getHttpData(i), myRange);
-        chart.setHeightGap(0.3f);
-        myConnectionsCharts.add(chart);
+      int firstRow = e.getFirstRow();
+      int lastRow = e.getLastRow();
+      boolean singleRows = firstRow != TableModelEvent.HEADER_ROW && lastRow < model.getRowCount();
+      if (singleRows && e.getType() == TableModelEvent.UPDATE) {
+        for (int i = firstRow; i <= lastRow; ++i) {
+          myConnectionsCharts.set(i, createChart(model.getHttpData(i)));
+        }
       }
+      else if (singleRows && e.getType() == TableModelEvent.INSERT && firstRow == myConnectionsCharts.size()) {
+        for (int i = firstRow; i <= lastRow; ++i) {
+          myConnectionsCharts.add(createChart(model.getHttpData(i)));
+        }
+      }
+      else {
+        myConnectionsCharts.clear();
+        for (int i = 0; i < model.getRowCount(); ++i) {
+          myConnectionsCharts.add(createChart(model.getHttpData(i)));
+        }
+      }
+    }
+
+    @NotNull
+    private ConnectionsStateChart createChart(@NotNull HttpData data) {
+      ConnectionsStateChart chart = new ConnectionsStateChart(data, myRange);
+      chart.setHeightGap(0.3f);
+      return chart;
     }
 
     @NotNull
@@ -120,6 +120,7 @@ final class ThreadsView {
     }
 
     private void httpDataChanged(List<HttpData> dataList) {
+      List<List<HttpData>> oldThreads = new ArrayList<>(myThreads);
       myThreads.clear();
       if (dataList.isEmpty()) {
         fireTableDataChanged();
@@ -146,7 +147,45 @@ final class ThreadsView {
         return (nameCompare != 0) ? nameCompare : Long.compare(thread1.getId(), thread2.getId());
       }).forEach(myThreads::add);
 
-      fireTableDataChanged();
+      fireChangedRows(oldThreads);
+    }
+
+    /**
+     * If the threads are the same as before, e.g. when polling while connections are open, only updates the rows whose connections
+     * changed. Otherwise updates all rows.
+     */
+    private void fireChangedRows(@NotNull List<List<HttpData>> oldThreads) {
+      if (oldThreads.size() != myThreads.size()) {
+        fireTableDataChanged();
+        return;
+      }
+      for (int i = 0; i < myThreads.size(); ++i) {
+        if (getThreadId(oldThreads.get(i)) != getThreadId(myThreads.get(i))) {
+          fireTableDataChanged();
+          return;
+        }
+      }
+      for (int i = 0; i < myThreads.size(); ++i) {
+        if (!isSameData(oldThreads.get(i), myThreads.get(i))) {
+          fireTableRowsUpdated(i, i);
+        }
+      }
+    }
+
+    private static long getThreadId(@NotNull List<HttpData> thread) {
+      return thread.get(0).getJavaThreads().get(0).getId();
+    }
+
+    private static boolean isSameData(@NotNull List<HttpData> oldList, @NotNull List<HttpData> newList) {
+      if (oldList.size() != newList.size()) {
+        return false;
+      }
+      for (int i = 0; i < oldList.size(); ++i) {
+        if (oldList.get(i) != newList.get(i)) {
+          return false;
+        }
+      }
+      return true;
     }
 
     @Override
@@ -185,32 +224,45 @@ final class ThreadsView {
 
     @Override
     public void tableChanged(TableModelEvent e) {
-      updateRows();
+      if (e.getType() == TableModelEvent.UPDATE && e.getFirstRow() != TableModelEvent.HEADER_ROW &&
+          e.getLastRow() < myRows.size() && myRows.size() == myTable.getModel().getRowCount()) {
+        for (int index = e.getFirstRow(); index <= e.getLastRow(); ++index) {
+          myRows.set(index, createRow(index));
+        }
+      }
+      else {
+        updateRows();
+      }
     }
 
     private void updateRows() {
       myRows.clear();
       for (int index = 0; index < myTable.getModel().getRowCount(); ++index) {
-        List<HttpData> data = (List<HttpData>)myTable.getModel().getValueAt(index, 1);
-        assert !data.isEmpty();
-
-        AxisComponent axisTicks = createAxis();
-        axisTicks.setMarkerLengths(myTable.getRowHeight(), 0);
-        axisTicks.setShowLabels(false);
-
-        JPanel panel = new JPanel(new TabularLayout("*", "*"));
-        panel.setPreferredSize(new Dimension((int)panel.getPreferredSize().getWidth(), myTable.getRowHeight()));
+        myRows.add(createRow(index));
+      }
+    }
 
-        if (index == 0) {
-          AxisComponent axisLabels = createAxis();
-          axisLabels.setMarkerLengths(0, 0);
-          axisLabels.setShowLabels(true);
-          panel.add(axisLabels, new TabularLayout.Constraint(0, 0));
-        }
-        panel.add(new ConnectionsInfoComponent(myTable, data, myStage), new TabularLayout.Constraint(0, 0));
-        panel.add(axisTicks, new TabularLayout.Constraint(0, 0));
-        myRows.add(panel);
+    @NotNull
+    private JComponent createRow(int index) {
+      List<HttpData> data = (List<HttpData>)myTable.getModel().getValueAt(index, 1);
+      assert !data.isEmpty();
+
+      AxisComponent axisTicks = createAxis();
+      axisTicks.setMarkerLengths(myTable.getRowHeight(), 0);
+      axisTicks.setShowLabels(false);
+
+      JPanel panel = new JPanel(new TabularLayout("*", "*"));
+      panel.setPreferredSize(new Dimension((int)panel.getPreferredSize().getWidth(), myTable.getRowHeight()));
+
+      if (index == 0) {
+        AxisComponent axisLabels = createAxis();
+        axisLabels.setMarkerLengths(0, 0);
+        axisLabels.setShowLabels(true);
+        panel.add(axisLabels, new TabularLayout.Constraint(0, 0));
       }
+      panel.add(new ConnectionsInfoComponent(myTable, data, myStage), new TabularLayout.Constraint(0, 0));
+      panel.add(axisTicks, new TabularLayout.Constraint(0, 0));
+      return panel;
     }
 
     @Override
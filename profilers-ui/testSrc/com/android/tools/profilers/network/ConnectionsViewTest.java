@@ -20,13 +20,17 @@ import com.android.tools.adtui.chart.statechart.StateChart;
 import com.android.tools.adtui.model.FakeTimer;
 import com.android.tools.profilers.*;
 import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -43,8 +47,8 @@ public class ConnectionsViewTest {
       .add(FakeNetworkService.newHttpData(4, 21, 25, 34))
       .build();
 
-  @Rule public FakeGrpcChannel myGrpcChannel = new FakeGrpcChannel("ConnectionsViewTest", new FakeProfilerService(false),
-                                                                   FakeNetworkService.newBuilder().setHttpDataList(FAKE_DATA).build());
+  private final FakeNetworkService myNetworkService = FakeNetworkService.newBuilder().setHttpDataList(FAKE_DATA).build();
+  @Rule public FakeGrpcChannel myGrpcChannel = new FakeGrpcChannel("ConnectionsViewTest", new FakeProfilerService(false), myNetworkService);
   private NetworkProfilerStageView myStageView;
 
   @Before
@@ -133,6 +137,48 @@ public class ConnectionsViewTest {
     assertThat(table.convertRowIndexToView(1), is(0));
   }
 
+  @Test
+  public void openConnectionsAreUpdatedRowByRow() throws Exception {
+    HttpData open = FakeNetworkService.newHttpData(5, 40, 0, 0);
+    myNetworkService.setHttpDataList(ImmutableList.<HttpData>builder().addAll(FAKE_DATA).add(open).build());
+    myStageView.getTimeline().getSelectionRange().set(0, TimeUnit.SECONDS.toMicros(100));
+    ConnectionsView view = new ConnectionsView(myStageView);
+    JTable table = getConnectionsTable(view);
+    assertThat(table.getRowCount(), is(5));
+
+    List<TableModelEvent> events = new ArrayList<>();
+    table.getModel().addTableModelListener(events::add);
+
+    // The open connection is queried again on each poll, new connections are appended
+    HttpData added = FakeNetworkService.newHttpData(6, 50, 51, 52);
+    myNetworkService.setHttpDataList(ImmutableList.<HttpData>builder().addAll(FAKE_DATA).add(open, added).build());
+    myStageView.getStage().getHttpDataFetcher().update(TimeUnit.SECONDS.toNanos(1));
+
+    assertThat(table.getRowCount(), is(6));
+    assertThat(events.size(), is(2));
+    assertRowsEvent(events.get(0), TableModelEvent.UPDATE, 4, 4);
+    assertRowsEvent(events.get(1), TableModelEvent.INSERT, 5, 5);
+  }
+
+  @Test
+  public void updatedConnectionsAreSortedAgain() throws Exception {
+    HttpData open = FakeNetworkService.newHttpData(5, 40, 0, 0);
+    myNetworkService.setHttpDataList(ImmutableList.<HttpData>builder().addAll(FAKE_DATA).add(open).build());
+    myStageView.getTimeline().getSelectionRange().set(0, TimeUnit.SECONDS.toMicros(100));
+    ConnectionsView view = new ConnectionsView(myStageView);
+    JTable table = getConnectionsTable(view);
+
+    // Times: 1, 2, 5, 13 and the open connection, which has no time yet and comes first
+    table.getRowSorter().toggleSortOrder(ConnectionsView.Column.TIME.ordinal());
+    assertThat(table.convertRowIndexToView(4), is(0));
+
+    // Once it completes, it takes the longest and moves to the end
+    HttpData completed = FakeNetworkService.newHttpData(5, 40, 60, 90);
+    myNetworkService.setHttpDataList(ImmutableList.<HttpData>builder().addAll(FAKE_DATA).add(completed).build());
+    myStageView.getStage().getHttpDataFetcher().update(TimeUnit.SECONDS.toNanos(1));
+    assertThat(table.convertRowIndexToView(4), is(4));
+  }
+
   @Test
   public void testTableRowHighlight() {
     myStageView.getTimeline().getSelectionRange().set(0, TimeUnit.SECONDS.toMicros(100));
@@ -173,6 +219,12 @@ public class ConnectionsViewTest {
    * class. However, for tests, it is useful to inspect the contents of the table to verify it was
    * updated.
    */
+  private static void assertRowsEvent(@NotNull TableModelEvent event, int type, int firstRow, int lastRow) {
+    assertThat(event.getType(), is(type));
+    assertThat(event.getFirstRow(), is(firstRow));
+    assertThat(event.getLastRow(), is(lastRow));
+  }
+
   private static JTable getConnectionsTable(ConnectionsView view) {
     return (JTable)view.getComponent();
   }
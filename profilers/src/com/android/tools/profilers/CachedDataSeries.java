@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.Range;
+import com.android.tools.adtui.model.SeriesData;
+import com.intellij.openapi.diagnostic.Logger;
+import io.grpc.StatusRuntimeException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link DataSeries} that caches the data of a series whose queries are RPCs to the datastore, and runs those queries on a
+ * separate executor (see {@link IdeProfilerServices#getDataFetchExecutor()}) instead of the thread asking for the data, which is
+ * typically the UI thread during an {@link com.android.tools.adtui.model.updater.Updater} tick.
+ * <p>
+ * Requests are served from the cache. When the cache doesn't cover the requested range, a fetch is started and the data from the
+ * previous fetch is returned until it completes. At most one fetch is in flight at any time.
+ * <p>
+ * In incremental mode, only the parts of the requested range that aren't cached yet are fetched, which is only valid for series
+ * whose existing data never changes, like samples. Since samples may reach the datastore after more recent ones, the range added by
+ * the previous fetch is queried again along with the new one. Data before the requested range is dropped from the cache, so that
+ * it doesn't grow while live data streams in. Other series fetch the whole requested range every time.
+ */
+public final class CachedDataSeries<T> implements DataSeries<T> {
+  @NotNull private final String myName;
+  @NotNull private final DataSeries<T> mySource;
+  @NotNull private final Executor myExecutor;
+  private final boolean myIncremental;
+
+  @NotNull private volatile CachedData<T> myData = new CachedData<>(Collections.emptyList(), Double.NaN, Double.NaN, Double.NaN);
+  private final AtomicBoolean myFetching = new AtomicBoolean();
+
+  // Only updated by the fetch in flight
+  private volatile int myFetchCount;
+  private volatile long myLastFetchTimeNs;
+  private volatile long myTotalFetchTimeNs;
+
+  /**
+   * @param name        name of the series, used when reporting the time spent fetching data
+   * @param source      the series to fetch the data from
+   * @param executor    executor to fetch the data on
+   * @param incremental whether data already fetched can be kept when fetching more, i.e. whether it never changes
+   */
+  public CachedDataSeries(@NotNull String name, @NotNull DataSeries<T> source, @NotNull Executor executor, boolean incremental) {
+    myName = name;
+    mySource = source;
+    myExecutor = executor;
+    myIncremental = incremental;
+  }
+
+  @Override
+  public List<SeriesData<T>> getDataForXRange(@NotNull Range xRange) {
+    double min = xRange.getMin();
+    double max = xRange.getMax();
+    CachedData<T> data = myData;
+    if (!myIncremental || !data.covers(min, max)) {
+      requestFetch(min, max);
+      // If the executor runs the fetch synchronously, return the new data right away
+      data = myData;
+    }
+    if (!myIncremental && data.myMin == min && data.myMax == max) {
+      return new ArrayList<>(data.myData);
+    }
+    return data.getDataForXRange(min, max);
+  }
+
+  /**
+   * Returns the number of fetches completed so far.
+   */
+  public int getFetchCount() {
+    return myFetchCount;
+  }
+
+  /**
+   * Returns the time taken by the last fetch, in nanoseconds.
+   */
+  public long getLastFetchTimeNs() {
+    return myLastFetchTimeNs;
+  }
+
+  /**
+   * Returns the average time taken by a fetch, in nanoseconds.
+   */
+  public long getAverageFetchTimeNs() {
+    int count = myFetchCount;
+    return count == 0 ? 0 : myTotalFetchTimeNs / count;
+  }
+
+  private void requestFetch(double min, double max) {
+    if (!myFetching.compareAndSet(false, true)) {
+      return;
+    }
+    myExecutor.execute(() -> {
+      long start = System.nanoTime();
+      try {
+        myData = fetch(myData, min, max);
+      }
+      catch (StatusRuntimeException e) {
+        // Keep returning the data fetched so far; the next request will try again
+        getLogger().debug("Could not fetch data for " + myName, e);
+      }
+      finally {
+        recordFetchTime(System.nanoTime() - start);
+        myFetching.set(false);
+      }
+    });
+  }
+
+  @NotNull
+  private CachedData<T> fetch(@NotNull CachedData<T> cached, double min, double max) {
+    if (!myIncremental || cached.myData.isEmpty() || max < cached.myMin || min > cached.myMax) {
+      // Nothing can be reused. For an empty cache, also fetch the range it used to cover, in case data has arrived since then.
+      if (myIncremental && cached.myData.isEmpty() && !Double.isNaN(cached.myMin)) {
+        min = Math.min(min, cached.myMin);
+        max = Math.max(max, cached.myMax);
+      }
+      return new CachedData<>(mySource.getDataForXRange(new Range(min, max)), min, max, max);
+    }
+
+    List<SeriesData<T>> data = cached.myData;
+    List<SeriesData<T>> merged = new ArrayList<>(data.size() + 16);
+    if (min < cached.myMin) {
+      long firstX = data.get(0).x;
+      for (SeriesData<T> point : mySource.getDataForXRange(new Range(min, firstX))) {
+        if (point.x < firstX) {
+          merged.add(point);
+        }
+      }
+    }
+    double recentMin = cached.myRecentMin;
+    if (max > cached.myMax) {
+      // Query the range added by the previous fetch again, and not only from its last point on, since data for the most recent
+      // timestamps may only have reached the datastore after the previous fetch, possibly after more recent data
+      double queryMin = Math.min(cached.myRecentMin, data.get(data.size() - 1).x);
+      merged.addAll(data.subList(0, cached.firstIndexAfter(queryMin, false)));
+      for (SeriesData<T> point : mySource.getDataForXRange(new Range(queryMin, max))) {
+        if (point.x >= queryMin) {
+          merged.add(point);
+        }
+      }
+      recentMin = cached.myMax;
+    }
+    else {
+      merged.addAll(data);
+    }
+
+    // Drop the data before the requested range, except for the closest point needed to draw the data up to the edge of the range
+    int firstKept = Math.max(0, CachedData.firstIndexAfter(merged, min, false) - 1);
+    if (firstKept > 0) {
+      merged = new ArrayList<>(merged.subList(firstKept, merged.size()));
+    }
+    return new CachedData<>(merged, firstKept > 0 ? min : Math.min(min, cached.myMin), Math.max(max, cached.myMax), recentMin);
+  }
+
+  private void recordFetchTime(long timeNs) {
+    myLastFetchTimeNs = timeNs;
+    myTotalFetchTimeNs += timeNs;
+    myFetchCount++;
+    if (getLogger().isDebugEnabled()) {
+      getLogger().debug(String.format("Fetched data for %1$s in %2$d ms (average: %3$d ms)", myName,
+                                      TimeUnit.NANOSECONDS.toMillis(timeNs), TimeUnit.NANOSECONDS.toMillis(getAverageFetchTimeNs())));
+    }
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(CachedDataSeries.class);
+  }
+
+  /**
+   * Immutable snapshot of the cached data, sorted by x, along with the range that was fetched to get it.
+   */
+  private static final class CachedData<T> {
+    @NotNull private final List<SeriesData<T>> myData;
+    private final double myMin;
+    private final double myMax;
+    /**
+     * Start of the range added by the last fetch, which is queried again by the next one.
+     */
+    private final double myRecentMin;
+
+    CachedData(@NotNull List<SeriesData<T>> data, double min, double max, double recentMin) {
+      myData = data;
+      myMin = min;
+      myMax = max;
+      myRecentMin = recentMin;
+    }
+
+    boolean covers(double min, double max) {
+      return myMin <= min && max <= myMax;
+    }
+
+    /**
+     * Returns the data within the given range, plus the closest point on each side of it so that the data can be drawn up to the
+     * edges of the range.
+     */
+    @NotNull
+    List<SeriesData<T>> getDataForXRange(double min, double max) {
+      int from = Math.max(0, firstIndexAfter(min, false) - 1);
+      int to = Math.min(myData.size(), firstIndexAfter(max, true) + 1);
+      return from < to ? new ArrayList<>(myData.subList(from, to)) : new ArrayList<>();
+    }
+
+    /**
+     * Returns the index of the first point whose x is greater than (or equal to, if not {@code strict}) the given value.
+     */
+    private int firstIndexAfter(double x, boolean strict) {
+      return firstIndexAfter(myData, x, strict);
+    }
+
+    private static int firstIndexAfter(@NotNull List<? extends SeriesData<?>> data, double x, boolean strict) {
+      int low = 0;
+      int high = data.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        long midX = data.get(mid).x;
+        if (midX < x || strict && midX == x) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -40,6 +40,13 @@ public interface IdeProfilerServices {
   @NotNull
   Executor getPoolExecutor();
 
+  /**
+   * Executor to run the RPCs that fetch the data displayed in the timeline (see {@link CachedDataSeries}), so that a busy
+   * datastore doesn't freeze the UI.
+   */
+  @NotNull
+  Executor getDataFetchExecutor();
+
   /**
    * Saves a file to the file system and have IDE internal state reflect this file addition.
    *
@@ -44,6 +44,8 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -101,6 +103,12 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
 
   private long myRefreshDevices;
 
+  /** Whether the devices and processes are being queried in the background, see {@link #update(long)} */
+  private final AtomicBoolean myFetchingDevices = new AtomicBoolean();
+
+  /** The result of the last devices and processes query, waiting to be applied by the next {@link #update(long)} */
+  private final AtomicReference<DevicesQueryResult> myFetchedDevices = new AtomicReference<>();
+
   private boolean myConnected;
 
   public StudioProfilers(ProfilerClient client, @NotNull IdeProfilerServices ideServices) {
@@ -172,38 +180,68 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
   @Override
   public void update(long elapsedNs) {
     myRefreshDevices += elapsedNs;
-    if (myRefreshDevices < TimeUnit.SECONDS.toNanos(1)) {
-      return;
+    if (myRefreshDevices >= TimeUnit.SECONDS.toNanos(1) && myFetchingDevices.compareAndSet(false, true)) {
+      myRefreshDevices = 0;
+      // Query the devices and processes off the update thread, so that a busy datastore doesn't freeze the UI
+      int lastProcessId = myProcess == null ? 0 : myProcess.getPid();
+      myIdeServices.getDataFetchExecutor().execute(() -> {
+        try {
+          myFetchedDevices.set(new DevicesQueryResult(fetchProcesses(lastProcessId), null));
+        }
+        catch (StatusRuntimeException e) {
+          myFetchedDevices.set(new DevicesQueryResult(null, e));
+        }
+        finally {
+          myFetchingDevices.set(false);
+        }
+      });
     }
-    myRefreshDevices = 0;
 
+    // The query may already be complete if the executor runs it synchronously
+    DevicesQueryResult result = myFetchedDevices.getAndSet(null);
+    if (result != null) {
+      updateDevices(result);
+    }
+  }
+
+  /**
+   * Queries the devices and their processes. Called on the {@link IdeProfilerServices#getDataFetchExecutor() data fetch executor}.
+   */
+  @NotNull
+  private Map<Profiler.Device, List<Profiler.Process>> fetchProcesses(int lastProcessId) {
+    Profiler.GetDevicesResponse response = myClient.getProfilerClient().getDevices(Profiler.GetDevicesRequest.getDefaultInstance());
+    Set<Profiler.Device> devices = new HashSet<>(response.getDeviceList());
+    Map<Profiler.Device, List<Profiler.Process>> newProcesses = new HashMap<>();
+    for (Profiler.Device device : devices) {
+      Common.Session session = Common.Session.newBuilder()
+        .setDeviceSerial(device.getSerial())
+        .setBootId(device.getBootId())
+        .build();
+      Profiler.GetProcessesRequest request = Profiler.GetProcessesRequest.newBuilder().setSession(session).build();
+      Profiler.GetProcessesResponse processes = myClient.getProfilerClient().getProcesses(request);
+
+      List<Profiler.Process> processList = processes.getProcessList()
+        .stream()
+        .filter(process -> process.getState() == Profiler.Process.State.ALIVE ||
+                           process.getPid() == lastProcessId)
+        .collect(Collectors.toList());
+
+      newProcesses.put(device, processList);
+    }
+    return newProcesses;
+  }
+
+  private void updateDevices(@NotNull DevicesQueryResult result) {
     try {
-      Profiler.GetDevicesResponse response = myClient.getProfilerClient().getDevices(Profiler.GetDevicesRequest.getDefaultInstance());
+      if (result.myError != null) {
+        throw result.myError;
+      }
       if (!myConnected) {
         this.changed(ProfilerAspect.CONNECTION);
       }
 
       myConnected = true;
-      Set<Profiler.Device> devices = new HashSet<>(response.getDeviceList());
-      Map<Profiler.Device, List<Profiler.Process>> newProcesses = new HashMap<>();
-      for (Profiler.Device device : devices) {
-        Common.Session session = Common.Session.newBuilder()
-          .setDeviceSerial(device.getSerial())
-          .setBootId(device.getBootId())
-          .build();
-        Profiler.GetProcessesRequest request = Profiler.GetProcessesRequest.newBuilder().setSession(session).build();
-        Profiler.GetProcessesResponse processes = myClient.getProfilerClient().getProcesses(request);
-
-        int lastProcessId = myProcess == null ? 0 : myProcess.getPid();
-        List<Profiler.Process> processList = processes.getProcessList()
-          .stream()
-          .filter(process -> process.getState() == Profiler.Process.State.ALIVE ||
-                             process.getPid() == lastProcessId)
-          .collect(Collectors.toList());
-
-        newProcesses.put(device, processList);
-      }
-
+      Map<Profiler.Device, List<Profiler.Process>> newProcesses = result.myProcesses;
       if (!newProcesses.equals(myProcesses)) {
         myProcesses = newProcesses;
         // Find and set preferred device
@@ -555,4 +593,14 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
       // will not happen
     }
   }
+
+  private static final class DevicesQueryResult {
+    @Nullable private final Map<Profiler.Device, List<Profiler.Process>> myProcesses;
+    @Nullable private final StatusRuntimeException myError;
+
+    DevicesQueryResult(@Nullable Map<Profiler.Device, List<Profiler.Process>> processes, @Nullable StatusRuntimeException error) {
+      myProcesses = processes;
+      myError = error;
+    }
+  }
 }
@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
+import com.android.tools.profilers.CachedDataSeries;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -30,7 +31,9 @@ public class CpuUsage extends LineChartModel {
     myCpuRange = new Range(0, 100);
     CpuUsageDataSeries series = new CpuUsageDataSeries(profilers.getClient().getCpuClient(), false, profilers.getProcessId(),
                                                        profilers.getSession());
-    myCpuSeries = new RangedContinuousSeries(getCpuSeriesLabel(), profilers.getTimeline().getViewRange(), myCpuRange, series);
+    CachedDataSeries<Long> cachedSeries =
+      new CachedDataSeries<>("CPU usage", series, profilers.getIdeServices().getDataFetchExecutor(), true);
+    myCpuSeries = new RangedContinuousSeries(getCpuSeriesLabel(), profilers.getTimeline().getViewRange(), myCpuRange, cachedSeries);
     add(myCpuSeries);
   }
 
@@ -21,6 +21,7 @@ import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.CpuProfiler;
 import com.android.tools.profiler.proto.CpuServiceGrpc;
+import com.android.tools.profilers.CachedDataSeries;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 
@@ -35,11 +36,19 @@ public final class ThreadStateDataSeries implements DataSeries<CpuProfilerStage.
   private final int myThreadId;
   private final CpuProfilerStage myStage;
 
+  /**
+   * Runs the queries off the calling thread. The states depend on the captures, which can change within ranges that were already
+   * fetched, so the whole range is fetched every time.
+   */
+  private final CachedDataSeries<CpuProfilerStage.ThreadState> myCache;
+
   public ThreadStateDataSeries(@NotNull CpuProfilerStage stage, int pid, Common.Session session, int tid) {
     myStage = stage;
     myProcessId = pid;
     myDeviceSerial = session;
     myThreadId = tid;
+    myCache = new CachedDataSeries<>("Thread " + tid + " states", this::fetchDataForXRange,
+                                     stage.getStudioProfilers().getIdeServices().getDataFetchExecutor(), false);
   }
 
   public int getProcessId() {
@@ -48,6 +57,11 @@ public final class ThreadStateDataSeries implements DataSeries<CpuProfilerStage.
 
   @Override
   public List<SeriesData<CpuProfilerStage.ThreadState>> getDataForXRange(Range xRange) {
+    return myCache.getDataForXRange(xRange);
+  }
+
+  @NotNull
+  private List<SeriesData<CpuProfilerStage.ThreadState>> fetchDataForXRange(@NotNull Range xRange) {
     // TODO Investigate if this is too slow. We can then have them share a common "series", and return a view to that series.
     ArrayList<SeriesData<CpuProfilerStage.ThreadState>> data = new ArrayList<>();
 
@@ -20,6 +20,7 @@ import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.profiler.proto.MemoryProfiler.MemoryData.MemorySample;
 import com.android.tools.profiler.proto.MemoryServiceGrpc;
+import com.android.tools.profilers.CachedDataSeries;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -43,7 +44,9 @@ public class MemoryUsage extends LineChartModel {
                                                       Function<MemorySample, Long> getter) {
     MemoryServiceGrpc.MemoryServiceBlockingStub client = profilers.getClient().getMemoryClient();
     MemoryDataSeries series = new MemoryDataSeries(client, profilers.getProcessId(), profilers.getSession(), getter);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series);
+    CachedDataSeries<Long> cachedSeries =
+      new CachedDataSeries<>("Memory " + name, series, profilers.getIdeServices().getDataFetchExecutor(), true);
+    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, cachedSeries);
   }
 
   @NotNull
@@ -62,6 +62,8 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   private final TIntObjectHashMap<LiveAllocationInstanceObject> myInstanceMap;
   private final TIntObjectHashMap<AllocationStack> myCallstackMap;
   private final TIntObjectHashMap<ThreadId> myThreadIdMap;
+  // Events received so far, up to myEventsEndTimeNs. Only accessed on myExecutorService.
+  private final LiveAllocationEventIndex myEventIndex;
 
   private final MemoryServiceBlockingStub myClient;
   private final Common.Session mySession;
@@ -97,6 +99,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     myInstanceMap = new TIntObjectHashMap<>();
     myCallstackMap = new TIntObjectHashMap<>();
     myThreadIdMap = new TIntObjectHashMap<>();
+    myEventIndex = new LiveAllocationEventIndex();
 
     myClient = client;
     mySession = session;
@@ -287,6 +290,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
                                       .setStartTime(myEventsEndTimeNs + 1).setEndTime(newEndTimeNs).build());
 
           myEventsEndTimeNs = Math.max(myEventsEndTimeNs, sampleResponse.getTimestamp());
+          myEventIndex.addEvents(sampleResponse.getEventsList(), myEventsEndTimeNs);
           if (newEndTimeNs > myEventsEndTimeNs + 1) {
             newEndTimeNs = myEventsEndTimeNs + 1;
             newStartTimeNs = Math.min(newStartTimeNs, newEndTimeNs);
@@ -326,18 +330,15 @@ public class LiveAllocationCaptureObject implements CaptureObject {
             continue;
           }
 
-          BatchAllocationSample sampleResponse =
-            myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
-                                      .setStartTime(startTimeNs).setEndTime(endTimeNs).build());
-
-          for (AllocationEvent event : sampleResponse.getEventsList()) {
-            if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
-              AllocationEvent.Allocation allocation = event.getAllocData();
-              LiveAllocationInstanceObject instance =
-                getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
-                                          allocation.getSize(), allocation.getHeapId());
+          // All the segments are before myEventsEndTimeNs, so their events are already in the index
+          int endIndex = myEventIndex.getFirstIndexAtOrAfter(endTimeNs);
+          for (int i = myEventIndex.getFirstIndexAtOrAfter(startTimeNs); i < endIndex; ++i) {
+            LiveAllocationInstanceObject instance =
+              getOrCreateInstanceObject(myEventIndex.getTag(i), myEventIndex.getClassTag(i), myEventIndex.getStackId(i),
+                                        myEventIndex.getThreadId(i), myEventIndex.getSize(i), myEventIndex.getHeapId(i));
+            if (myEventIndex.isAllocation(i)) {
               if (insideCurrentRange) {
-                instance.setAllocationTime(event.getTimestamp());
+                instance.setAllocationTime(myEventIndex.getTimestamp(i));
                 setAllocationList.add(instance);
               }
               else {
@@ -345,13 +346,9 @@ public class LiveAllocationCaptureObject implements CaptureObject {
                 resetAllocationList.add(instance);
               }
             }
-            else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
-              AllocationEvent.Deallocation deallocation = event.getFreeData();
-              LiveAllocationInstanceObject instance =
-                getOrCreateInstanceObject(deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
-                                          deallocation.getThreadId(), deallocation.getSize(), deallocation.getHeapId());
+            else {
               if (insideCurrentRange) {
-                instance.setDeallocTime(event.getTimestamp());
+                instance.setDeallocTime(myEventIndex.getTimestamp(i));
                 setDeallocationList.add(instance);
               }
               else {
@@ -359,9 +356,6 @@ public class LiveAllocationCaptureObject implements CaptureObject {
                 resetDeallocationList.add(instance);
               }
             }
-            else {
-              assert false;
-            }
           }
         }
 
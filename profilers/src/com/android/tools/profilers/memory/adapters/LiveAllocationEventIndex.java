@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationEvent;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Allocation and deallocation events of a live allocation capture, sorted by time and stored in primitive arrays, one per field.
+ * <p>
+ * Events are fetched from the datastore once, as time advances, and kept here so that changing the selection only has to look up
+ * the events of the time ranges that were added to or removed from it, instead of querying the datastore for them again. Keeping
+ * the fields in arrays rather than keeping the event protos costs a few dozen bytes per event.
+ */
+final class LiveAllocationEventIndex {
+  private final TLongArrayList myTimestamps = new TLongArrayList();
+  private final TIntArrayList myTags = new TIntArrayList();
+  private final TIntArrayList myClassTags = new TIntArrayList();
+  private final TIntArrayList myStackIds = new TIntArrayList();
+  private final TIntArrayList myThreadIds = new TIntArrayList();
+  private final TIntArrayList myHeapIds = new TIntArrayList();
+  private final TLongArrayList mySizes = new TLongArrayList();
+  private final BitSet myAllocations = new BitSet();
+
+  /**
+   * Adds the events up to {@code maxTimeNs} (inclusive) from the given batch. The events must be later than the ones added so far.
+   * Events after {@code maxTimeNs} are ignored, as they will be part of the next batch.
+   */
+  void addEvents(@NotNull List<AllocationEvent> events, long maxTimeNs) {
+    List<AllocationEvent> sortedEvents = new ArrayList<>(events);
+    // The sort is stable, so events with the same timestamp keep their order
+    sortedEvents.sort(Comparator.comparingLong(AllocationEvent::getTimestamp));
+
+    for (AllocationEvent event : sortedEvents) {
+      if (event.getTimestamp() > maxTimeNs) {
+        break;
+      }
+      assert size() == 0 || event.getTimestamp() >= myTimestamps.get(size() - 1);
+
+      if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+        AllocationEvent.Allocation allocation = event.getAllocData();
+        myAllocations.set(size());
+        add(event.getTimestamp(), allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+            allocation.getHeapId(), allocation.getSize());
+      }
+      else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
+        AllocationEvent.Deallocation deallocation = event.getFreeData();
+        add(event.getTimestamp(), deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
+            deallocation.getThreadId(), deallocation.getHeapId(), deallocation.getSize());
+      }
+      else {
+        assert false;
+      }
+    }
+  }
+
+  private void add(long timestamp, int tag, int classTag, int stackId, int threadId, int heapId, long size) {
+    myTimestamps.add(timestamp);
+    myTags.add(tag);
+    myClassTags.add(classTag);
+    myStackIds.add(stackId);
+    myThreadIds.add(threadId);
+    myHeapIds.add(heapId);
+    mySizes.add(size);
+  }
+
+  int size() {
+    return myTimestamps.size();
+  }
+
+  /**
+   * Returns the index of the first event at or after the given time, or {@link #size()} if there is none.
+   */
+  int getFirstIndexAtOrAfter(long timeNs) {
+    int low = 0;
+    int high = size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myTimestamps.get(mid) < timeNs) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  boolean isAllocation(int index) {
+    return myAllocations.get(index);
+  }
+
+  long getTimestamp(int index) {
+    return myTimestamps.get(index);
+  }
+
+  int getTag(int index) {
+    return myTags.get(index);
+  }
+
+  int getClassTag(int index) {
+    return myClassTags.get(index);
+  }
+
+  int getStackId(int index) {
+    return myStackIds.get(index);
+  }
+
+  int getThreadId(int index) {
+    return myThreadIds.get(index);
+  }
+
+  int getHeapId(int index) {
+    return myHeapIds.get(index);
+  }
+
+  long getSize(int index) {
+    return mySizes.get(index);
+  }
+}
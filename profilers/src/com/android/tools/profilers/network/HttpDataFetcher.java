@@ -29,6 +29,10 @@ import java.util.concurrent.TimeUnit;
  * An {@link Updatable} which will regularly run and, on an interval, poll for an up-to-date list
  * of {@link HttpData} requests within a specified range. Once we see that all requests have been
  * completed, the update loop will stop making the expensive polling calls.
+ * <p>
+ * Listeners are only notified when the polled list differs from the one they last received. Connections that haven't changed
+ * are returned as the same {@link HttpData} instances by {@link RpcNetworkConnectionsModel}, so listeners can tell which entries
+ * changed by comparing them by identity.
  */
 public final class HttpDataFetcher implements Updatable {
   private static final long FETCH_FREQUENCY = TimeUnit.MILLISECONDS.toNanos(250);
@@ -46,6 +50,11 @@ public final class HttpDataFetcher implements Updatable {
    */
   @Nullable private List<HttpData> myDataList;
 
+  /**
+   * The last list listeners were notified with, which is kept across range changes so unchanged polls can be skipped.
+   */
+  @Nullable private List<HttpData> myLastFiredList;
+
   /**
    * Time accumulated since the last poll.
    */
@@ -62,7 +71,7 @@ public final class HttpDataFetcher implements Updatable {
   public void addListener(@NotNull Listener listener) {
     myListeners.add(listener);
     if (myDataList != null) {
-      fireListeners(myDataList);
+      listener.onUpdated(myDataList);
     }
   }
 
@@ -82,7 +91,9 @@ public final class HttpDataFetcher implements Updatable {
       else {
         myDataList = new ArrayList<>();
       }
-      fireListeners(myDataList);
+      if (myLastFiredList == null || !isSameData(myLastFiredList, myDataList)) {
+        fireListeners(myDataList);
+      }
     }
   }
 
@@ -92,6 +103,7 @@ public final class HttpDataFetcher implements Updatable {
   }
 
   private void fireListeners(@NotNull List<HttpData> dataList) {
+    myLastFiredList = dataList;
     for (Listener l : myListeners) {
       l.onUpdated(dataList);
     }
@@ -106,6 +118,18 @@ public final class HttpDataFetcher implements Updatable {
     return false;
   }
 
+  private static boolean isSameData(@NotNull List<HttpData> oldList, @NotNull List<HttpData> newList) {
+    if (oldList.size() != newList.size()) {
+      return false;
+    }
+    for (int i = 0; i < oldList.size(); ++i) {
+      if (oldList.get(i) != newList.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public interface Listener {
     void onUpdated(@NotNull List<HttpData> httpDataList);
   }
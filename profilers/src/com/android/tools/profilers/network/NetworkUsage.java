@@ -15,10 +15,12 @@
  */
 package com.android.tools.profilers.network;
 
+import com.android.tools.adtui.model.DataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.android.tools.profilers.CachedDataSeries;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -49,9 +51,11 @@ public class NetworkUsage extends LineChartModel {
   }
 
   @NotNull
-  public NetworkTrafficDataSeries createSeries(@NotNull StudioProfilers profilers, @NotNull NetworkTrafficDataSeries.Type trafficType) {
+  public DataSeries<Long> createSeries(@NotNull StudioProfilers profilers, @NotNull NetworkTrafficDataSeries.Type trafficType) {
     NetworkServiceGrpc.NetworkServiceBlockingStub client = profilers.getClient().getNetworkClient();
-    return new NetworkTrafficDataSeries(client, profilers.getProcessId(), profilers.getSession(), trafficType);
+    NetworkTrafficDataSeries series = new NetworkTrafficDataSeries(client, profilers.getProcessId(), profilers.getSession(), trafficType);
+    String name = "Network " + trafficType.getLabel(true);
+    return new CachedDataSeries<>(name, series, profilers.getIdeServices().getDataFetchExecutor(), true);
   }
 
   @NotNull
@@ -23,11 +23,17 @@ import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link NetworkConnectionsModel} that uses an RPC mechanism to complete its queries.
+ * <p>
+ * The details of a connection never change once it has completed, so completed connections are kept between queries and only new
+ * or still open connections have their details requested again. Together with {@link HttpDataFetcher}, which polls while any
+ * connection is open, this keeps each poll proportional to the number of connections that actually changed.
  */
 public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
   @NotNull
@@ -37,6 +43,11 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
   private final int myPid;
   private final Common.Session mySession;
 
+  /**
+   * Completed connections returned by the last query, by connection id.
+   */
+  @NotNull private Map<Long, HttpData> myCompletedConnections = new HashMap<>();
+
   public RpcNetworkConnectionsModel(@NotNull ProfilerServiceGrpc.ProfilerServiceBlockingStub profilerService,
                                     @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub networkService,
                                     int pid, Common.Session session) {
@@ -57,7 +68,16 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
     NetworkProfiler.HttpRangeResponse response = myNetworkService.getHttpRange(request);
 
     List<HttpData> httpDataList = new ArrayList<>(response.getDataList().size());
+    // Only keep the connections within the current range, which is what the next query will most likely ask for again
+    Map<Long, HttpData> completedConnections = new HashMap<>();
     for (NetworkProfiler.HttpConnectionData connection : response.getDataList()) {
+      HttpData completed = myCompletedConnections.get(connection.getConnId());
+      if (completed != null) {
+        completedConnections.put(completed.getId(), completed);
+        httpDataList.add(completed);
+        continue;
+      }
+
       long startTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getStartTimestamp());
       long endTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getEndTimestamp());
       long downloadTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getDownloadingTimestamp());
@@ -70,8 +90,13 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
         requestHttpResponse(connection.getConnId(), httpBuilder);
         requestHttpResponseBody(connection.getConnId(), httpBuilder);
       }
-      httpDataList.add(httpBuilder.build());
+      HttpData data = httpBuilder.build();
+      if (connection.getEndTimestamp() != 0) {
+        completedConnections.put(data.getId(), data);
+      }
+      httpDataList.add(data);
     }
+    myCompletedConnections = completedConnections;
 
     return httpDataList;
   }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.Range;
+import com.android.tools.adtui.model.SeriesData;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachedDataSeriesTest {
+  private final FakeSampleSeries mySource = new FakeSampleSeries();
+  private final List<Runnable> myPendingFetches = new ArrayList<>();
+
+  @Test
+  public void incrementalSeriesOnlyFetchesMissingData() {
+    CachedDataSeries<Long> series = new CachedDataSeries<>("Test", mySource, Runnable::run, true);
+    mySource.myMaxTimestamp = 50;
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50), getTimestamps(series, 0, 50));
+    assertEquals(1, mySource.myRequests.size());
+
+    // Data within the cached range doesn't need another query
+    assertEquals(timestamps(10, 20, 30, 40), getTimestamps(series, 15, 35));
+    assertEquals(1, mySource.myRequests.size());
+
+    // New data is queried from the last sample on
+    mySource.myMaxTimestamp = 100;
+    assertEquals(timestamps(40, 50, 60, 70, 80, 90, 100), getTimestamps(series, 45, 100));
+    assertEquals(2, mySource.myRequests.size());
+    assertEquals(new Range(50, 100).toString(), mySource.myRequests.get(1).toString());
+    assertEquals(2, series.getFetchCount());
+  }
+
+  @Test
+  public void dataBeforeRequestedRangeIsDropped() {
+    CachedDataSeries<Long> series = new CachedDataSeries<>("Test", mySource, Runnable::run, true);
+    mySource.myMaxTimestamp = 50;
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50), getTimestamps(series, 0, 50));
+
+    // Live data moves the range forward: only the point before the new range is kept
+    mySource.myMaxTimestamp = 100;
+    assertEquals(timestamps(50, 60, 70, 80, 90, 100), getTimestamps(series, 60, 100));
+    assertEquals(2, mySource.myRequests.size());
+
+    // Going back in time has to query the dropped data again
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100), getTimestamps(series, 0, 100));
+    assertEquals(3, mySource.myRequests.size());
+    assertEquals(new Range(0, 50).toString(), mySource.myRequests.get(2).toString());
+  }
+
+  @Test
+  public void lateSamplesAreFetchedByTheNextFetch() {
+    CachedDataSeries<Long> series = new CachedDataSeries<>("Test", mySource, Runnable::run, true);
+    mySource.myMaxTimestamp = 50;
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50), getTimestamps(series, 0, 50));
+
+    // The sample at 90 reaches the datastore after the one at 100
+    mySource.myMaxTimestamp = 100;
+    mySource.myMissingTimestamps.add(90L);
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50, 60, 70, 80, 100), getTimestamps(series, 0, 100));
+
+    mySource.myMissingTimestamps.clear();
+    mySource.myMaxTimestamp = 150;
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100, 110, 120, 130, 140, 150), getTimestamps(series, 0, 150));
+    assertEquals(new Range(50, 150).toString(), mySource.myRequests.get(2).toString());
+  }
+
+  @Test
+  public void disjointRangeReplacesCachedData() {
+    CachedDataSeries<Long> series = new CachedDataSeries<>("Test", mySource, Runnable::run, true);
+    mySource.myMaxTimestamp = 1000;
+    assertEquals(timestamps(0, 10, 20, 30), getTimestamps(series, 0, 20));
+    assertEquals(timestamps(490, 500, 510, 520), getTimestamps(series, 500, 510));
+    assertEquals(2, mySource.myRequests.size());
+    assertEquals(new Range(500, 510).toString(), mySource.myRequests.get(1).toString());
+  }
+
+  @Test
+  public void pendingFetchReturnsPreviousData() {
+    CachedDataSeries<Long> series = new CachedDataSeries<>("Test", mySource, myPendingFetches::add, true);
+    mySource.myMaxTimestamp = 50;
+    assertTrue(getTimestamps(series, 0, 50).isEmpty());
+    // Only one fetch at a time
+    assertTrue(getTimestamps(series, 0, 50).isEmpty());
+    assertEquals(1, myPendingFetches.size());
+
+    runPendingFetches();
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50), getTimestamps(series, 0, 50));
+
+    mySource.myMaxTimestamp = 70;
+    assertEquals(timestamps(40, 50), getTimestamps(series, 45, 70));
+    runPendingFetches();
+    assertEquals(timestamps(40, 50, 60, 70), getTimestamps(series, 45, 70));
+  }
+
+  @Test
+  public void nonIncrementalSeriesFetchesWholeRange() {
+    CachedDataSeries<Long> series = new CachedDataSeries<>("Test", mySource, Runnable::run, false);
+    mySource.myMaxTimestamp = 50;
+    assertEquals(timestamps(0, 10, 20, 30, 40, 50), getTimestamps(series, 0, 50));
+    mySource.myValue = 2;
+    List<SeriesData<Long>> data = series.getDataForXRange(new Range(0, 50));
+    assertEquals(2, mySource.myRequests.size());
+    assertTrue(data.stream().allMatch(point -> point.value == 2));
+  }
+
+  private void runPendingFetches() {
+    List<Runnable> fetches = new ArrayList<>(myPendingFetches);
+    myPendingFetches.clear();
+    fetches.forEach(Runnable::run);
+  }
+
+  @NotNull
+  private static List<Long> getTimestamps(@NotNull CachedDataSeries<Long> series, double min, double max) {
+    return series.getDataForXRange(new Range(min, max)).stream().map(data -> data.x).collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static List<Long> timestamps(long... values) {
+    List<Long> result = new ArrayList<>();
+    for (long value : values) {
+      result.add(value);
+    }
+    return result;
+  }
+
+  /**
+   * A series with a sample every 10us up to {@link #myMaxTimestamp}, which returns one extra sample on each side of the requested
+   * range like the RPC based series do.
+   */
+  private static class FakeSampleSeries implements DataSeries<Long> {
+    private final List<Range> myRequests = new ArrayList<>();
+    private final Set<Long> myMissingTimestamps = new HashSet<>();
+    private long myMaxTimestamp;
+    private long myValue = 1;
+
+    @Override
+    public List<SeriesData<Long>> getDataForXRange(Range xRange) {
+      myRequests.add(new Range(xRange.getMin(), xRange.getMax()));
+      List<SeriesData<Long>> data = new ArrayList<>();
+      for (long x = 0; x <= myMaxTimestamp; x += 10) {
+        if (x >= xRange.getMin() - 10 && x <= xRange.getMax() + 10 && !myMissingTimestamps.contains(x)) {
+          data.add(new SeriesData<>(x, myValue));
+        }
+      }
+      return data;
+    }
+  }
+}
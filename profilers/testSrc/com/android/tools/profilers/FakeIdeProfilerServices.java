@@ -92,6 +92,13 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
     };
   }
 
+  @NotNull
+  @Override
+  public Executor getDataFetchExecutor() {
+    // Fetch synchronously, so that the data is available as soon as it is requested
+    return Runnable::run;
+  }
+
   @Override
   public void saveFile(@NotNull File file, @NotNull Consumer<FileOutputStream> fileOutputStreamConsumer, @Nullable Runnable postRunnable) {
   }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationEvent;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LiveAllocationEventIndexTest {
+  @Test
+  public void eventsAreSortedByTime() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    index.addEvents(Arrays.asList(alloc(1, 10), alloc(2, 30), free(1, 20), free(2, 40)), 100);
+
+    assertThat(index.size()).isEqualTo(4);
+    assertThat(index.getTimestamp(0)).isEqualTo(10L);
+    assertThat(index.getTimestamp(1)).isEqualTo(20L);
+    assertThat(index.getTimestamp(2)).isEqualTo(30L);
+    assertThat(index.getTimestamp(3)).isEqualTo(40L);
+    assertThat(index.isAllocation(0)).isTrue();
+    assertThat(index.isAllocation(1)).isFalse();
+    assertThat(index.getTag(1)).isEqualTo(1);
+    assertThat(index.getClassTag(2)).isEqualTo(2 * 10);
+    assertThat(index.getStackId(2)).isEqualTo(2 * 100);
+    assertThat(index.getSize(3)).isEqualTo(2 * 1000L);
+  }
+
+  @Test
+  public void eventsAfterMaxTimeAreIgnored() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    index.addEvents(Arrays.asList(alloc(1, 10), alloc(2, 30)), 20);
+    assertThat(index.size()).isEqualTo(1);
+
+    index.addEvents(Arrays.asList(alloc(2, 30), free(1, 35)), 40);
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(index.getTag(1)).isEqualTo(2);
+  }
+
+  @Test
+  public void rangeLookup() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    index.addEvents(Arrays.asList(alloc(1, 10), alloc(2, 20), alloc(3, 20), alloc(4, 30)), 100);
+
+    assertThat(index.getFirstIndexAtOrAfter(0)).isEqualTo(0);
+    assertThat(index.getFirstIndexAtOrAfter(10)).isEqualTo(0);
+    assertThat(index.getFirstIndexAtOrAfter(11)).isEqualTo(1);
+    assertThat(index.getFirstIndexAtOrAfter(20)).isEqualTo(1);
+    assertThat(index.getFirstIndexAtOrAfter(21)).isEqualTo(3);
+    assertThat(index.getFirstIndexAtOrAfter(31)).isEqualTo(4);
+  }
+
+  @NotNull
+  private static AllocationEvent alloc(int tag, long timestamp) {
+    return AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(tag).setClassTag(tag * 10).setStackId(tag * 100).setSize(tag * 1000))
+      .setTimestamp(timestamp).build();
+  }
+
+  @NotNull
+  private static AllocationEvent free(int tag, long timestamp) {
+    return AllocationEvent.newBuilder()
+      .setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(tag).setClassTag(tag * 10).setStackId(tag * 100).setSize(tag * 1000))
+      .setTimestamp(timestamp).build();
+  }
+}
@@ -64,6 +64,10 @@ public final class FakeNetworkService extends NetworkServiceGrpc.NetworkServiceI
     return myAppId;
   }
 
+  public void setHttpDataList(@NotNull List<HttpData> httpDataList) {
+    myHttpDataList = httpDataList;
+  }
+
   @Override
   public void getData(NetworkDataRequest request, StreamObserver<NetworkDataResponse> responseObserver) {
     NetworkDataResponse.Builder response = NetworkDataResponse.newBuilder();
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.network;
+
+import com.android.tools.adtui.model.Range;
+import com.google.protobuf3jarjar.ByteString;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class HttpDataFetcherTest {
+  private static final long POLL_NS = TimeUnit.SECONDS.toNanos(1);
+
+  private final List<List<HttpData>> myFiredLists = new ArrayList<>();
+  private List<HttpData> myData;
+  private int myQueryCount;
+  private Range myRange;
+  private HttpDataFetcher myFetcher;
+
+  @Before
+  public void setUp() {
+    myData = Arrays.asList(FakeNetworkService.newHttpData(1, 1, 2, 3), FakeNetworkService.newHttpData(2, 4, 0, 0));
+    myRange = new Range(0, TimeUnit.SECONDS.toMicros(10));
+    myFetcher = new HttpDataFetcher(new NetworkConnectionsModel() {
+      @NotNull
+      @Override
+      public List<HttpData> getData(@NotNull Range timeCurrentRangeUs) {
+        myQueryCount++;
+        return new ArrayList<>(myData);
+      }
+
+      @NotNull
+      @Override
+      public ByteString requestResponsePayload(@NotNull HttpData httpData) {
+        return ByteString.EMPTY;
+      }
+    }, myRange);
+    myFetcher.addListener(myFiredLists::add);
+  }
+
+  @Test
+  public void pollsReturningTheSameConnectionsAreNotFired() {
+    assertEquals(1, myFiredLists.size());
+    assertEquals(1, myQueryCount);
+
+    // The open connection keeps being polled, but listeners are only notified once it changes
+    myFetcher.update(POLL_NS);
+    myFetcher.update(POLL_NS);
+    assertEquals(3, myQueryCount);
+    assertEquals(1, myFiredLists.size());
+
+    myData = Arrays.asList(myData.get(0), FakeNetworkService.newHttpData(2, 4, 0, 0));
+    myFetcher.update(POLL_NS);
+    assertEquals(2, myFiredLists.size());
+    assertSame(myData.get(1), myFiredLists.get(1).get(1));
+  }
+
+  @Test
+  public void rangeChangeWithTheSameConnectionsIsNotFired() {
+    myRange.set(0, TimeUnit.SECONDS.toMicros(20));
+    assertEquals(2, myQueryCount);
+    assertEquals(1, myFiredLists.size());
+
+    myData = myData.subList(0, 1);
+    myRange.set(0, TimeUnit.SECONDS.toMicros(3));
+    assertEquals(2, myFiredLists.size());
+    assertEquals(1, myFiredLists.get(1).size());
+  }
+
+  @Test
+  public void pollingStopsOnceAllConnectionsAreCompleted() {
+    myData = Arrays.asList(myData.get(0), FakeNetworkService.newHttpData(2, 4, 5, 6));
+    myFetcher.update(POLL_NS);
+    assertEquals(2, myQueryCount);
+    assertEquals(2, myFiredLists.size());
+
+    myFetcher.update(POLL_NS);
+    assertEquals(2, myQueryCount);
+    assertEquals(2, myFiredLists.size());
+  }
+}
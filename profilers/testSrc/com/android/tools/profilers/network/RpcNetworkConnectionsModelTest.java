@@ -113,6 +113,19 @@ public class RpcNetworkConnectionsModelTest {
     checkGetData(6, 8, 0, 1, 2, 3);
   }
 
+  @Test
+  public void completedConnectionsAreReusedBetweenQueries() {
+    Range range = new Range(0, TimeUnit.SECONDS.toMicros(10));
+    List<HttpData> first = myModel.getData(range);
+    List<HttpData> second = myModel.getData(range);
+    assertEquals(first.size(), second.size());
+    for (int i = 0; i < first.size(); ++i) {
+      assertEquals(first.get(i).getId(), second.get(i).getId());
+      // Connection 2 is still downloading, so its details have to be requested again
+      assertEquals(first.get(i).getEndTimeUs() != 0, first.get(i) == second.get(i));
+    }
+  }
+
   private void checkGetData(long startTimeS, long endTimeS, long... expectedIds) {
     Range range = new Range(TimeUnit.SECONDS.toMicros(startTimeS), TimeUnit.SECONDS.toMicros(endTimeS));
     List<HttpData> actualData = myModel.getData(range);